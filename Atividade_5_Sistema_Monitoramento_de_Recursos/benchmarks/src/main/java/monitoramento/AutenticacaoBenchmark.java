@@ -0,0 +1,93 @@
+package monitoramento;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Vaga de re-autenticações, como depois de uma falha do líder: todos os clientes ligam-se
+ * ao mesmo tempo ao ServidorAutenticacao de um nó líder isolado e cada operação termina
+ * quando todos receberam o token.
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Dmonitoramento.registo.nivel=DESLIGADO", "-Dmonitoramento.log.diretorio=",
+        "-Dmonitoramento.auth.rajada=1000000", "-Dmonitoramento.auth.taxaPorSegundo=1000000" })
+@State(Scope.Benchmark)
+public class AutenticacaoBenchmark {
+    private static final int PORTA_AUTENTICACAO = 9090;
+
+    @Param({ "100", "500" })
+    public int clientes;
+
+    private No no;
+    private ExecutorService clientesPool;
+
+    @Setup
+    public void preparar() throws Exception {
+        no = new No(1, Collections.singletonList(1), Collections.singletonMap(1, 1100));
+        clientesPool = Executors.newFixedThreadPool(clientes);
+        // O servidor de autenticação arranca com a primeira rodada do líder: espera até aceitar ligações.
+        long limite = System.currentTimeMillis() + 15000;
+        while (autenticar() == null) {
+            if (System.currentTimeMillis() > limite) throw new IOException("Servidor de autenticacao nao arrancou");
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown
+    public void encerrar() {
+        clientesPool.shutdownNow();
+        no.setAtivo(false);
+    }
+
+    @Benchmark
+    public int vagaDeAutenticacoes() throws Exception {
+        List<Future<String>> respostas = new ArrayList<>(clientes);
+        for (int i = 0; i < clientes; i++) respostas.add(clientesPool.submit(AutenticacaoBenchmark::autenticar));
+        int aceites = 0;
+        for (Future<String> f : respostas) {
+            if (f.get() != null) aceites++;
+        }
+        return aceites;
+    }
+
+    private static String autenticar() {
+        try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress("127.0.0.1", PORTA_AUTENTICACAO), 1000);
+            s.setSoTimeout(5000);
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            out.println("admin;admin");
+            String resposta = in.readLine();
+            return resposta == null || resposta.startsWith("ERRO") ? null : resposta;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package monitoramento;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rodada completa de coletarEstadoGlobal do líder sobre um registo RMI local, com todos
+ * os nós no mesmo processo (como no Simulador). Cada tamanho corre numa JVM própria.
+ * A tarefa periódica do coordenador continua ativa e pode coincidir com algumas medições.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Dmonitoramento.registo.nivel=DESLIGADO", "-Dmonitoramento.log.diretorio=",
+        "-Djava.rmi.server.hostname=127.0.0.1" })
+@State(Scope.Benchmark)
+public class ColetaBenchmark {
+    @Param({ "5", "10", "25" })
+    public int nos;
+
+    private Registry registry;
+    private final List<No> rede = new ArrayList<>();
+    private No lider;
+
+    @Setup
+    public void preparar() throws Exception {
+        List<Integer> todosPids = new ArrayList<>();
+        Map<Integer, Integer> portasHeartbeat = new HashMap<>();
+        for (int i = 1; i <= nos; i++) {
+            todosPids.add(i);
+            portasHeartbeat.put(i, 1100 + i - 1);
+        }
+        registry = LocateRegistry.createRegistry(1099);
+        for (int i = 1; i <= nos; i++) {
+            No no = new No(i, todosPids, portasHeartbeat);
+            registry.bind("No" + i, no.getServidorRMI());
+            rede.add(no);
+        }
+        lider = rede.get(nos - 1);
+        // Dá tempo aos heartbeats para estabelecerem as ligações entre todos os nós.
+        Thread.sleep(3000);
+    }
+
+    @TearDown
+    public void encerrar() throws Exception {
+        for (No no : rede) no.setAtivo(false);
+        UnicastRemoteObject.unexportObject(registry, true);
+    }
+
+    @Benchmark
+    public void rodadaCompleta() {
+        lider.coletarEstadoGlobal();
+    }
+}
@@ -0,0 +1,97 @@
+package monitoramento;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Codificação de um snapshot pelo CodificadorDelta e reconstrução da vista no cliente, com uma
+ * fração dos nós a mudar de CPU em cada rodada. O contador bytesPorRelatorio mostra o tamanho
+ * médio dos relatórios, keyframes incluídos, face aos 30 + 30 * nós bytes do relatório completo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dmonitoramento.registo.nivel=DESLIGADO" })
+@State(Scope.Benchmark)
+public class DeltaBenchmark {
+    @Param({ "50", "500" })
+    public int nos;
+
+    // Fração dos nós cujo CPU muda em cada rodada.
+    @Param({ "0.02", "0.2" })
+    public double fracaoAlterada;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Contadores {
+        public long relatorios;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void limpar() {
+            relatorios = 0;
+            bytes = 0;
+        }
+
+        public double bytesPorRelatorio() {
+            return relatorios == 0 ? 0 : (double) bytes / relatorios;
+        }
+    }
+
+    private final List<List<Recurso>> snapshots = new ArrayList<>();
+    private CodificadorDelta codificador;
+    private final RelatorioDecodificado vista = new RelatorioDecodificado();
+    private ByteBuffer buffer;
+    private long sequencia;
+
+    @Setup
+    public void preparar() {
+        // Várias rodadas pré-geradas, usadas em ciclo, para não medir a criação dos recursos.
+        int rodadas = 64;
+        int alterados = Math.max(1, (int) (nos * fracaoAlterada));
+        for (int k = 0; k < rodadas; k++) {
+            List<Recurso> snapshot = new ArrayList<>(nos);
+            for (int i = 1; i <= nos; i++) {
+                boolean muda = (i + k * alterados) % nos < alterados;
+                double cpu = muda ? (k * 37 + i) % 100 : i % 100;
+                snapshot.add(new Recurso(i, k, cpu, 50, 16, 1000, 8, 0.5, 0));
+            }
+            snapshots.add(snapshot);
+        }
+        codificador = new CodificadorDelta();
+        buffer = ByteBuffer.allocate(codificador.tamanhoMaximo(nos));
+    }
+
+    @Benchmark
+    public int codificarEAplicar(Contadores contadores) {
+        List<Recurso> snapshot = snapshots.get((int) (sequencia % snapshots.size()));
+        buffer.clear();
+        codificador.codificar(buffer, 1, ++sequencia, (int) sequencia, snapshot);
+        buffer.flip();
+        contadores.relatorios++;
+        contadores.bytes += buffer.remaining();
+        if (buffer.get(2) == RelatorioBinario.VERSAO_DELTA) {
+            vista.aplicarDelta(buffer);
+        } else {
+            vista.decodificar(buffer);
+        }
+        return vista.getNumeroNos();
+    }
+}
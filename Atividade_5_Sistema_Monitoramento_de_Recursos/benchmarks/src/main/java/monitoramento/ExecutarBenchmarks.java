@@ -0,0 +1,31 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ponto de entrada do benchmarks.jar. Acrescenta por omissão o profiler de GC (taxa de
+ * alocação) e a escrita dos resultados em JSON, para comparar cada otimização com uma
+ * execução de referência. Os restantes argumentos são os do JMH, por exemplo:
+ *
+ *   java -jar benchmarks/target/benchmarks.jar Relatorio -p nos=50 -rff antes.json
+ */
+public class ExecutarBenchmarks {
+    public static void main(String[] args) throws Exception {
+        List<String> argumentos = new ArrayList<>(Arrays.asList(args));
+        if (!argumentos.contains("-prof")) {
+            argumentos.add("-prof");
+            argumentos.add("gc");
+        }
+        if (!argumentos.contains("-rf")) {
+            argumentos.add("-rf");
+            argumentos.add("json");
+        }
+        if (!argumentos.contains("-rff")) {
+            argumentos.add("-rff");
+            argumentos.add("resultados-jmh.json");
+        }
+        org.openjdk.jmh.Main.main(argumentos.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,76 @@
+package monitoramento;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ida e volta PING/PONG numa ligação persistente ao HeartbeatServidor de um nó real,
+ * com os mesmos quadros de 16 bytes usados pelo HeartbeatGestor.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dmonitoramento.registo.nivel=DESLIGADO", "-Dmonitoramento.log.diretorio=" })
+@State(Scope.Benchmark)
+public class HeartbeatBenchmark {
+    private static final int PORTA = 1100;
+
+    private No no;
+    private SocketChannel canal;
+    private final ByteBuffer envio = ByteBuffer.allocateDirect(QuadroHeartbeat.TAMANHO);
+    private final ByteBuffer rececao = ByteBuffer.allocateDirect(QuadroHeartbeat.TAMANHO);
+
+    @Setup
+    public void preparar() throws Exception {
+        no = new No(1, Collections.singletonList(1), Collections.singletonMap(1, PORTA));
+        long limite = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                canal = SocketChannel.open(new InetSocketAddress("127.0.0.1", PORTA));
+                break;
+            } catch (IOException e) {
+                // O servidor arranca numa thread própria: tenta de novo até ao limite.
+                if (System.currentTimeMillis() > limite) throw e;
+                Thread.sleep(50);
+            }
+        }
+        canal.socket().setTcpNoDelay(true);
+    }
+
+    @TearDown
+    public void encerrar() throws IOException {
+        canal.close();
+        no.setAtivo(false);
+    }
+
+    @Benchmark
+    public long pingPong() throws IOException {
+        envio.clear();
+        QuadroHeartbeat.escrever(envio, QuadroHeartbeat.PING, 2, System.nanoTime());
+        envio.flip();
+        while (envio.hasRemaining()) canal.write(envio);
+        rececao.clear();
+        while (rececao.hasRemaining()) {
+            if (canal.read(rececao) < 0) throw new EOFException("Servidor de heartbeat fechou a ligacao");
+        }
+        return System.nanoTime() - QuadroHeartbeat.lerMarcaTemporal(rececao);
+    }
+}
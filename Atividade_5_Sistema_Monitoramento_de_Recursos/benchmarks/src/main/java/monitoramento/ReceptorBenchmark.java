@@ -0,0 +1,68 @@
+package monitoramento;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tratamento de um datagrama de relatório pelo ReceptorRelatorios do cliente (remontagem,
+ * controlo de sequência e descodificação para uma vista da fila), sem o socket. Cada operação
+ * usa o número de sequência seguinte; a thread de apresentação devolve as vistas sem as mostrar.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dmonitoramento.registo.nivel=DESLIGADO" })
+@State(Scope.Benchmark)
+public class ReceptorBenchmark {
+    // Posição do número de sequência: cabeçalho do fragmento + magia, versão, reservado e ID do líder.
+    private static final int POSICAO_SEQUENCIA = Fragmentos.TAMANHO_CABECALHO + 8;
+
+    @Param({ "5", "40" })
+    public int nos;
+
+    private ReceptorRelatorios receptor;
+    private final ByteBuffer datagrama = ByteBuffer.allocateDirect(Fragmentos.TAMANHO_DATAGRAMA);
+    private int comprimento;
+    private long sequencia;
+
+    @Setup
+    public void preparar() throws IOException {
+        List<Recurso> snapshot = new ArrayList<>(nos);
+        for (int i = 1; i <= nos; i++) snapshot.add(new Recurso(i, i));
+        ByteBuffer relatorio = ByteBuffer.allocate(RelatorioBinario.tamanho(nos));
+        RelatorioBinario.codificar(relatorio, 1, 0, 1, snapshot);
+        byte[] fragmento = new byte[Fragmentos.TAMANHO_DATAGRAMA];
+        comprimento = Fragmentos.escreverFragmento(fragmento, Fragmentos.idSnapshot(1, 0), 0, relatorio.array(), relatorio.position());
+        datagrama.put(fragmento, 0, comprimento);
+        receptor = new ReceptorRelatorios(r -> { }, null);
+    }
+
+    @TearDown
+    public void encerrar() throws IOException {
+        receptor.close();
+    }
+
+    @Benchmark
+    public int processar() {
+        datagrama.clear().limit(comprimento);
+        datagrama.putLong(POSICAO_SEQUENCIA, ++sequencia);
+        return receptor.processar(datagrama);
+    }
+}
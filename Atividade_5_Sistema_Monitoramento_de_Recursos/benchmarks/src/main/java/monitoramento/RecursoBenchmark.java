@@ -0,0 +1,57 @@
+package monitoramento;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construção de um Recurso (consultando o SO diretamente ou a partir do amostrador em
+ * segundo plano) e formatação da sua linha de relatório.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dmonitoramento.registo.nivel=DESLIGADO" })
+@State(Scope.Benchmark)
+public class RecursoBenchmark {
+    private AmostradorRecursos amostrador;
+    private Recurso recurso;
+    private int relogio;
+
+    @Setup
+    public void preparar() {
+        amostrador = new AmostradorRecursos(1);
+        recurso = amostrador.criarRecurso(1, 1);
+    }
+
+    @TearDown
+    public void encerrar() {
+        amostrador.encerrar();
+    }
+
+    @Benchmark
+    public Recurso construirConsultandoSO() {
+        return new Recurso(1, ++relogio);
+    }
+
+    @Benchmark
+    public Recurso construirComAmostrador() {
+        return amostrador.criarRecurso(1, ++relogio);
+    }
+
+    @Benchmark
+    public String paraLinhaRelatorio() {
+        return recurso.paraLinhaRelatorio();
+    }
+}
@@ -0,0 +1,60 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construção e envio de um relatório pelo EmissorMulticast (codificação, fragmentação e
+ * envio para o grupo em 127.0.0.1), por número de nós e formato.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dmonitoramento.registo.nivel=DESLIGADO" })
+@State(Scope.Benchmark)
+public class RelatorioBenchmark {
+    @Param({ "5", "50", "500" })
+    public int nos;
+
+    @Param({ "BINARIO", "TEXTO" })
+    public EmissorMulticast.Formato formato;
+
+    private EmissorMulticast emissor;
+    private List<Recurso> snapshot;
+    private AmostradorRecursos amostrador;
+    private int relogio;
+
+    @Setup
+    public void preparar() {
+        amostrador = new AmostradorRecursos(1);
+        snapshot = new ArrayList<>(nos);
+        for (int i = 1; i <= nos; i++) snapshot.add(amostrador.criarRecurso(i, i));
+        emissor = new EmissorMulticast(formato);
+    }
+
+    @TearDown
+    public void encerrar() {
+        amostrador.encerrar();
+    }
+
+    @Benchmark
+    public long enviar() {
+        emissor.enviar(nos, ++relogio, snapshot);
+        return emissor.getSequencia();
+    }
+}
@@ -0,0 +1,310 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import monitoramento.HistoricoMetricas.Metrica;
+
+/**
+ * Agregados incrementais das métricas em várias resoluções (1 s, 1 min e 1 h), por nó e
+ * para o cluster inteiro ({@link #CLUSTER}). Cada balde guarda contagem, soma, mínimo,
+ * máximo e um {@link EsbocoQuantis}, e cada amostra atualiza um balde por resolução em O(1).
+ *
+ * Os baldes de cada resolução formam um anel: quando o tempo avança, o balde mais antigo
+ * é reutilizado, pelo que os dados finos expiram depressa e ficam apenas compactados nas
+ * resoluções mais grossas. Na coleta em árvore sem detalhe por nó, o agregado do cluster é
+ * alimentado pelo {@link ResumoGrupo} da rodada ({@link #registarResumo}), sem o tempo de atividade.
+ * As consultas escolhem a resolução mais grossa cuja retenção
+ * cobre o intervalo e cujos baldes não passam de um décimo dele, para que os baldes das
+ * extremidades, que entram inteiros, não alarguem muito o intervalo.
+ */
+public class AgregadosMetricas {
+    /** Chave das séries agregadas de todos os nós (os IDs dos nós começam em 1). */
+    public static final int CLUSTER = 0;
+
+    /** Resoluções mantidas, da mais fina para a mais grossa. */
+    public enum Resolucao {
+        SEGUNDO(1000L, Integer.getInteger("monitoramento.agregados.baldesSegundo", 600)),
+        MINUTO(60_000L, Integer.getInteger("monitoramento.agregados.baldesMinuto", 1440)),
+        HORA(3_600_000L, Integer.getInteger("monitoramento.agregados.baldesHora", 720));
+
+        private final long duracaoMs;
+        private final int numeroBaldes;
+
+        Resolucao(long duracaoMs, int numeroBaldes) {
+            this.duracaoMs = duracaoMs;
+            this.numeroBaldes = numeroBaldes;
+        }
+
+        public long getDuracaoMs() { return duracaoMs; }
+        public int getNumeroBaldes() { return numeroBaldes; }
+        public long getRetencaoMs() { return duracaoMs * numeroBaldes; }
+    }
+
+    private static final Resolucao[] RESOLUCOES = Resolucao.values();
+    private static final Metrica[] METRICAS = Metrica.values();
+    // Número mínimo de baldes que o intervalo de uma consulta deve conter.
+    private static final int BALDES_MINIMOS_CONSULTA = 10;
+
+    /**
+     * Anel de baldes de uma métrica numa resolução, em arrays primitivos.
+     * Os esboços são criados na primeira utilização de cada posição e reutilizados depois.
+     */
+    private static final class Anel {
+        final Resolucao resolucao;
+        final long[] inicios;
+        final long[] contagens;
+        final double[] somas;
+        final double[] minimos;
+        final double[] maximos;
+        final EsbocoQuantis[] esbocos;
+
+        Anel(Resolucao resolucao) {
+            this.resolucao = resolucao;
+            int n = resolucao.numeroBaldes;
+            inicios = new long[n];
+            contagens = new long[n];
+            somas = new double[n];
+            minimos = new double[n];
+            maximos = new double[n];
+            esbocos = new EsbocoQuantis[n];
+            Arrays.fill(inicios, Long.MIN_VALUE);
+        }
+
+        /** Posição do balde do instante, reutilizando-o se for de outro período; -1 se já expirou. */
+        private int abrir(long instanteMs) {
+            long inicio = instanteMs - Math.floorMod(instanteMs, resolucao.duracaoMs);
+            int pos = (int) Math.floorMod(inicio / resolucao.duracaoMs, (long) inicios.length);
+            if (inicios[pos] != inicio) {
+                if (inicios[pos] > inicio) return -1; // Amostra mais antiga que a retenção desta resolução.
+                inicios[pos] = inicio;
+                contagens[pos] = 0;
+                somas[pos] = 0;
+                minimos[pos] = Double.POSITIVE_INFINITY;
+                maximos[pos] = Double.NEGATIVE_INFINITY;
+                if (esbocos[pos] == null) esbocos[pos] = new EsbocoQuantis(); else esbocos[pos].limpar();
+            }
+            return pos;
+        }
+
+        void registar(long instanteMs, double valor) {
+            int pos = abrir(instanteMs);
+            if (pos < 0) return;
+            contagens[pos]++;
+            somas[pos] += valor;
+            if (valor < minimos[pos]) minimos[pos] = valor;
+            if (valor > maximos[pos]) maximos[pos] = valor;
+            esbocos[pos].registar(valor);
+        }
+
+        /** Junta ao balde do instante um grupo de amostras já agregado. */
+        void fundir(long instanteMs, long contagem, double soma, double minimo, double maximo, EsbocoQuantis esboco) {
+            int pos = abrir(instanteMs);
+            if (pos < 0 || contagem == 0) return;
+            contagens[pos] += contagem;
+            somas[pos] += soma;
+            minimos[pos] = Math.min(minimos[pos], minimo);
+            maximos[pos] = Math.max(maximos[pos], maximo);
+            esbocos[pos].fundir(esboco);
+        }
+
+        /** Funde no acumulador os baldes que intersetam [desdeMs, ateMs]. */
+        void acumular(long desdeMs, long ateMs, Agregado destino) {
+            for (int pos = 0; pos < inicios.length; pos++) {
+                long inicio = inicios[pos];
+                if (inicio == Long.MIN_VALUE || inicio > ateMs || inicio + resolucao.duracaoMs <= desdeMs) continue;
+                destino.fundir(contagens[pos], somas[pos], minimos[pos], maximos[pos], esbocos[pos]);
+            }
+        }
+
+        Agregado balde(long inicio) {
+            int pos = (int) Math.floorMod(inicio / resolucao.duracaoMs, (long) inicios.length);
+            Agregado a = new Agregado(inicio);
+            if (inicios[pos] == inicio) a.fundir(contagens[pos], somas[pos], minimos[pos], maximos[pos], esbocos[pos]);
+            return a;
+        }
+    }
+
+    /** Anéis de um nó (ou do cluster): um por métrica e resolução. */
+    private static final class Serie {
+        final Anel[][] aneis = new Anel[METRICAS.length][RESOLUCOES.length];
+        long ultimoInstante = Long.MIN_VALUE;
+
+        Serie() {
+            for (int m = 0; m < METRICAS.length; m++) {
+                for (int r = 0; r < RESOLUCOES.length; r++) aneis[m][r] = new Anel(RESOLUCOES[r]);
+            }
+        }
+
+        void registar(Recurso rec) {
+            long t = rec.getInstanteAmostraMs();
+            for (int r = 0; r < RESOLUCOES.length; r++) {
+                aneis[Metrica.CPU.ordinal()][r].registar(t, rec.getUsoCpu());
+                aneis[Metrica.MEMORIA.ordinal()][r].registar(t, rec.getUsoMemoria());
+                aneis[Metrica.CARGA.ordinal()][r].registar(t, rec.getCargaSistema());
+                aneis[Metrica.TEMPO_ATIVIDADE.ordinal()][r].registar(t, rec.getTempoAtividade());
+            }
+        }
+    }
+
+    private final Map<Integer, Serie> series = new ConcurrentHashMap<>();
+
+    /**
+     * Regista todas as amostras de um snapshot, por nó e no agregado do cluster.
+     */
+    public void registar(List<Recurso> snapshot) {
+        for (Recurso r : snapshot) {
+            if (r != null) registar(r);
+        }
+    }
+
+    /**
+     * Regista uma amostra. Amostras repetidas ou mais antigas que a última do nó são ignoradas,
+     * para que o modo PUSH não conte a mesma amostra em várias rodadas.
+     */
+    public void registar(Recurso r) {
+        if (!registarNo(r)) return;
+        Serie cluster = series.computeIfAbsent(CLUSTER, k -> new Serie());
+        synchronized (cluster) {
+            cluster.registar(r);
+        }
+    }
+
+    /**
+     * Regista uma rodada da coleta em árvore sem detalhe por nó: os recursos conhecidos (o do
+     * líder) entram apenas nas séries dos seus nós e o agregado do cluster recebe o resumo de
+     * todos os nós (CPU, memória e carga; o resumo não traz o tempo de atividade).
+     */
+    public void registarResumo(long instanteMs, ResumoGrupo resumo, List<Recurso> recursos) {
+        for (Recurso r : recursos) {
+            if (r != null) registarNo(r);
+        }
+        if (resumo.getContagem() == 0) return;
+        Serie cluster = series.computeIfAbsent(CLUSTER, k -> new Serie());
+        synchronized (cluster) {
+            for (Metrica m : ResumoGrupo.METRICAS) {
+                for (Anel anel : cluster.aneis[m.ordinal()]) {
+                    anel.fundir(instanteMs, resumo.getContagem(), resumo.getSoma(m), resumo.getMinimo(m),
+                            resumo.getMaximo(m), resumo.getEsboco(m));
+                }
+            }
+        }
+    }
+
+    /** @return false se a amostra é repetida ou mais antiga que a última do nó. */
+    private boolean registarNo(Recurso r) {
+        Serie s = series.computeIfAbsent(r.getNoId(), k -> new Serie());
+        synchronized (s) {
+            if (r.getInstanteAmostraMs() <= s.ultimoInstante) return false;
+            s.ultimoInstante = r.getInstanteAmostraMs();
+            s.registar(r);
+            return true;
+        }
+    }
+
+    /**
+     * Resolução mais grossa cuja retenção ainda cobre o início do intervalo e em que o intervalo
+     * ocupa pelo menos {@link #BALDES_MINIMOS_CONSULTA} baldes: uma consulta da última hora às
+     * 10:30 usa baldes de 1 minuto, e não o balde das 09:00 inteiro. Sem nenhuma que cubra, usa a
+     * de maior retenção.
+     */
+    public static Resolucao escolherResolucao(long desdeMs, long ateMs, long agoraMs) {
+        long duracao = Math.max(ateMs - desdeMs, RESOLUCOES[0].duracaoMs);
+        Resolucao escolhida = null;
+        for (Resolucao r : RESOLUCOES) {
+            boolean cobre = agoraMs - r.getRetencaoMs() <= desdeMs;
+            if (cobre && (escolhida == null || r.duracaoMs * BALDES_MINIMOS_CONSULTA <= duracao)) escolhida = r;
+        }
+        return escolhida != null ? escolhida : RESOLUCOES[RESOLUCOES.length - 1];
+    }
+
+    /**
+     * Agregado de uma métrica no intervalo [desdeMs, ateMs], calculado na resolução escolhida por
+     * {@link #escolherResolucao}. Os baldes nas extremidades entram inteiros, pelo que o intervalo
+     * efetivo é arredondado para os limites dos baldes.
+     * @param pid O ID do nó, ou {@link #CLUSTER}.
+     */
+    public Agregado consultar(int pid, Metrica metrica, long desdeMs, long ateMs) {
+        Resolucao r = escolherResolucao(desdeMs, ateMs, System.currentTimeMillis());
+        Agregado a = new Agregado(desdeMs);
+        Serie s = series.get(pid);
+        if (s == null) return a;
+        synchronized (s) {
+            s.aneis[metrica.ordinal()][r.ordinal()].acumular(desdeMs, ateMs, a);
+        }
+        return a;
+    }
+
+    /**
+     * Agregado da janela que termina agora e dura a quantidade de milissegundos indicada.
+     */
+    public Agregado consultarRecentes(int pid, Metrica metrica, long duracaoMs) {
+        long agora = System.currentTimeMillis();
+        return consultar(pid, metrica, agora - duracaoMs, agora);
+    }
+
+    /**
+     * Série temporal de uma métrica, um agregado por balde da resolução indicada, para gráficos.
+     */
+    public List<Agregado> serie(int pid, Metrica metrica, Resolucao resolucao, long desdeMs, long ateMs) {
+        List<Agregado> pontos = new ArrayList<>();
+        Serie s = series.get(pid);
+        if (s == null) return pontos;
+        long d = resolucao.duracaoMs;
+        long primeiro = desdeMs - Math.floorMod(desdeMs, d);
+        synchronized (s) {
+            Anel anel = s.aneis[metrica.ordinal()][resolucao.ordinal()];
+            for (long inicio = primeiro; inicio <= ateMs && pontos.size() < resolucao.numeroBaldes; inicio += d) {
+                pontos.add(anel.balde(inicio));
+            }
+        }
+        return pontos;
+    }
+
+    /**
+     * Agregado de um conjunto de baldes: contagem, soma, mínimo, máximo e esboço de quantis.
+     * Os percentis são aproximados (erro relativo até 12,5%) e limitados ao mínimo e ao máximo exatos.
+     */
+    public static final class Agregado {
+        private final long inicioMs;
+        private long contagem;
+        private double soma;
+        private double minimo = Double.POSITIVE_INFINITY;
+        private double maximo = Double.NEGATIVE_INFINITY;
+        private final EsbocoQuantis esboco = new EsbocoQuantis();
+
+        Agregado(long inicioMs) {
+            this.inicioMs = inicioMs;
+        }
+
+        void fundir(long contagem, double soma, double minimo, double maximo, EsbocoQuantis esboco) {
+            if (contagem == 0) return;
+            this.contagem += contagem;
+            this.soma += soma;
+            this.minimo = Math.min(this.minimo, minimo);
+            this.maximo = Math.max(this.maximo, maximo);
+            this.esboco.fundir(esboco);
+        }
+
+        public long getInicioMs() { return inicioMs; }
+        public long getContagem() { return contagem; }
+        public double getSoma() { return soma; }
+        public double getMinimo() { return contagem == 0 ? Double.NaN : minimo; }
+        public double getMaximo() { return contagem == 0 ? Double.NaN : maximo; }
+        public double getMedia() { return contagem == 0 ? Double.NaN : soma / contagem; }
+
+        public double percentil(double p) {
+            if (contagem == 0) return Double.NaN;
+            return Math.max(minimo, Math.min(maximo, esboco.quantil(p)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d min=%.2f max=%.2f media=%.2f p50=%.2f p95=%.2f p99=%.2f",
+                    contagem, getMinimo(), getMaximo(), getMedia(), percentil(50), percentil(95), percentil(99));
+        }
+    }
+}
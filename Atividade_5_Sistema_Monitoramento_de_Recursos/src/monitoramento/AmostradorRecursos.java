@@ -0,0 +1,106 @@
+package monitoramento;
+
+import com.sun.management.OperatingSystemMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Amostrador de recursos em segundo plano de um nó.
+ * Guarda as referências das MXBeans e lê as métricas do sistema operativo num
+ * intervalo fixo para campos primitivos pré-alocados. Assim, getStatus e
+ * getStatusLocal devolvem imediatamente a última amostra, sem consultar o SO no
+ * caminho crítico do líder, e a leitura de CPU é feita sempre com a mesma cadência.
+ */
+public class AmostradorRecursos {
+    public static final long INTERVALO_AMOSTRA_MS = Long.getLong("monitoramento.amostragem.intervaloMs", 1000);
+
+    // Referências partilhadas: obtê-las é caro e o resultado nunca muda.
+    static final OperatingSystemMXBean OS_BEAN = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+    static final RuntimeMXBean RUNTIME_BEAN = ManagementFactory.getRuntimeMXBean();
+
+    private final ScheduledExecutorService agendador;
+
+    // Última amostra, protegida por leituras otimistas: os leitores normalmente não bloqueiam.
+    private final StampedLock trava = new StampedLock();
+    private double usoCpu;
+    private double usoMemoria;
+    private long memoriaTotalGB;
+    private long tempoAtividade;
+    private int processadores;
+    private double cargaSistema;
+    private long instanteAmostraMs;
+
+    public AmostradorRecursos(int idNo) {
+        amostrar();
+        this.agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "amostrador-P" + idNo);
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleAtFixedRate(this::amostrar, INTERVALO_AMOSTRA_MS, INTERVALO_AMOSTRA_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lê as métricas do SO. Executado apenas pela thread do amostrador (e uma vez no construtor).
+     */
+    private void amostrar() {
+        double cpu = Math.max(0, OS_BEAN.getCpuLoad() * 100);
+        long totalMemoriaBytes = OS_BEAN.getTotalMemorySize();
+        long memoriaLivreBytes = OS_BEAN.getFreeMemorySize();
+        double memoria = (1 - (double) memoriaLivreBytes / totalMemoriaBytes) * 100;
+        long uptime = RUNTIME_BEAN.getUptime() / 1000;
+        int cpus = OS_BEAN.getAvailableProcessors();
+        double carga = OS_BEAN.getSystemLoadAverage();
+        long agora = System.currentTimeMillis();
+
+        long carimbo = trava.writeLock();
+        usoCpu = cpu;
+        usoMemoria = memoria;
+        memoriaTotalGB = totalMemoriaBytes / (1024 * 1024 * 1024);
+        tempoAtividade = uptime;
+        processadores = cpus;
+        cargaSistema = carga;
+        instanteAmostraMs = agora;
+        trava.unlockWrite(carimbo);
+    }
+
+    /**
+     * Cria um Recurso com a última amostra, sem consultar o sistema operativo.
+     */
+    public Recurso criarRecurso(int noId, int relogioLamport) {
+        long carimbo = trava.tryOptimisticRead();
+        Recurso r = lerAmostra(noId, relogioLamport);
+        if (!trava.validate(carimbo)) {
+            // Uma amostra foi escrita durante a leitura: repete com a trava de leitura.
+            carimbo = trava.readLock();
+            try {
+                r = lerAmostra(noId, relogioLamport);
+            } finally {
+                trava.unlockRead(carimbo);
+            }
+        }
+        return r;
+    }
+
+    private Recurso lerAmostra(int noId, int relogioLamport) {
+        return new Recurso(noId, relogioLamport, usoCpu, usoMemoria, memoriaTotalGB, tempoAtividade,
+                processadores, cargaSistema, instanteAmostraMs);
+    }
+
+    public long getInstanteUltimaAmostraMs() {
+        long carimbo = trava.readLock();
+        try {
+            return instanteAmostraMs;
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    public void encerrar() {
+        agendador.shutdownNow();
+    }
+}
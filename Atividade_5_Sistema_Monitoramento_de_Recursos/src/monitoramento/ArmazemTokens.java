@@ -0,0 +1,87 @@
+package monitoramento;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tokens de sessão emitidos pelo {@link ServidorAutenticacao}, com validade limitada.
+ *
+ * A validação é uma consulta a um {@link ConcurrentHashMap} seguida da comparação da
+ * validade, sem bloqueios. Como todos os tokens têm a mesma duração, a ordem de emissão
+ * é também a ordem de expiração: os tokens expirados são retirados da cabeça da fila a cada
+ * emissão e, com o armazém cheio, sai o token mais antigo. O número de tokens nunca
+ * ultrapassa a capacidade.
+ *
+ * Configurável com "monitoramento.auth.ttlMs" (30 minutos por padrão) e
+ * "monitoramento.auth.maxTokens" (10000 por padrão).
+ */
+public class ArmazemTokens {
+    public static final long TTL_MS = Long.getLong("monitoramento.auth.ttlMs", 30 * 60_000L);
+    public static final int CAPACIDADE = Math.max(1, Integer.getInteger("monitoramento.auth.maxTokens", 10_000));
+
+    private final long ttlNs;
+    private final int capacidade;
+    // Token -> instante de expiração (System.nanoTime).
+    private final Map<String, Long> validade = new ConcurrentHashMap<>();
+    // Tokens por ordem de emissão (e de expiração).
+    private final ConcurrentLinkedQueue<String> ordem = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tamanho = new AtomicInteger();
+
+    public ArmazemTokens() {
+        this(TTL_MS, CAPACIDADE);
+    }
+
+    public ArmazemTokens(long ttlMs, int capacidade) {
+        this.ttlNs = ttlMs * 1_000_000L;
+        this.capacidade = capacidade;
+    }
+
+    /**
+     * Emite um token novo, válido durante o TTL a partir de agora.
+     */
+    public String emitir() {
+        long agora = System.nanoTime();
+        removerExpirados(agora);
+        // Reserva um lugar antes de inserir, para que emissões concorrentes não passem da capacidade.
+        while (tamanho.incrementAndGet() > capacidade) {
+            tamanho.decrementAndGet();
+            if (!removerMaisAntigo()) Thread.onSpinWait();
+        }
+        String token = UUID.randomUUID().toString();
+        validade.put(token, agora + ttlNs);
+        ordem.add(token);
+        return token;
+    }
+
+    /**
+     * @return true se o token foi emitido por este armazém e ainda não expirou.
+     */
+    public boolean validar(String token) {
+        if (token == null) return false;
+        Long expira = validade.get(token);
+        return expira != null && System.nanoTime() - expira < 0;
+    }
+
+    private void removerExpirados(long agora) {
+        String cabeca;
+        while ((cabeca = ordem.peek()) != null) {
+            Long expira = validade.get(cabeca);
+            if (expira != null && agora - expira < 0) return;
+            if (ordem.remove(cabeca) && validade.remove(cabeca) != null) tamanho.decrementAndGet();
+        }
+    }
+
+    private boolean removerMaisAntigo() {
+        String cabeca = ordem.poll();
+        if (cabeca == null) return false;
+        if (validade.remove(cabeca) != null) tamanho.decrementAndGet();
+        return true;
+    }
+
+    /** Número de tokens válidos ou ainda não retirados. */
+    public int getTamanho() { return tamanho.get(); }
+    public int getCapacidade() { return capacidade; }
+}
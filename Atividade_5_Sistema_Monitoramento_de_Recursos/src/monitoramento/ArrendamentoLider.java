@@ -0,0 +1,171 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Liderança por arrendamento com um nó de reserva em espera ativa.
+ *
+ * O coordenador renova periodicamente (a cada terço da duração) um arrendamento junto do
+ * nó ativo de maior ID a seguir a ele, enviando-lhe o último snapshot, o estado dos clientes
+ * autenticados e o relógio de Lamport ({@link EstadoLider}). A reserva mantém esse estado
+ * no seu histórico e, se o arrendamento expirar sem renovação, assume a coordenação de
+ * imediato, sem esperar pelo detetor de falhas nem por uma eleição.
+ *
+ * O coordenador conta a validade a partir do envio da renovação e a reserva a partir da
+ * receção, pelo que o arrendamento do coordenador expira sempre primeiro: sem uma renovação
+ * confirmada dentro do prazo, o coordenador suspende a coleta em vez de competir com a reserva.
+ *
+ * Ativado com "monitoramento.arrendamento.ms" (duração em ms; 0, o padrão, desativa).
+ */
+public class ArrendamentoLider implements Runnable {
+    private static final Registador LOG = Registador.para("Arrendamento");
+    public static final long DURACAO_MS = Long.getLong("monitoramento.arrendamento.ms", 0);
+
+    private final No no;
+    private final long duracaoMs;
+    private final long duracaoNs;
+
+    // Lado do coordenador (apenas usado pela thread do arrendamento, exceto isValido).
+    private volatile long confirmadoAteNs;
+    private volatile int reserva;
+    private long proximaRenovacaoNs;
+    private long versaoEnviada = -1;
+
+    // Lado da reserva.
+    private volatile int liderArrendado;
+    private volatile long expiraEmNs;
+    private volatile boolean clienteAutenticadoEspelhado;
+    private long versaoRecebida = -1;
+
+    public ArrendamentoLider(No no, long duracaoMs) {
+        this.no = no;
+        this.duracaoMs = duracaoMs;
+        this.duracaoNs = duracaoMs * 1_000_000L;
+    }
+
+    @Override
+    public void run() {
+        // A verificação é feita com uma granularidade de 1/10 do arrendamento.
+        long passoMs = Math.max(10, duracaoMs / 10);
+        while (no.isAtivo()) {
+            try {
+                Thread.sleep(passoMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!no.isAtivo()) return;
+            if (no.getId() == no.getCoordenadorId()) {
+                if (System.nanoTime() >= proximaRenovacaoNs) renovar();
+            } else {
+                verificarExpiracao();
+            }
+        }
+    }
+
+    /**
+     * Renova o arrendamento junto do primeiro nó de reserva que responder, do maior ID para o menor.
+     */
+    private void renovar() {
+        long inicio = System.nanoTime();
+        proximaRenovacaoNs = inicio + duracaoNs / 3;
+        for (int candidato : candidatos()) {
+            boolean mesmoDestino = candidato == reserva;
+            long versao = no.getVersaoSnapshot();
+            List<Recurso> snapshot = mesmoDestino && versao == versaoEnviada ? null : no.getUltimoSnapshot();
+            EstadoLider estado = new EstadoLider(no.getId(), no.getRelogioLamport(), duracaoMs,
+                    no.isClienteAutenticadoPresente(), versao, snapshot);
+            try {
+                if (!no.getStubs().obter(candidato).renovarArrendamento(estado)) {
+                    // A reserva já reconhece outro coordenador: este nó deixa de o ser.
+                    LOG.aviso("[AVISO] No %d: P%d recusou o arrendamento. Iniciando eleicao.", no.getId(), candidato);
+                    confirmadoAteNs = 0;
+                    no.iniciarEleicao();
+                    return;
+                }
+                if (!mesmoDestino) {
+                    LOG.info("[ARRENDAMENTO] Lider P%d: P%d e agora o no de reserva.", no.getId(), candidato);
+                }
+                reserva = candidato;
+                versaoEnviada = versao;
+                confirmadoAteNs = inicio + duracaoNs;
+                return;
+            } catch (Exception e) {
+                no.getStubs().invalidar(candidato);
+                LOG.debug("[ARRENDAMENTO] Lider P%d: renovacao com P%d falhou: %s", no.getId(), candidato, e.getMessage());
+            }
+        }
+        reserva = 0;
+    }
+
+    private List<Integer> candidatos() {
+        List<Integer> ids = new ArrayList<>();
+        for (NoInfo info : no.getNosDaRede().values()) {
+            if (info.getId() != no.getId() && info.isAtivo()) ids.add(info.getId());
+        }
+        ids.sort((a, b) -> Integer.compare(b, a));
+        return ids;
+    }
+
+    /**
+     * Indica se o coordenador pode agir como tal: tem uma renovação confirmada dentro do prazo
+     * ou não há nenhum outro nó ativo que possa ser reserva.
+     */
+    public boolean isValido() {
+        if (System.nanoTime() < confirmadoAteNs) return true;
+        return candidatos().isEmpty();
+    }
+
+    /**
+     * Renovação recebida pelo nó de reserva.
+     * @return false se este nó já é o coordenador (o remetente perdeu a liderança).
+     */
+    public synchronized boolean renovacaoRecebida(EstadoLider estado) {
+        if (no.getId() == no.getCoordenadorId() && estado.getIdLider() != no.getId()) return false;
+        if (liderArrendado != estado.getIdLider()) {
+            LOG.info("[ARRENDAMENTO] No %d e o no de reserva de P%d (arrendamento de %d ms).",
+                    no.getId(), estado.getIdLider(), estado.getDuracaoArrendamentoMs());
+            versaoRecebida = -1;
+        }
+        liderArrendado = estado.getIdLider();
+        expiraEmNs = System.nanoTime() + estado.getDuracaoArrendamentoMs() * 1_000_000L;
+        clienteAutenticadoEspelhado = estado.isClienteAutenticado();
+        if (estado.getSnapshot() != null && estado.getVersaoSnapshot() != versaoRecebida) {
+            versaoRecebida = estado.getVersaoSnapshot();
+            no.espelharSnapshot(estado.getSnapshot());
+        }
+        return true;
+    }
+
+    private void verificarExpiracao() {
+        int lider = liderArrendado;
+        if (lider == 0 || lider != no.getCoordenadorId() || System.nanoTime() < expiraEmNs) return;
+        synchronized (this) {
+            if (lider != liderArrendado || System.nanoTime() < expiraEmNs) return;
+            liderArrendado = 0;
+        }
+        // O coordenador pode ter passado a renovar com outro nó; se ainda responde, não há nada a assumir.
+        try {
+            no.getStubs().obter(lider).getStatus(no.getRelogioLamport());
+            LOG.info("[ARRENDAMENTO] No %d: arrendamento de P%d expirou, mas P%d continua ativo.", no.getId(), lider, lider);
+            return;
+        } catch (Exception e) {
+            // Sem resposta: a reserva assume.
+        }
+        LOG.erro("[FALHA] No %d: arrendamento de P%d expirou. Assumindo a coordenacao como reserva.", no.getId(), lider);
+        NoInfo info = no.getNosDaRede().get(lider);
+        if (info != null) info.setAtivo(false);
+        no.getStubs().invalidar(lider);
+        if (clienteAutenticadoEspelhado) no.registrarClienteAutenticado();
+        no.getEleicao().assumir();
+        // O novo coordenador renova já o seu próprio arrendamento, antes da primeira coleta.
+        proximaRenovacaoNs = 0;
+        renovar();
+        no.anteciparColeta();
+    }
+
+    public int getReserva() { return reserva; }
+    public int getLiderArrendado() { return liderArrendado; }
+    public long getDuracaoMs() { return duracaoMs; }
+}
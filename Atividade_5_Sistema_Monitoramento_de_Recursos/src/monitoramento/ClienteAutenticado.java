@@ -3,30 +3,43 @@ package monitoramento;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 
 /**
  * Cliente resiliente que realiza a autenticação e re-autenticação.
- * Ele lida com a falha do líder, tentando se autenticar novamente
- * quando o ClienteMonitor deteta a ausência de relatórios.
+ * Ele segue o sinal do líder enviado por multicast: quando a época muda, autentica-se
+ * logo no novo líder; se o líder deixar de dar notícias, espera pelo sinal seguinte.
  */
 public class ClienteAutenticado {
     private static final int PORTA_AUTENTICACAO = 9090;
     private static final String ENDERECO_LIDER = "127.0.0.1";
     private static final int MAX_TENTATIVAS_AUTH = 5;
-    private static final long ATRASO_TENTATIVAS_MS = 3000; // 3 segundos
+    // Espera entre tentativas, dobrando a cada falha: 200, 400, 800 ms...
+    private static final long ATRASO_INICIAL_MS = 200;
+    private static final long ESPERA_SEM_LIDER_MS = 20000; // 20 segundos, interrompidos pelo sinal de um líder
+    private static final int PRAZO_LIGACAO_MS = 1000;
 
     public static void main(String[] args) {
+        SinalLider lider = null;
         // Loop infinito para garantir que o cliente tente sempre se reconectar.
         while (true) {
+            if (lider == null) lider = ClienteMonitor.aguardarSinal(ClienteMonitor.LIMIAR_OBSOLESCENCIA_MS);
             boolean autenticado = false;
+            String token = null;
+            long atraso = ATRASO_INICIAL_MS;
             // Loop de tentativas de autenticação
             for (int tentativa = 1; tentativa <= MAX_TENTATIVAS_AUTH; tentativa++) {
-                System.out.printf("[CLIENTE] Tentando autenticar com o lider (tentativa %d de %d)...%n", tentativa, MAX_TENTATIVAS_AUTH);
-                try (Socket socket = new Socket(ENDERECO_LIDER, PORTA_AUTENTICACAO);
-                     PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                     BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                String endereco = lider != null ? lider.getEnderecoAutenticacao().getHostAddress() : ENDERECO_LIDER;
+                int porta = lider != null ? lider.getPortaAutenticacao() : PORTA_AUTENTICACAO;
+                System.out.printf("[CLIENTE] Tentando autenticar com o lider %s (tentativa %d de %d)...%n",
+                        lider != null ? lider : endereco + ":" + porta, tentativa, MAX_TENTATIVAS_AUTH);
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress(endereco, porta), PRAZO_LIGACAO_MS);
+                    socket.setSoTimeout(PRAZO_LIGACAO_MS * 2);
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
 
                     out.println("admin;admin");
                     String resposta = in.readLine();
@@ -34,21 +47,21 @@ public class ClienteAutenticado {
                     if (resposta != null && !resposta.startsWith("ERRO")) {
                         System.out.println("[CLIENTE] Autenticacao bem-sucedida! Token recebido: " + resposta);
                         autenticado = true;
+                        token = resposta;
                         break; // Sai do loop de tentativas de autenticação
-                    } else {
+                    } else if (resposta != null && resposta.startsWith("ERRO: Credenciais")) {
                         System.err.println("[CLIENTE] Falha na autenticacao: " + resposta);
-                        Thread.sleep(ATRASO_TENTATIVAS_MS); // Espera antes de sair
                         return; // Credenciais erradas, sai do programa
                     }
+                    System.err.println("[CLIENTE] Pedido recusado pelo lider: " + resposta);
                 } catch (Exception e) {
                     System.err.println("[CLIENTE] Nao foi possivel conectar ao servidor de autenticacao. O lider pode estar inativo ou em processo de eleicao.");
-                    if (tentativa < MAX_TENTATIVAS_AUTH) {
-                        try {
-                            Thread.sleep(ATRASO_TENTATIVAS_MS);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }
+                }
+                if (tentativa < MAX_TENTATIVAS_AUTH) {
+                    // Espera pelo próximo sinal: se entretanto houver outro líder, a próxima tentativa já é com ele.
+                    SinalLider sinal = ClienteMonitor.aguardarSinal(atraso);
+                    if (sinal != null && sinal.isOutraLideranca(lider)) lider = sinal;
+                    atraso *= 2;
                 }
             }
 
@@ -56,19 +69,16 @@ public class ClienteAutenticado {
             if (autenticado) {
                 try {
                     System.out.println("\n[CLIENTE] Iniciando o cliente de monitorizacao multicast...");
-                    ClienteMonitor.main(null);
+                    // Devolve o sinal do novo líder assim que a época muda.
+                    lider = ClienteMonitor.monitorar(lider, token);
                 } catch (SocketTimeoutException e) {
-                    // O ClienteMonitor atingiu o timeout. O líder provavelmente caiu.
-                    // O loop principal (while true) irá recomeçar, forçando uma nova autenticação.
+                    // O líder deixou de dar notícias. O loop principal espera pelo sinal do próximo líder.
                     System.out.println("[CLIENTE] A tentar encontrar um novo lider para se autenticar...");
+                    lider = null;
                 }
             } else {
-                System.err.println("[CLIENTE] Nao foi possivel estabelecer conexao com um lider apos " + MAX_TENTATIVAS_AUTH + " tentativas. A tentar novamente em 20 segundos.");
-                try {
-                    Thread.sleep(20000); // Espera um tempo maior antes de tentar todo o processo novamente.
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+                System.err.println("[CLIENTE] Nao foi possivel estabelecer conexao com um lider apos " + MAX_TENTATIVAS_AUTH + " tentativas. A aguardar o sinal de um lider (ate 20 segundos).");
+                lider = ClienteMonitor.aguardarSinal(ESPERA_SEM_LIDER_MS);
             }
         }
     }
@@ -1,54 +1,160 @@
 package monitoramento;
 
-import java.net.DatagramPacket;
-import java.net.InetAddress;
-import java.net.MulticastSocket;
-import java.net.NetworkInterface;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.SocketTimeoutException; // Importar a exceção
+import java.nio.charset.StandardCharsets;
 
 /**
- * Cliente que escuta os relatórios de estado da rede.
- * AGORA COM LÓGICA DE TIMEOUT para detectar falhas do líder.
+ * Cliente que escuta os relatórios de estado da rede e o sinal do líder, através de um
+ * {@link ReceptorRelatorios}: a receção não aloca memória por datagrama e a apresentação
+ * corre noutra thread, atrás de uma fila limitada.
+ *
+ * O líder é considerado perdido quando não chega nenhum sinal nem relatório dele durante o
+ * limiar de obsolescência ("monitoramento.cliente.limiarMs", padrão 3000 ms). Um sinal com uma
+ * época maior indica um novo líder: {@link #monitorar(SinalLider)} devolve-o logo, para que o
+ * ClienteAutenticado se autentique nele.
+ *
+ * Com um token, o cliente pede um keyframe ao líder, pelo canal de autenticação, quando chega um
+ * delta sem base (perdeu-se um relatório), no máximo uma vez por segundo; sem token espera pelo
+ * keyframe periódico.
  */
 public class ClienteMonitor {
-    private static final String ENDERECO_MULTICAST = "239.0.0.1";
-    private static final int PORTA_MULTICAST = 12345;
-    // Timeout de 25 segundos. Se nenhum relatório chegar neste tempo, assume-se que o líder falhou.
-    private static final int TIMEOUT_RECEPCAO_MS = 25000;
+    // Tempo sem notícias do líder a partir do qual se assume que falhou.
+    public static final long LIMIAR_OBSOLESCENCIA_MS = Math.max(100, Long.getLong("monitoramento.cliente.limiarMs", 3000));
+    // Intervalo mínimo entre pedidos de keyframe e prazo de cada pedido.
+    private static final long INTERVALO_PEDIDO_KEYFRAME_MS = 1000;
+    private static final int PRAZO_PEDIDO_KEYFRAME_MS = 500;
 
     // O método main agora pode lançar uma exceção para ser apanhada pelo ClienteAutenticado
     public static void main(String[] args) throws SocketTimeoutException {
-        try (MulticastSocket socket = new MulticastSocket(PORTA_MULTICAST)) {
-            InetAddress grupo = InetAddress.getByName(ENDERECO_MULTICAST);
-
-            InetAddress localHost = InetAddress.getByName("127.0.0.1");
-            socket.setNetworkInterface(NetworkInterface.getByInetAddress(localHost));
-            socket.joinGroup(grupo);
+        SinalLider lider = null;
+        while (true) {
+            // Sem autenticação, este cliente limita-se a seguir o novo líder.
+            lider = monitorar(lider);
+            if (lider == null) return;
+        }
+    }
 
-            // Define o timeout no socket.
-            socket.setSoTimeout(TIMEOUT_RECEPCAO_MS);
+    /**
+     * Recebe e mostra relatórios enquanto o líder indicado (ou, se null, o primeiro que enviar
+     * um sinal) continuar ativo.
+     * @return O sinal de um novo líder, assim que a época mudar; null se o cliente parar por erro.
+     * @throws SocketTimeoutException Se o líder ficar sem dar notícias durante o limiar de obsolescência.
+     */
+    public static SinalLider monitorar(SinalLider liderAtual) throws SocketTimeoutException {
+        return monitorar(liderAtual, null);
+    }
 
+    /**
+     * Como {@link #monitorar(SinalLider)}, pedindo um keyframe ao líder com o token indicado
+     * sempre que um delta chega sem base.
+     */
+    public static SinalLider monitorar(SinalLider liderAtual, String token) throws SocketTimeoutException {
+        ReceptorRelatorios receptor = null;
+        try {
+            // A apresentação corre noutra thread; a receção nunca espera por ela.
+            receptor = new ReceptorRelatorios(ClienteMonitor::exibir, System.out);
             System.out.println("==========================================================");
             System.out.println("Cliente de Monitorizacao iniciado. Aguardando relatorios...");
             System.out.println("==========================================================");
 
-            byte[] buffer = new byte[4096];
+            SinalLider lider = liderAtual;
+            long ultimoContactoMs = System.currentTimeMillis();
+            long deltasSemBase = 0, ultimoPedidoMs = 0;
             while (true) {
-                DatagramPacket pacote = new DatagramPacket(buffer, buffer.length);
-                // Esta chamada agora irá bloquear por no máximo 25 segundos.
-                socket.receive(pacote);
-
-                String relatorio = new String(pacote.getData(), 0, pacote.getLength(), "UTF-8");
-                System.out.println(relatorio);
+                long restante = ultimoContactoMs + LIMIAR_OBSOLESCENCIA_MS - System.currentTimeMillis();
+                if (restante <= 0) throw new SocketTimeoutException();
+                // Bloqueia no máximo até ao fim do limiar.
+                int evento = receptor.receber(restante);
+                if (evento == ReceptorRelatorios.SINAL) {
+                    SinalLider sinal = receptor.getUltimoSinal();
+                    if (lider == null || !sinal.isOutraLideranca(lider)) {
+                        lider = sinal;
+                        ultimoContactoMs = System.currentTimeMillis();
+                    } else if (sinal.getEpoca() > lider.getEpoca()) {
+                        System.out.printf("%n[INFO] Novo lider: %s (anterior: P%d).%n", sinal, lider.getIdLider());
+                        return sinal;
+                    }
+                    // Um sinal de época menor vem de um líder antigo que ainda não se apercebeu: ignora-se.
+                } else if (evento == ReceptorRelatorios.RELATORIO) {
+                    // Um relatório completo também conta como notícia do líder (o formato de texto não traz o ID).
+                    ultimoContactoMs = System.currentTimeMillis();
+                    if (token != null && lider != null && receptor.getDeltasSemBase() > deltasSemBase
+                            && ultimoContactoMs - ultimoPedidoMs >= INTERVALO_PEDIDO_KEYFRAME_MS) {
+                        deltasSemBase = receptor.getDeltasSemBase();
+                        ultimoPedidoMs = ultimoContactoMs;
+                        pedirKeyframe(lider, token);
+                    }
+                }
             }
 
         } catch (SocketTimeoutException e) {
-            // Se o timeout for atingido, lança a exceção para cima.
+            // Se o limiar for atingido, lança a exceção para cima.
             // O ClienteAutenticado irá apanhar isto e saber que precisa de se re-autenticar.
-            System.err.printf("%n[AVISO] Nenhum relatorio recebido em %d segundos. O lider pode ter mudado.%n", TIMEOUT_RECEPCAO_MS / 1000);
+            System.err.printf("%n[AVISO] Nenhuma noticia do lider em %d ms. O lider pode ter mudado.%n", LIMIAR_OBSOLESCENCIA_MS);
             throw e;
         } catch (Exception e) {
             System.err.println("Erro no Cliente de Monitorizacao: " + e.getMessage());
+            return null;
+        } finally {
+            if (receptor != null) {
+                System.out.printf("[INFO] Relatorios: %s | Fragmentos: %s%n", receptor, receptor.getRemontador());
+                fechar(receptor);
+            }
+        }
+    }
+
+    /**
+     * Espera pelo sinal de um líder, ignorando os relatórios.
+     * @return O primeiro sinal recebido, ou null se nenhum chegar dentro do prazo.
+     */
+    public static SinalLider aguardarSinal(long prazoMs) {
+        long limite = System.currentTimeMillis() + prazoMs;
+        try (ReceptorRelatorios receptor = new ReceptorRelatorios(null, null)) {
+            while (true) {
+                long restante = limite - System.currentTimeMillis();
+                if (restante <= 0) return null;
+                if (receptor.receber(restante) == ReceptorRelatorios.SINAL) return receptor.getUltimoSinal();
+            }
+        } catch (Exception e) {
+            return null;
         }
     }
+
+    /**
+     * Pede ao líder, pelo canal de autenticação, que o próximo relatório siga completo. Os
+     * datagramas que chegam entretanto ficam no buffer do socket.
+     */
+    private static void pedirKeyframe(SinalLider lider, String token) {
+        try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress(lider.getEnderecoAutenticacao(), lider.getPortaAutenticacao()), PRAZO_PEDIDO_KEYFRAME_MS);
+            s.setSoTimeout(PRAZO_PEDIDO_KEYFRAME_MS);
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            out.println("KEYFRAME " + token);
+            String resposta = in.readLine();
+            if (resposta == null || !resposta.startsWith("OK")) {
+                System.err.println("[AVISO] Pedido de keyframe recusado: " + resposta);
+            }
+        } catch (Exception e) {
+            // O líder não respondeu: fica o keyframe periódico.
+        }
+    }
+
+    private static void fechar(ReceptorRelatorios receptor) {
+        try {
+            receptor.close();
+        } catch (Exception e) {
+            // O canal já estava fechado.
+        }
+    }
+
+    private static void exibir(RelatorioDecodificado relatorio) {
+        // Formato binário: a tabela é gerada apenas aqui, no cliente, fora da thread de receção.
+        System.out.println(relatorio.paraTexto());
+    }
 }
\ No newline at end of file
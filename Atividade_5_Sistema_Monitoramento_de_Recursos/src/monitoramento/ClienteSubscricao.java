@@ -0,0 +1,55 @@
+package monitoramento;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cliente do canal de subscrições: autentica-se no líder, subscreve com o filtro indicado nos
+ * argumentos e mostra as atualizações recebidas. Por exemplo:
+ *
+ *   java monitoramento.ClienteSubscricao nos=1,2 metricas=cpu limiar=2 maxHz=1
+ */
+public class ClienteSubscricao {
+    private static final String ENDERECO_LIDER = "127.0.0.1";
+    private static final int PRAZO_LIGACAO_MS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        // O sinal do líder indica o endereço; sem sinal, tenta o endereço local.
+        SinalLider lider = ClienteMonitor.aguardarSinal(ClienteMonitor.LIMIAR_OBSOLESCENCIA_MS);
+        String endereco = lider != null ? lider.getEnderecoAutenticacao().getHostAddress() : ENDERECO_LIDER;
+        int portaAutenticacao = lider != null ? lider.getPortaAutenticacao() : ServidorAutenticacao.PORTA_AUTENTICACAO;
+
+        String token;
+        try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress(endereco, portaAutenticacao), PRAZO_LIGACAO_MS);
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            out.println("admin;admin");
+            token = in.readLine();
+        }
+        if (token == null || token.startsWith("ERRO")) {
+            System.err.println("[CLIENTE] Falha na autenticacao: " + token);
+            return;
+        }
+
+        try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress(endereco, ServidorSubscricoes.PORTA), PRAZO_LIGACAO_MS);
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            out.println("TOKEN " + token);
+            out.println(("FILTRO " + String.join(" ", args)).trim());
+            String resposta = in.readLine();
+            System.out.println("[CLIENTE] " + resposta);
+            if (resposta == null || !resposta.startsWith("OK")) return;
+            String linha;
+            while ((linha = in.readLine()) != null) {
+                System.out.println(linha);
+            }
+            System.out.println("[CLIENTE] O lider fechou a subscricao.");
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package monitoramento;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codifica os snapshots do líder como deltas face ao relatório anterior, com um relatório
+ * completo (keyframe) periódico. O formato está descrito em {@link RelatorioBinario}.
+ *
+ * O codificador guarda, por nó, os valores que os clientes já têm (os últimos enviados) e só
+ * escreve os nós e os campos que mudaram: CPU e memória quando variam mais do que
+ * "monitoramento.delta.epsilon" pontos (padrão 1.0), a carga quando varia mais do que
+ * "monitoramento.delta.epsilonCarga" (padrão 0.05) e os restantes campos quando mudam. O tempo
+ * de atividade avança sozinho no cliente, a partir do instante de geração, e só é reenviado
+ * quando se afasta dessa previsão (por exemplo, quando o nó reinicia).
+ *
+ * Um keyframe sai a cada "monitoramento.delta.keyframe" relatórios (padrão 20; 1 desativa os
+ * deltas), ao mudar de líder e sempre que for pedido com {@link #pedirKeyframe()}, para que os
+ * clientes que chegam tarde ou perderam um relatório voltem a ter a vista completa.
+ */
+public class CodificadorDelta {
+    public static final int INTERVALO_KEYFRAME = Math.max(1, Integer.getInteger("monitoramento.delta.keyframe", 20));
+    public static final double EPSILON = Double.parseDouble(System.getProperty("monitoramento.delta.epsilon", "1.0"));
+    public static final double EPSILON_CARGA = Double.parseDouble(System.getProperty("monitoramento.delta.epsilonCarga", "0.05"));
+    // Diferença, em segundos, entre o tempo de atividade real e o previsto no cliente a partir da qual se reenvia.
+    private static final long TOLERANCIA_TEMPO_S = 2;
+
+    /**
+     * Valores de um nó tal como os clientes os têm, com a base da previsão do tempo de atividade.
+     */
+    private static final class Publicado {
+        float cpu, memoria, carga;
+        int memoriaTotal, processadores, tempoBase;
+        long geradoBaseMs;
+        long rodada;
+    }
+
+    private final int intervaloKeyframe;
+    private final Map<Integer, Publicado> publicados = new HashMap<>();
+    private volatile boolean keyframePedido = true;
+    private int ultimoLider = -1;
+    private long ultimaSequencia = -1;
+    private long rodada;
+    private int desdeKeyframe;
+
+    public CodificadorDelta() {
+        this(INTERVALO_KEYFRAME);
+    }
+
+    public CodificadorDelta(int intervaloKeyframe) {
+        this.intervaloKeyframe = Math.max(1, intervaloKeyframe);
+    }
+
+    /** O próximo relatório será um keyframe. Pode ser chamado de qualquer thread. */
+    public void pedirKeyframe() {
+        keyframePedido = true;
+    }
+
+    /**
+     * Tamanho máximo do próximo relatório para um snapshot com o número de nós indicado.
+     */
+    public int tamanhoMaximo(int numeroNos) {
+        int delta = RelatorioBinario.TAMANHO_CABECALHO_DELTA + numeroNos * RelatorioBinario.TAMANHO_MAXIMO_REGISTO_DELTA
+                + 2 + publicados.size() * 4;
+        return Math.max(RelatorioBinario.tamanho(numeroNos), delta);
+    }
+
+    /**
+     * Codifica o snapshot no buffer, a partir da posição atual, como keyframe ou como delta.
+     * O buffer deve ter pelo menos {@link #tamanhoMaximo(int)} bytes livres.
+     * @return true se foi escrito um keyframe.
+     */
+    public boolean codificar(ByteBuffer destino, int idLider, long sequencia, int relogioLamport, List<Recurso> snapshot) {
+        long geradoEmMs = System.currentTimeMillis();
+        boolean keyframe = keyframePedido || idLider != ultimoLider || ++desdeKeyframe >= intervaloKeyframe;
+        long base = ultimaSequencia;
+        ultimoLider = idLider;
+        ultimaSequencia = sequencia;
+        rodada++;
+        if (keyframe) {
+            keyframePedido = false;
+            desdeKeyframe = 0;
+            RelatorioBinario.codificar(destino, idLider, sequencia, relogioLamport, geradoEmMs, snapshot);
+            for (Recurso r : snapshot) {
+                if (r == null) continue;
+                Publicado p = publicados.computeIfAbsent(r.getNoId(), id -> new Publicado());
+                atualizar(p, r, RelatorioBinario.TODOS_CAMPOS, geradoEmMs);
+                p.rodada = rodada;
+            }
+            publicados.values().removeIf(p -> p.rodada != rodada);
+            return true;
+        }
+
+        int inicio = destino.position();
+        // O número de registos é corrigido no fim, quando já se sabe quantos nós mudaram.
+        RelatorioBinario.escreverCabecalho(destino, RelatorioBinario.VERSAO_DELTA, idLider, sequencia, relogioLamport, geradoEmMs, 0);
+        destino.putLong(base);
+        int posicaoTotal = destino.position();
+        destino.putShort((short) 0);
+        int registos = 0, total = 0;
+        for (Recurso r : snapshot) {
+            if (r == null) continue;
+            total++;
+            Publicado p = publicados.get(r.getNoId());
+            int mascara;
+            if (p == null) {
+                p = new Publicado();
+                publicados.put(r.getNoId(), p);
+                mascara = RelatorioBinario.TODOS_CAMPOS;
+            } else {
+                mascara = diferencas(p, r, geradoEmMs);
+            }
+            p.rodada = rodada;
+            if (mascara == 0) continue;
+            // O relógio do nó muda em todas as rodadas: segue apenas com os nós que mudaram.
+            mascara |= RelatorioBinario.CAMPO_LAMPORT;
+            escreverRegisto(destino, r, mascara);
+            atualizar(p, r, mascara, geradoEmMs);
+            registos++;
+        }
+        int posicaoRemovidos = destino.position();
+        destino.putShort((short) 0);
+        int removidos = 0;
+        for (Iterator<Map.Entry<Integer, Publicado>> it = publicados.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Publicado> e = it.next();
+            if (e.getValue().rodada == rodada) continue;
+            destino.putInt(e.getKey());
+            it.remove();
+            removidos++;
+        }
+        destino.putShort(inicio + RelatorioBinario.TAMANHO_CABECALHO - 2, (short) registos);
+        destino.putShort(posicaoTotal, (short) total);
+        destino.putShort(posicaoRemovidos, (short) removidos);
+        return false;
+    }
+
+    private static int diferencas(Publicado p, Recurso r, long geradoEmMs) {
+        int mascara = 0;
+        if (Math.abs((float) r.getUsoCpu() - p.cpu) > EPSILON) mascara |= RelatorioBinario.CAMPO_CPU;
+        if (Math.abs((float) r.getUsoMemoria() - p.memoria) > EPSILON) mascara |= RelatorioBinario.CAMPO_MEMORIA;
+        if ((int) r.getMemoriaTotalGB() != p.memoriaTotal) mascara |= RelatorioBinario.CAMPO_MEMORIA_TOTAL;
+        if (Math.abs((int) r.getTempoAtividade() - tempoPrevisto(p.tempoBase, p.geradoBaseMs, geradoEmMs)) > TOLERANCIA_TEMPO_S) {
+            mascara |= RelatorioBinario.CAMPO_TEMPO_ATIVIDADE;
+        }
+        if ((short) r.getProcessadores() != p.processadores) mascara |= RelatorioBinario.CAMPO_PROCESSADORES;
+        if (Math.abs((float) r.getCargaSistema() - p.carga) > EPSILON_CARGA) mascara |= RelatorioBinario.CAMPO_CARGA;
+        return mascara;
+    }
+
+    /**
+     * Tempo de atividade que o cliente mostra para um nó cujo último valor enviado foi
+     * tempoBase, no relatório gerado em geradoBaseMs. A mesma conta é feita no cliente.
+     */
+    static long tempoPrevisto(int tempoBase, long geradoBaseMs, long geradoEmMs) {
+        return tempoBase + (geradoEmMs - geradoBaseMs) / 1000;
+    }
+
+    private static void atualizar(Publicado p, Recurso r, int mascara, long geradoEmMs) {
+        if ((mascara & RelatorioBinario.CAMPO_CPU) != 0) p.cpu = (float) r.getUsoCpu();
+        if ((mascara & RelatorioBinario.CAMPO_MEMORIA) != 0) p.memoria = (float) r.getUsoMemoria();
+        if ((mascara & RelatorioBinario.CAMPO_MEMORIA_TOTAL) != 0) p.memoriaTotal = (int) r.getMemoriaTotalGB();
+        if ((mascara & RelatorioBinario.CAMPO_TEMPO_ATIVIDADE) != 0) {
+            p.tempoBase = (int) r.getTempoAtividade();
+            p.geradoBaseMs = geradoEmMs;
+        }
+        if ((mascara & RelatorioBinario.CAMPO_PROCESSADORES) != 0) p.processadores = (short) r.getProcessadores();
+        if ((mascara & RelatorioBinario.CAMPO_CARGA) != 0) p.carga = (float) r.getCargaSistema();
+    }
+
+    private static void escreverRegisto(ByteBuffer destino, Recurso r, int mascara) {
+        destino.putInt(r.getNoId());
+        destino.put((byte) mascara);
+        if ((mascara & RelatorioBinario.CAMPO_CPU) != 0) destino.putFloat((float) r.getUsoCpu());
+        if ((mascara & RelatorioBinario.CAMPO_MEMORIA) != 0) destino.putFloat((float) r.getUsoMemoria());
+        if ((mascara & RelatorioBinario.CAMPO_MEMORIA_TOTAL) != 0) destino.putInt((int) r.getMemoriaTotalGB());
+        if ((mascara & RelatorioBinario.CAMPO_TEMPO_ATIVIDADE) != 0) destino.putInt((int) r.getTempoAtividade());
+        if ((mascara & RelatorioBinario.CAMPO_PROCESSADORES) != 0) destino.putShort((short) r.getProcessadores());
+        if ((mascara & RelatorioBinario.CAMPO_CARGA) != 0) destino.putFloat((float) r.getCargaSistema());
+        if ((mascara & RelatorioBinario.CAMPO_LAMPORT) != 0) destino.putInt(r.getRelogioLamport());
+    }
+
+    public int getIntervaloKeyframe() { return intervaloKeyframe; }
+}
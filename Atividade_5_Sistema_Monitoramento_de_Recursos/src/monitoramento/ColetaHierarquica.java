@@ -0,0 +1,151 @@
+package monitoramento;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coleta em árvore (modo {@link ModoColeta#ARVORE}) para clusters de milhares de nós.
+ *
+ * Quem coleta (o líder ou um subcoordenador) divide os nós à sua responsabilidade em no
+ * máximo {@link #RAMIFICACAO} grupos contíguos por ID; o nó de maior ID de cada grupo é o
+ * subcoordenador e recebe o resto do grupo, que volta a dividir da mesma forma se ainda for
+ * grande. Cada nível devolve apenas um {@link ResumoGrupo}, pelo que o líder faz no máximo
+ * {@link #RAMIFICACAO} chamadas por rodada e a latência cresce com a profundidade da árvore
+ * (logaritmo do número de nós), não com o número de nós.
+ *
+ * Os grupos são recalculados em cada rodada a partir dos nós ativos. Se um subcoordenador
+ * falhar, o grupo é reatribuído de imediato ao nó seguinte do grupo, dentro do prazo da rodada.
+ *
+ * Com "monitoramento.arvore.detalhe=true" cada resumo leva também os recursos de cada nó do
+ * grupo, para o relatório completo: o que chega ao líder (e o custo de o desserializar) volta a
+ * crescer com o número de nós, pelo que o detalhe só serve para clusters pequenos.
+ */
+public class ColetaHierarquica {
+    private static final Registador LOG = Registador.para("Arvore");
+    public static final int RAMIFICACAO = Math.max(2, Integer.getInteger("monitoramento.arvore.ramificacao", 16));
+    public static final boolean DETALHE = Boolean.parseBoolean(System.getProperty("monitoramento.arvore.detalhe", "false"));
+    // Fração do prazo dada a cada nível abaixo, para que as respostas cheguem antes do prazo de quem pede.
+    private static final double FRACAO_PRAZO_FILHO = 0.75;
+
+    private final No no;
+    private final ColetorEstado coletor;
+
+    public ColetaHierarquica(No no, ColetorEstado coletor) {
+        this.no = no;
+        this.coletor = coletor;
+    }
+
+    /**
+     * Coleta o estado deste nó e dos membros indicados (que não o incluem).
+     * @param membros IDs dos nós à responsabilidade deste nó, por ordem crescente.
+     * @param relogio Relógio de Lamport enviado nos pedidos de estado.
+     * @param prazoMs Tempo máximo para devolver o resumo.
+     */
+    public ResumoGrupo coletar(List<Integer> membros, int relogio, long prazoMs) {
+        ResumoGrupo resumo = new ResumoGrupo(DETALHE);
+        resumo.adicionar(no.getStatusLocal());
+        if (membros.isEmpty()) return resumo;
+        if (membros.size() <= RAMIFICACAO) {
+            coletarDiretamente(resumo, membros, relogio, prazoMs);
+            return resumo;
+        }
+
+        long limite = System.nanoTime() + prazoMs * 1_000_000L;
+        Map<Integer, List<Integer>> grupos = dividir(membros);
+        long prazoFilho = (long) (prazoMs * FRACAO_PRAZO_FILHO);
+        ColetorEstado.Reuniao<ResumoGrupo> reuniao = pedirGrupos(grupos, relogio, prazoFilho, prazoMs);
+        for (ResumoGrupo r : reuniao.getRespostas().values()) resumo.fundir(r);
+
+        // Subcoordenadores que falharam: o grupo passa para o nó seguinte, enquanto houver tempo.
+        Map<Integer, List<Integer>> reatribuidos = new HashMap<>();
+        for (int cabeca : reuniao.getFalhados()) {
+            resumo.registarSemResposta(cabeca);
+            List<Integer> resto = grupos.get(cabeca);
+            if (!resto.isEmpty()) {
+                reatribuidos.put(resto.get(resto.size() - 1), new ArrayList<>(resto.subList(0, resto.size() - 1)));
+            }
+        }
+        for (int cabeca : reuniao.getAtrasados()) {
+            // Um subcoordenador lento leva o grupo inteiro consigo nesta rodada.
+            resumo.registarSemResposta(cabeca);
+            resumo.registarSemResposta(grupos.get(cabeca));
+        }
+        long restanteMs = (limite - System.nanoTime()) / 1_000_000L;
+        if (!reatribuidos.isEmpty() && restanteMs > 0) {
+            LOG.aviso("[AVISO] No %d: subcoordenadores sem resposta %s. Grupos reatribuidos a %s.",
+                    no.getId(), reuniao.getFalhados(), reatribuidos.keySet());
+            ColetorEstado.Reuniao<ResumoGrupo> segunda = pedirGrupos(reatribuidos, relogio,
+                    (long) (restanteMs * FRACAO_PRAZO_FILHO), restanteMs);
+            for (ResumoGrupo r : segunda.getRespostas().values()) resumo.fundir(r);
+            for (int cabeca : segunda.getFalhados()) semResposta(resumo, cabeca, reatribuidos.get(cabeca));
+            for (int cabeca : segunda.getAtrasados()) semResposta(resumo, cabeca, reatribuidos.get(cabeca));
+        } else {
+            for (Map.Entry<Integer, List<Integer>> e : reatribuidos.entrySet()) semResposta(resumo, e.getKey(), e.getValue());
+        }
+        return resumo;
+    }
+
+    private static void semResposta(ResumoGrupo resumo, int cabeca, List<Integer> resto) {
+        resumo.registarSemResposta(cabeca);
+        resumo.registarSemResposta(resto);
+    }
+
+    private ColetorEstado.Reuniao<ResumoGrupo> pedirGrupos(Map<Integer, List<Integer>> grupos, int relogio,
+                                                          long prazoFilhoMs, long prazoMs) {
+        return coletor.reunir(new ArrayList<>(grupos.keySet()), pid -> {
+            try {
+                return no.getStubs().obter(pid).coletarGrupo(grupos.get(pid), relogio, prazoFilhoMs);
+            } catch (RemoteException e) {
+                no.getStubs().invalidar(pid);
+                throw e;
+            }
+        }, prazoMs);
+    }
+
+    private void coletarDiretamente(ResumoGrupo resumo, List<Integer> membros, int relogio, long prazoMs) {
+        ColetorEstado.Reuniao<Recurso> reuniao = coletor.reunir(membros, pid -> {
+            try {
+                return no.getStubs().obter(pid).getStatus(relogio);
+            } catch (RemoteException e) {
+                no.getStubs().invalidar(pid);
+                throw e;
+            }
+        }, prazoMs);
+        for (Recurso r : reuniao.getRespostas().values()) resumo.adicionar(r);
+        for (int pid : reuniao.getFalhados()) resumo.registarSemResposta(pid);
+        for (int pid : reuniao.getAtrasados()) resumo.registarSemResposta(pid);
+    }
+
+    /**
+     * Divide os membros (ordenados) em até {@link #RAMIFICACAO} grupos contíguos de tamanho
+     * semelhante. A chave é o subcoordenador (maior ID do grupo) e o valor o resto do grupo.
+     */
+    static Map<Integer, List<Integer>> dividir(List<Integer> membros) {
+        Map<Integer, List<Integer>> grupos = new HashMap<>();
+        int n = membros.size();
+        int numeroGrupos = Math.min(RAMIFICACAO, n);
+        for (int g = 0; g < numeroGrupos; g++) {
+            int inicio = (int) ((long) n * g / numeroGrupos);
+            int fim = (int) ((long) n * (g + 1) / numeroGrupos);
+            // O resto segue por RMI: uma ArrayList própria em vez de uma vista da lista original.
+            grupos.put(membros.get(fim - 1), new ArrayList<>(membros.subList(inicio, fim - 1)));
+        }
+        return grupos;
+    }
+
+    /**
+     * Nós ativos, exceto este, por ordem crescente de ID: a base da divisão em grupos.
+     */
+    public static List<Integer> membrosAtivos(No no) {
+        List<Integer> membros = new ArrayList<>();
+        for (NoInfo info : no.getNosDaRede().values()) {
+            if (info.getId() != no.getId() && info.isAtivo()) membros.add(info.getId());
+        }
+        Collections.sort(membros);
+        return membros;
+    }
+}
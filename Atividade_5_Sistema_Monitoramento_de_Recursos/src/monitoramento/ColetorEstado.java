@@ -0,0 +1,247 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Motor de coleta concorrente (scatter-gather) usado pelo líder.
+ * Envia os pedidos de estado a todos os nós em paralelo e espera apenas até ao
+ * prazo da rodada: os nós que não respondem a tempo ficam marcados como
+ * obsoletos e não atrasam a publicação do snapshot.
+ *
+ * Cancelar uma chamada RMI atrasada não a interrompe: a thread fica bloqueada na leitura do
+ * socket até o nó responder ou até ao tempo limite de resposta do RMI, que
+ * {@link #configurarPrazoRmi()} define em "monitoramento.coleta.prazoRmiMs" (padrão 10000 ms)
+ * quando "sun.rmi.transport.tcp.responseTimeout" não foi indicado. Para que um nó pendurado
+ * não ocupe várias threads de coleta, cada nó tem no máximo uma chamada em curso: enquanto a
+ * anterior não terminar, as rodadas seguintes marcam-no logo como atrasado.
+ */
+public class ColetorEstado {
+    // Prazo único de cada rodada de coleta.
+    public static final long PRAZO_RODADA_MS = 3000;
+    // Limite de threads simultâneas para a coleta.
+    private static final int MAX_THREADS = 32;
+    // Tempo limite das chamadas RMI bloqueadas, aplicado por configurarPrazoRmi().
+    public static final long PRAZO_RESPOSTA_RMI_MS = Long.getLong("monitoramento.coleta.prazoRmiMs", 10000);
+    private static final String PROPRIEDADE_PRAZO_RMI = "sun.rmi.transport.tcp.responseTimeout";
+
+    private final int idLider;
+    private final long prazoRodadaMs;
+    private final ExecutorService executor;
+    // Nós com uma chamada a correr numa thread de coleta (possivelmente de uma rodada anterior).
+    private final Set<Integer> emCurso = ConcurrentHashMap.newKeySet();
+
+    // Estatísticas acumuladas entre rodadas.
+    private final AtomicLong totalRodadas = new AtomicLong();
+    private final AtomicLong totalPrazosFalhados = new AtomicLong();
+    private final Map<Integer, AtomicLong> prazosFalhadosPorNo = new ConcurrentHashMap<>();
+    private volatile ResultadoColeta ultimaRodada;
+
+    /**
+     * Pedido a um nó remoto. Qualquer exceção conta como falha do nó.
+     */
+    @FunctionalInterface
+    interface Pedido<T> { T pedir(int pid) throws Exception; }
+
+    /**
+     * Pedido de estado a um nó remoto. Qualquer exceção conta como falha do nó.
+     */
+    @FunctionalInterface
+    interface PedidoStatus extends Pedido<Recurso> { }
+
+    public ColetorEstado(int idLider, int numeroNos) {
+        this(idLider, numeroNos, PRAZO_RODADA_MS);
+    }
+
+    public ColetorEstado(int idLider, int numeroNos, long prazoRodadaMs) {
+        this.idLider = idLider;
+        this.prazoRodadaMs = prazoRodadaMs;
+        int threads = Math.max(1, Math.min(numeroNos, MAX_THREADS));
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "coleta-P" + idLider + "-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Define o tempo limite de resposta das chamadas RMI, se ainda não foi indicado. Tem de ser
+     * chamado antes da primeira chamada RMI, porque o valor é lido quando o transporte arranca.
+     */
+    public static void configurarPrazoRmi() {
+        if (System.getProperty(PROPRIEDADE_PRAZO_RMI) == null) {
+            System.setProperty(PROPRIEDADE_PRAZO_RMI, Long.toString(PRAZO_RESPOSTA_RMI_MS));
+        }
+    }
+
+    /**
+     * Executa uma rodada de coleta sobre os nós indicados.
+     * @param alvos Os IDs dos nós a consultar.
+     * @param pedido A chamada que obtém o estado de um nó.
+     * @return O resultado da rodada, com o snapshot parcial e as métricas.
+     */
+    public ResultadoColeta coletar(List<Integer> alvos, PedidoStatus pedido) {
+        Reuniao<Recurso> reuniao = reunir(alvos, pedido, prazoRodadaMs);
+        List<Recurso> recursos = new ArrayList<>();
+        for (Recurso r : reuniao.respostas.values()) {
+            if (r != null) recursos.add(r);
+        }
+        totalRodadas.incrementAndGet();
+
+        ResultadoColeta resultado = new ResultadoColeta(recursos, reuniao.atrasados, reuniao.falhados,
+                reuniao.duracaoMs, reuniao.latenciasMs);
+        this.ultimaRodada = resultado;
+        return resultado;
+    }
+
+    /**
+     * Envia um pedido qualquer aos nós indicados em paralelo e espera pelas respostas até ao prazo.
+     * Usado pela coleta normal e pela coleta em árvore ({@link ColetaHierarquica}).
+     */
+    public <T> Reuniao<T> reunir(List<Integer> alvos, Pedido<T> pedido, long prazoMs) {
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(prazoMs);
+
+        Map<Integer, Future<T>> pendentes = new LinkedHashMap<>();
+        Map<Integer, Long> latenciasNs = new ConcurrentHashMap<>();
+        Map<Integer, T> respostas = new LinkedHashMap<>();
+        Set<Integer> atrasados = new TreeSet<>();
+        Set<Integer> falhados = new TreeSet<>();
+        for (int pid : alvos) {
+            if (emCurso.contains(pid)) {
+                // A chamada anterior ainda está bloqueada: não se ocupa outra thread com o mesmo nó.
+                atrasados.add(pid);
+                prazosFalhadosPorNo.computeIfAbsent(pid, k -> new AtomicLong()).incrementAndGet();
+                continue;
+            }
+            pendentes.put(pid, executor.submit(() -> {
+                // Só as chamadas que chegam a correr contam: uma tarefa cancelada na fila nunca entra aqui.
+                emCurso.add(pid);
+                long t0 = System.nanoTime();
+                try {
+                    return pedido.pedir(pid);
+                } finally {
+                    latenciasNs.put(pid, System.nanoTime() - t0);
+                    emCurso.remove(pid);
+                }
+            }));
+        }
+
+        for (Map.Entry<Integer, Future<T>> entry : pendentes.entrySet()) {
+            int pid = entry.getKey();
+            Future<T> futuro = entry.getValue();
+            try {
+                long restante = Math.max(0, limite - System.nanoTime());
+                respostas.put(pid, futuro.get(restante, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // O nó não respondeu dentro do prazo: fica obsoleto nesta rodada.
+                futuro.cancel(true);
+                atrasados.add(pid);
+                prazosFalhadosPorNo.computeIfAbsent(pid, k -> new AtomicLong()).incrementAndGet();
+            } catch (ExecutionException e) {
+                falhados.add(pid);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futuro.cancel(true);
+                atrasados.add(pid);
+            }
+        }
+
+        long duracaoNs = System.nanoTime() - inicio;
+        totalPrazosFalhados.addAndGet(atrasados.size());
+
+        Map<Integer, Long> latenciasMs = new LinkedHashMap<>();
+        for (int pid : alvos) {
+            Long ns = latenciasNs.get(pid);
+            if (ns != null) latenciasMs.put(pid, TimeUnit.NANOSECONDS.toMillis(ns));
+        }
+        return new Reuniao<>(respostas, atrasados, falhados, TimeUnit.NANOSECONDS.toMillis(duracaoNs), latenciasMs);
+    }
+
+    /** Encerra as threads de coleta. */
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    // --- Estatísticas ---
+    public long getTotalRodadas() { return totalRodadas.get(); }
+    public long getTotalPrazosFalhados() { return totalPrazosFalhados.get(); }
+    public long getPrazosFalhados(int pid) {
+        AtomicLong c = prazosFalhadosPorNo.get(pid);
+        return c == null ? 0 : c.get();
+    }
+    public ResultadoColeta getUltimaRodada() { return ultimaRodada; }
+    public long getPrazoRodadaMs() { return prazoRodadaMs; }
+    public int getIdLider() { return idLider; }
+
+    /**
+     * Respostas de uma chamada a vários nós, por ID, com os nós atrasados e falhados.
+     */
+    public static final class Reuniao<T> {
+        final Map<Integer, T> respostas;
+        final Set<Integer> atrasados;
+        final Set<Integer> falhados;
+        final long duracaoMs;
+        final Map<Integer, Long> latenciasMs;
+
+        Reuniao(Map<Integer, T> respostas, Set<Integer> atrasados, Set<Integer> falhados,
+                long duracaoMs, Map<Integer, Long> latenciasMs) {
+            this.respostas = respostas;
+            this.atrasados = atrasados;
+            this.falhados = falhados;
+            this.duracaoMs = duracaoMs;
+            this.latenciasMs = latenciasMs;
+        }
+
+        /** Respostas recebidas dentro do prazo, pela ordem dos alvos. */
+        public Map<Integer, T> getRespostas() { return respostas; }
+        public Set<Integer> getAtrasados() { return atrasados; }
+        public Set<Integer> getFalhados() { return falhados; }
+        public long getDuracaoMs() { return duracaoMs; }
+    }
+
+    /**
+     * Resultado imutável de uma rodada de coleta.
+     */
+    public static final class ResultadoColeta {
+        private final List<Recurso> recursos;
+        private final Set<Integer> atrasados;
+        private final Set<Integer> falhados;
+        private final long duracaoMs;
+        private final Map<Integer, Long> latenciasMs;
+
+        ResultadoColeta(List<Recurso> recursos, Set<Integer> atrasados, Set<Integer> falhados,
+                        long duracaoMs, Map<Integer, Long> latenciasMs) {
+            this.recursos = Collections.unmodifiableList(recursos);
+            this.atrasados = Collections.unmodifiableSet(atrasados);
+            this.falhados = Collections.unmodifiableSet(falhados);
+            this.duracaoMs = duracaoMs;
+            this.latenciasMs = Collections.unmodifiableMap(latenciasMs);
+        }
+
+        /** Recursos recebidos dentro do prazo (snapshot parcial). */
+        public List<Recurso> getRecursos() { return recursos; }
+        /** Nós que não responderam a tempo e ficaram obsoletos nesta rodada. */
+        public Set<Integer> getAtrasados() { return atrasados; }
+        /** Nós cuja chamada terminou com erro. */
+        public Set<Integer> getFalhados() { return falhados; }
+        public long getDuracaoMs() { return duracaoMs; }
+        /** Latência de cada nó que terminou a chamada (com ou sem sucesso). */
+        public Map<Integer, Long> getLatenciasMs() { return latenciasMs; }
+    }
+}
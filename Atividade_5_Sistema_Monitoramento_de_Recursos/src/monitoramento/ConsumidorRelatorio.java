@@ -0,0 +1,10 @@
+package monitoramento;
+
+/**
+ * Recebe relatórios já descodificados, seja da rede (ClienteMonitor) ou da reprodução do log.
+ * A vista recebida é reutilizada: o consumidor não deve guardá-la depois de retornar.
+ */
+@FunctionalInterface
+public interface ConsumidorRelatorio {
+    void consumir(RelatorioDecodificado relatorio);
+}
@@ -0,0 +1,95 @@
+package monitoramento;
+
+/**
+ * Detetor de falhas adaptativo "phi accrual" (Hayashibara et al.) para um único par.
+ * Guarda uma janela deslizante dos intervalos entre heartbeats em arrays primitivos e
+ * calcula o nível de suspeita phi = -log10(P(o próximo heartbeat ainda chegar)),
+ * assumindo uma distribuição normal dos intervalos.
+ * Em ligações estáveis phi sobe depressa após um silêncio; em ligações com jitter sobe devagar.
+ */
+public class DetectorPhiAccrual {
+    private final double[] intervalos;
+    private final double desvioMinimoMs;
+    private final double pausaAceitavelMs;
+    private int tamanho;
+    private int proximo;
+    private double soma;
+    private double somaQuadrados;
+    private long ultimoHeartbeatMs = -1;
+
+    /**
+     * @param tamanhoJanela Número de intervalos mantidos na janela.
+     * @param intervaloEsperadoMs Intervalo nominal entre heartbeats, usado antes de haver amostras.
+     * @param desvioMinimoMs Desvio padrão mínimo, para evitar suspeitas excessivas em ligações muito regulares.
+     * @param pausaAceitavelMs Margem somada à média, para tolerar pausas curtas (ex.: GC) sem suspeitar.
+     */
+    public DetectorPhiAccrual(int tamanhoJanela, long intervaloEsperadoMs, double desvioMinimoMs, double pausaAceitavelMs) {
+        this.intervalos = new double[tamanhoJanela];
+        this.desvioMinimoMs = desvioMinimoMs;
+        this.pausaAceitavelMs = pausaAceitavelMs;
+        // Estimativa inicial: o intervalo nominal com um desvio de um quarto.
+        double desvio = intervaloEsperadoMs / 4.0;
+        adicionar(intervaloEsperadoMs - desvio);
+        adicionar(intervaloEsperadoMs + desvio);
+    }
+
+    /**
+     * Regista a chegada de um heartbeat.
+     */
+    public synchronized void registarHeartbeat(long agoraMs) {
+        if (ultimoHeartbeatMs >= 0) {
+            adicionar(agoraMs - ultimoHeartbeatMs);
+        }
+        ultimoHeartbeatMs = agoraMs;
+    }
+
+    private void adicionar(double intervalo) {
+        if (tamanho == intervalos.length) {
+            double antigo = intervalos[proximo];
+            soma -= antigo;
+            somaQuadrados -= antigo * antigo;
+        } else {
+            tamanho++;
+        }
+        intervalos[proximo] = intervalo;
+        soma += intervalo;
+        somaQuadrados += intervalo * intervalo;
+        proximo = (proximo + 1) % intervalos.length;
+    }
+
+    /**
+     * Nível de suspeita atual. Devolve 0 enquanto não tiver chegado nenhum heartbeat.
+     */
+    public synchronized double phi(long agoraMs) {
+        if (ultimoHeartbeatMs < 0) return 0.0;
+        double media = soma / tamanho;
+        double variancia = Math.max(0, somaQuadrados / tamanho - media * media);
+        media += pausaAceitavelMs;
+        double desvio = Math.max(Math.sqrt(variancia), desvioMinimoMs);
+        double decorrido = agoraMs - ultimoHeartbeatMs;
+        // Aproximação logística da função de distribuição normal.
+        double y = (decorrido - media) / desvio;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (decorrido > media) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return Math.max(0.0, -Math.log10(1.0 - 1.0 / (1.0 + e)));
+    }
+
+    /**
+     * Descarta o histórico (por exemplo, quando o par se reconecta após uma falha).
+     */
+    public synchronized void reiniciar(long intervaloEsperadoMs) {
+        tamanho = 0;
+        proximo = 0;
+        soma = 0;
+        somaQuadrados = 0;
+        ultimoHeartbeatMs = -1;
+        double desvio = intervaloEsperadoMs / 4.0;
+        adicionar(intervaloEsperadoMs - desvio);
+        adicionar(intervaloEsperadoMs + desvio);
+    }
+
+    public synchronized double getMediaMs() { return soma / tamanho; }
+    public synchronized long getUltimoHeartbeatMs() { return ultimoHeartbeatMs; }
+}
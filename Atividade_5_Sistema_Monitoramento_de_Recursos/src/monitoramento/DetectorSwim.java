@@ -0,0 +1,407 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Detetor de falhas e pertença no estilo SWIM.
+ *
+ * Em cada período o nó sonda um único par (por ordem aleatória). Se não houver ACK
+ * dentro do timeout, pede a k outros pares que o sondem indiretamente (PING_REQ).
+ * Sem resposta até ao fim do período, o par passa a SUSPEITO; se não refutar a
+ * suspeita a tempo, é confirmado como MORTO. Suspeitas, confirmações e refutações
+ * são disseminadas por piggyback nas próprias mensagens de sondagem.
+ *
+ * Os membros MORTOS continuam a ser sondados, a um ritmo baixo (um a cada
+ * {@link #PERIODOS_SONDAGEM_MORTOS} períodos, ou em todos os períodos se não houver outros
+ * alvos), e cada mensagem para um membro que não está VIVO leva o estado que lhe é atribuído.
+ * Assim, um nó declarado morto por engano (partição que sarou, nó lento que recuperou) recebe
+ * a confirmação, refuta-a com uma incarnação maior e volta a VIVO em todos os membros.
+ *
+ * Enquanto esteve isolado, esse nó também declarou os outros mortos. Para que essas
+ * confirmações não se espalhem depois da cura, as atualizações vindas de um membro que não se
+ * considera VIVO só são aplicadas quando dizem respeito a ele ou a quem as recebe, e o nó que
+ * refuta a própria morte descarta as suas suspeitas e confirmações e volta a considerar VIVOS
+ * os membros que tinha por SUSPEITOS ou MORTOS (os que morreram de facto voltam a ser
+ * detetados pela sondagem). As confirmações dessas mesmas incarnações que ainda lhe cheguem
+ * de nós que não foram readmitidos são ignoradas.
+ *
+ * Um nó lento ou sobrecarregado não deve espalhar suspeitas sobre pares saudáveis. Como no
+ * Lifeguard, cada nó mantém uma medida da sua saúde local: sobe sempre que tem de refutar uma
+ * suspeita sobre si, desce a cada sondagem bem-sucedida, e multiplica o período, o timeout do
+ * ACK e o tempo de suspeita deste nó. Uma sondagem sem resposta não conta: numa partição, os
+ * dois lados deixariam de detetar o outro a tempo.
+ *
+ * A classe não tem threads próprias: quem a usa chama {@link #tick(long)} com
+ * frequência e entrega as mensagens recebidas em {@link #receber(MensagemSwim, long)}.
+ * Isto permite usá-la tanto sobre UDP ({@link ServicoSwim}) como num transporte em
+ * memória ({@link SimuladorSwim}).
+ */
+public class DetectorSwim {
+    public static final byte VIVO = 0;
+    public static final byte SUSPEITO = 1;
+    public static final byte MORTO = 2;
+
+    // Número máximo de atualizações transportadas em cada mensagem (32 x 9 bytes cabem folgadamente num datagrama).
+    private static final int MAX_PIGGYBACK = 32;
+    // Multiplicador do número de retransmissões de cada atualização (λ·log2(N+1)).
+    private static final int LAMBDA = 3;
+    // Um período em cada PERIODOS_SONDAGEM_MORTOS sonda um membro MORTO, para o readmitir se recuperou.
+    static final int PERIODOS_SONDAGEM_MORTOS = 10;
+    // Valor máximo da saúde local: os tempos deste nó chegam a ser multiplicados por SAUDE_MAXIMA + 1.
+    private static final int SAUDE_MAXIMA = 8;
+
+    /** Envia uma mensagem para outro membro. */
+    public interface Transporte { void enviar(int destino, MensagemSwim mensagem); }
+
+    /** Recebe as mudanças de estado dos membros. */
+    public interface Ouvinte {
+        void noSuspeito(int id);
+        void noFalhou(int id);
+        void noAtivo(int id);
+    }
+
+    private static final class Membro {
+        final int id;
+        byte estado = VIVO;
+        int incarnacao;
+        long suspeitoDesdeMs;
+        // Incarnação cuja morte este nó deu por errada ao ser readmitido (-1 = nenhuma).
+        int incarnacaoDescartada = -1;
+        Membro(int id) { this.id = id; }
+    }
+
+    private static final class Atualizacao {
+        final int id;
+        final byte estado;
+        final int incarnacao;
+        int restantes;
+        Atualizacao(int id, byte estado, int incarnacao, int restantes) {
+            this.id = id;
+            this.estado = estado;
+            this.incarnacao = incarnacao;
+            this.restantes = restantes;
+        }
+    }
+
+    private final int id;
+    private final long periodoMs;
+    private final long timeoutAckMs;
+    private final long tempoSuspeitaMs;
+    private final int k;
+    private final Transporte transporte;
+    private final Ouvinte ouvinte;
+    private final Random aleatorio;
+
+    private final Map<Integer, Membro> membros = new HashMap<>();
+    private final List<Integer> ordemSondagem = new ArrayList<>();
+    private int posicaoSondagem;
+    private int periodosSemSondarMortos;
+    private int minhaIncarnacao;
+    // Saúde local (0 = saudável): multiplica os tempos deste nó por saudeLocal + 1.
+    private int saudeLocal;
+    private final int retransmissoes;
+
+    // Atualizações por disseminar, no máximo uma por membro (a mais recente).
+    private final Map<Integer, Atualizacao> disseminacao = new LinkedHashMap<>();
+
+    // Sondagem do período atual.
+    private int alvoSondagem = -1;
+    private int sequenciaSondagem;
+    private long inicioSondagemMs;
+    private boolean ackRecebido;
+    private boolean indiretaEnviada;
+    private long proximoPeriodoMs = -1;
+    private int proximaSequencia;
+
+    // Sondagens indiretas pedidas por outros: sequência local -> {requerente, sequência original, instante}.
+    private final Map<Integer, long[]> reencaminhamentos = new HashMap<>();
+
+    // Estatísticas
+    private long mensagensEnviadas;
+    private long mensagensRecebidas;
+
+    /**
+     * @param id ID deste nó.
+     * @param outros IDs dos restantes membros.
+     * @param periodoMs Duração de cada período de sondagem.
+     * @param k Número de pares usados nas sondagens indiretas.
+     * @param periodosSuspeita Número de períodos até uma suspeita ser confirmada.
+     */
+    public DetectorSwim(int id, Collection<Integer> outros, long periodoMs, int k, int periodosSuspeita,
+                        Transporte transporte, Ouvinte ouvinte, Random aleatorio) {
+        this.id = id;
+        this.periodoMs = periodoMs;
+        this.timeoutAckMs = Math.max(1, periodoMs / 5);
+        this.tempoSuspeitaMs = periodosSuspeita * periodoMs;
+        this.k = k;
+        this.transporte = transporte;
+        this.ouvinte = ouvinte;
+        this.aleatorio = aleatorio;
+        for (int outro : outros) {
+            if (outro != id) {
+                membros.put(outro, new Membro(outro));
+                ordemSondagem.add(outro);
+            }
+        }
+        Collections.shuffle(ordemSondagem, aleatorio);
+        int log2 = 32 - Integer.numberOfLeadingZeros(membros.size() + 1);
+        this.retransmissoes = LAMBDA * Math.max(1, log2);
+    }
+
+    /**
+     * Avança o protocolo até ao instante indicado: trata os timeouts e inicia novas sondagens.
+     */
+    public synchronized void tick(long agoraMs) {
+        if (proximoPeriodoMs < 0) {
+            // O primeiro período começa num ponto aleatório, para os nós não sondarem em sincronia.
+            proximoPeriodoMs = agoraMs + (long) (aleatorio.nextDouble() * periodoMs);
+        }
+
+        for (Membro m : membros.values()) {
+            if (m.estado == SUSPEITO && agoraMs - m.suspeitoDesdeMs >= tempoSuspeitaMs * (saudeLocal + 1)) {
+                confirmar(m);
+            }
+        }
+
+        if (alvoSondagem != -1 && !ackRecebido && !indiretaEnviada
+                && agoraMs - inicioSondagemMs >= timeoutAckMs * (saudeLocal + 1)) {
+            enviarSondagensIndiretas();
+        }
+
+        Iterator<long[]> it = reencaminhamentos.values().iterator();
+        while (it.hasNext()) {
+            if (agoraMs - it.next()[2] > periodoMs) it.remove();
+        }
+
+        if (agoraMs >= proximoPeriodoMs) {
+            terminarSondagem(agoraMs);
+            iniciarSondagem(agoraMs);
+            proximoPeriodoMs = agoraMs + periodoMs * (saudeLocal + 1);
+        }
+    }
+
+    /**
+     * Processa uma mensagem recebida de outro membro.
+     */
+    public synchronized void receber(MensagemSwim msg, long agoraMs) {
+        mensagensRecebidas++;
+        Membro remetente = membros.get(msg.remetente);
+        boolean remetenteDuvidoso = remetente != null && remetente.estado != VIVO;
+        for (int i = 0; i < msg.numeroAtualizacoes(); i++) {
+            int idAlvo = msg.idsAtualizacao[i];
+            // Um membro que não está VIVO pode estar a voltar de uma partição, com uma vista desatualizada dos outros.
+            if (remetenteDuvidoso && idAlvo != msg.remetente && idAlvo != id) continue;
+            aplicar(idAlvo, msg.estadosAtualizacao[i], msg.incarnacoesAtualizacao[i], agoraMs);
+        }
+        switch (msg.tipo) {
+            case MensagemSwim.PING:
+                enviar(msg.remetente, MensagemSwim.ACK, msg.sequencia, id);
+                break;
+            case MensagemSwim.PING_REQ: {
+                int seq = ++proximaSequencia;
+                reencaminhamentos.put(seq, new long[] { msg.remetente, msg.sequencia, agoraMs });
+                enviar(msg.alvo, MensagemSwim.PING, seq, msg.alvo);
+                break;
+            }
+            case MensagemSwim.ACK:
+                if (msg.alvo == alvoSondagem && msg.sequencia == sequenciaSondagem) {
+                    ackRecebido = true;
+                } else {
+                    long[] pedido = reencaminhamentos.remove(msg.sequencia);
+                    if (pedido != null) {
+                        enviar((int) pedido[0], MensagemSwim.ACK, (int) pedido[1], msg.alvo);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void iniciarSondagem(long agoraMs) {
+        alvoSondagem = -1;
+        if (++periodosSemSondarMortos >= PERIODOS_SONDAGEM_MORTOS) {
+            periodosSemSondarMortos = 0;
+            alvoSondagem = alvoMorto();
+        }
+        if (alvoSondagem == -1) alvoSondagem = proximoAlvo();
+        if (alvoSondagem == -1) alvoSondagem = alvoMorto();
+        if (alvoSondagem == -1) return;
+        sequenciaSondagem = ++proximaSequencia;
+        inicioSondagemMs = agoraMs;
+        ackRecebido = false;
+        // Um membro MORTO é apenas sondado diretamente: sem resposta, continua MORTO.
+        indiretaEnviada = membros.get(alvoSondagem).estado == MORTO;
+        enviar(alvoSondagem, MensagemSwim.PING, sequenciaSondagem, alvoSondagem);
+    }
+
+    private void terminarSondagem(long agoraMs) {
+        if (alvoSondagem == -1) return;
+        Membro m = membros.get(alvoSondagem);
+        alvoSondagem = -1;
+        if (ackRecebido) {
+            saudeLocal = Math.max(0, saudeLocal - 1);
+        } else if (m.estado == VIVO) {
+            suspeitar(m, m.incarnacao, agoraMs);
+        }
+    }
+
+    /**
+     * Percorre os membros numa ordem aleatória, voltando a baralhar a cada volta completa.
+     */
+    private int proximoAlvo() {
+        for (int tentativas = 0; tentativas < ordemSondagem.size(); tentativas++) {
+            if (posicaoSondagem >= ordemSondagem.size()) {
+                Collections.shuffle(ordemSondagem, aleatorio);
+                posicaoSondagem = 0;
+            }
+            int candidato = ordemSondagem.get(posicaoSondagem++);
+            if (membros.get(candidato).estado != MORTO) return candidato;
+        }
+        return -1;
+    }
+
+    /** Um membro MORTO ao acaso, ou -1 se não houver nenhum. */
+    private int alvoMorto() {
+        List<Integer> mortos = new ArrayList<>();
+        for (Membro m : membros.values()) {
+            if (m.estado == MORTO) mortos.add(m.id);
+        }
+        return mortos.isEmpty() ? -1 : mortos.get(aleatorio.nextInt(mortos.size()));
+    }
+
+    private void enviarSondagensIndiretas() {
+        indiretaEnviada = true;
+        List<Integer> candidatos = new ArrayList<>();
+        for (Membro m : membros.values()) {
+            if (m.id != alvoSondagem && m.estado == VIVO) candidatos.add(m.id);
+        }
+        for (int i = 0; i < k && !candidatos.isEmpty(); i++) {
+            int intermediario = candidatos.remove(aleatorio.nextInt(candidatos.size()));
+            enviar(intermediario, MensagemSwim.PING_REQ, sequenciaSondagem, alvoSondagem);
+        }
+    }
+
+    /**
+     * Aplica uma atualização de pertença recebida por piggyback, segundo as regras de precedência do SWIM.
+     */
+    private void aplicar(int idAlvo, byte estado, int incarnacao, long agoraMs) {
+        if (idAlvo == id) {
+            // Refuta qualquer suspeita ou confirmação sobre si próprio com uma incarnação maior.
+            if (estado != VIVO && incarnacao >= minhaIncarnacao) {
+                minhaIncarnacao = incarnacao + 1;
+                saudeLocal = Math.min(SAUDE_MAXIMA, saudeLocal + 1);
+                disseminar(id, VIVO, minhaIncarnacao);
+                if (estado == MORTO) readmitirMortos();
+            }
+            return;
+        }
+        Membro m = membros.get(idAlvo);
+        if (m == null) return;
+        switch (estado) {
+            case VIVO:
+                if (incarnacao > m.incarnacao) {
+                    boolean recuperado = m.estado != VIVO;
+                    m.estado = VIVO;
+                    m.incarnacao = incarnacao;
+                    disseminar(idAlvo, VIVO, incarnacao);
+                    if (recuperado) ouvinte.noAtivo(idAlvo);
+                }
+                break;
+            case SUSPEITO:
+                if ((m.estado == VIVO && incarnacao >= m.incarnacao) || (m.estado == SUSPEITO && incarnacao > m.incarnacao)) {
+                    suspeitar(m, incarnacao, agoraMs);
+                }
+                break;
+            case MORTO:
+                // Uma confirmação antiga não anula a refutação de um membro readmitido (incarnação maior).
+                if (m.estado != MORTO && incarnacao >= m.incarnacao && incarnacao > m.incarnacaoDescartada) {
+                    m.incarnacao = incarnacao;
+                    confirmar(m);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Este nó foi dado como morto: esteve isolado, pelo que as suas suspeitas e confirmações não
+     * são de confiança. Deixa de as disseminar e volta a considerar VIVOS esses membros.
+     */
+    private void readmitirMortos() {
+        disseminacao.values().removeIf(a -> a.estado != VIVO);
+        alvoSondagem = -1; // A sondagem em curso pode ter sido perdida durante o isolamento.
+        for (Membro m : membros.values()) {
+            if (m.estado != VIVO) {
+                m.incarnacaoDescartada = m.incarnacao;
+                m.estado = VIVO;
+                ouvinte.noAtivo(m.id);
+            }
+        }
+    }
+
+    private void suspeitar(Membro m, int incarnacao, long agoraMs) {
+        m.estado = SUSPEITO;
+        m.incarnacao = incarnacao;
+        m.suspeitoDesdeMs = agoraMs;
+        disseminar(m.id, SUSPEITO, incarnacao);
+        ouvinte.noSuspeito(m.id);
+    }
+
+    private void confirmar(Membro m) {
+        m.estado = MORTO;
+        disseminar(m.id, MORTO, m.incarnacao);
+        ouvinte.noFalhou(m.id);
+    }
+
+    private void disseminar(int idAlvo, byte estado, int incarnacao) {
+        disseminacao.remove(idAlvo);
+        disseminacao.put(idAlvo, new Atualizacao(idAlvo, estado, incarnacao, retransmissoes));
+    }
+
+    private void enviar(int destino, byte tipo, int sequencia, int alvo) {
+        // O destino que não está VIVO recebe sempre o estado que lhe é atribuído, para o poder refutar.
+        Membro membroDestino = membros.get(destino);
+        boolean estadoDestino = membroDestino != null && membroDestino.estado != VIVO;
+        int n = Math.min(estadoDestino ? MAX_PIGGYBACK - 1 : MAX_PIGGYBACK, disseminacao.size());
+        int total = estadoDestino ? n + 1 : n;
+        int[] ids = new int[total];
+        byte[] estados = new byte[total];
+        int[] incarnacoes = new int[total];
+        // As atualizações mais recentes (no fim do mapa) têm prioridade.
+        List<Atualizacao> todas = new ArrayList<>(disseminacao.values());
+        for (int i = 0; i < n; i++) {
+            Atualizacao a = todas.get(todas.size() - 1 - i);
+            ids[i] = a.id;
+            estados[i] = a.estado;
+            incarnacoes[i] = a.incarnacao;
+            if (--a.restantes <= 0) disseminacao.remove(a.id);
+        }
+        if (estadoDestino) {
+            ids[n] = destino;
+            estados[n] = membroDestino.estado;
+            incarnacoes[n] = membroDestino.incarnacao;
+        }
+        mensagensEnviadas++;
+        transporte.enviar(destino, new MensagemSwim(tipo, id, sequencia, alvo, ids, estados, incarnacoes));
+    }
+
+    // --- Consultas ---
+    public int getId() { return id; }
+    public synchronized byte getEstado(int idMembro) {
+        Membro m = membros.get(idMembro);
+        return m == null ? MORTO : m.estado;
+    }
+    public synchronized long getMensagensEnviadas() { return mensagensEnviadas; }
+    public synchronized long getMensagensRecebidas() { return mensagensRecebidas; }
+    public long getPeriodoMs() { return periodoMs; }
+}
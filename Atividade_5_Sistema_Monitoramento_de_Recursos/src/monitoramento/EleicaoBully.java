@@ -0,0 +1,206 @@
+package monitoramento;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Eleição Bully de um nó, com as mensagens RMI enviadas em paralelo.
+ *
+ * A mensagem de eleição é enviada ao mesmo tempo a todos os nós de ID maior, e a decisão
+ * é tomada assim que o primeiro responde (um nó maior assume a eleição) ou assim que todos
+ * falham (o nó torna-se coordenador), sem esperas fixas. O prazo para os nós que não
+ * respondem deriva da latência RMI medida ({@link MetricasNo#getRttReferenciaUs()}).
+ *
+ * Pedidos de eleição repetidos enquanto uma eleição decorre, ou enquanto se espera pelo
+ * anúncio de um nó maior, são agregados na eleição em curso. Um coordenador ativo que
+ * recebe uma mensagem de eleição limita-se a reenviar o seu anúncio ao remetente.
+ */
+public class EleicaoBully {
+    private static final Registador LOG = Registador.para("Eleicao");
+    public static final long PRAZO_MIN_MS = Long.getLong("monitoramento.eleicao.prazoMinMs", 200);
+    public static final long PRAZO_MAX_MS = Long.getLong("monitoramento.eleicao.prazoMaxMs", 3000);
+    // Múltiplo do RTT de referência usado como prazo de resposta.
+    private static final int FATOR_PRAZO = 4;
+    // Espera máxima pelo anúncio do coordenador depois de um OK.
+    private static final long ESPERA_MAX_ANUNCIO_MS = PRAZO_MAX_MS * 2;
+
+    private enum Resposta { OK, TODOS_FALHARAM, PRAZO }
+
+    private final No no;
+    private final MetricasNo metricas;
+    private final ExecutorService executor;
+    private final AtomicBoolean emEleicao = new AtomicBoolean(false);
+    // Identifica a eleição em curso; decisões e prazos de eleições anteriores são ignorados.
+    private final AtomicLong geracao = new AtomicLong();
+    private volatile CompletableFuture<Resposta> respostaAtual;
+
+    public EleicaoBully(No no, MetricasNo metricas) {
+        this.no = no;
+        this.metricas = metricas;
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "eleicao-P" + no.getId() + "-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Inicia uma eleição sem bloquear. Se já houver uma em curso, o pedido é agregado nela.
+     */
+    public void iniciar() {
+        if (!no.isAtivo()) return;
+        if (!emEleicao.compareAndSet(false, true)) {
+            metricas.registarEleicaoAgregada();
+            LOG.debug("[ELEICAO] No %d: eleicao ja em curso, pedido agregado.", no.getId());
+            return;
+        }
+        long g = geracao.incrementAndGet();
+        metricas.eleicaoIniciada();
+        LOG.info("%n*************************************************%n"
+                + "[ELEICAO] No %d iniciou uma ELEICAO (Bully).%n"
+                + "*************************************************", no.getId());
+
+        List<Integer> maiores = no.getNosDaRede().values().stream()
+                .filter(info -> info.getId() > no.getId() && info.isAtivo())
+                .map(NoInfo::getId)
+                .collect(Collectors.toList());
+        if (maiores.isEmpty()) {
+            tornarCoordenador(g);
+            return;
+        }
+
+        long prazo = prazoMs();
+        CompletableFuture<Resposta> resposta = new CompletableFuture<>();
+        respostaAtual = resposta;
+        AtomicInteger pendentes = new AtomicInteger(maiores.size());
+        LOG.info("[ELEICAO] No %d enviando mensagem de eleicao para %s (prazo %d ms).", no.getId(), maiores, prazo);
+        try {
+            for (int pid : maiores) {
+                // Uma chamada bem-sucedida já indica que o nó maior está vivo e vai assumir a eleição.
+                CompletableFuture.supplyAsync(() -> no.enviarMensagemEleicao(pid), executor).thenAccept(entregue -> {
+                    if (entregue) {
+                        resposta.complete(Resposta.OK);
+                    } else if (pendentes.decrementAndGet() == 0) {
+                        resposta.complete(Resposta.TODOS_FALHARAM);
+                    }
+                });
+            }
+            resposta.completeOnTimeout(Resposta.PRAZO, prazo, TimeUnit.MILLISECONDS)
+                    .thenAcceptAsync(r -> decidir(g, r, maiores.size(), prazo), executor);
+        } catch (RejectedExecutionException e) {
+            // O nó foi encerrado a meio da eleição.
+        }
+    }
+
+    /** Executa uma tarefa da eleição, ignorando-a se o nó já foi encerrado. */
+    private void executar(Runnable tarefa) {
+        try {
+            executor.execute(tarefa);
+        } catch (RejectedExecutionException e) {
+            // O nó foi encerrado.
+        }
+    }
+
+    private void decidir(long g, Resposta resposta, int numeroMaiores, long prazo) {
+        if (g != geracao.get() || !emEleicao.get()) return;
+        if (resposta != Resposta.OK) {
+            if (resposta == Resposta.PRAZO) {
+                LOG.aviso("[AVISO] No %d: nenhum no maior respondeu em %d ms.", no.getId(), prazo);
+            }
+            tornarCoordenador(g);
+            return;
+        }
+        // Cada nó maior pode, por sua vez, esperar pelos seus maiores: a espera cresce com a cadeia,
+        // mas com um teto, para que a morte do nó que respondeu não atrase a nova eleição durante minutos.
+        long espera = Math.min(prazo * (numeroMaiores + 1), ESPERA_MAX_ANUNCIO_MS);
+        LOG.info("[ELEICAO] No %d recebeu resposta de um no maior. Aguardando anuncio (ate %d ms).", no.getId(), espera);
+        CompletableFuture.delayedExecutor(espera, TimeUnit.MILLISECONDS, executor).execute(() -> {
+            if (g == geracao.get() && emEleicao.compareAndSet(true, false)) {
+                LOG.aviso("[AVISO] No %d: nenhum anuncio de coordenador em %d ms. Repetindo a eleicao.", no.getId(), espera);
+                iniciar();
+            }
+        });
+    }
+
+    private void tornarCoordenador(long g) {
+        if (!geracao.compareAndSet(g, g + 1)) return;
+        no.definirCoordenador(no.getId());
+        emEleicao.set(false);
+        long duracao = metricas.eleicaoConcluida();
+        LOG.info("%n!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!%n"
+                + "[ELEICAO] No %d: *** EU SOU O NOVO COORDENADOR! *** (eleicao em %d ms)%n"
+                + "!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!%n", no.getId(), Math.max(0, duracao));
+        for (NoInfo info : no.getNosDaRede().values()) {
+            int pid = info.getId();
+            if (pid != no.getId() && info.isAtivo()) {
+                executar(() -> no.enviarMensagemCoordenador(pid));
+            }
+        }
+    }
+
+    /**
+     * Assume a coordenação sem eleição: usado pelo nó de reserva quando o arrendamento do
+     * coordenador expira ({@link ArrendamentoLider}).
+     */
+    public void assumir() {
+        emEleicao.set(true);
+        long g = geracao.incrementAndGet();
+        metricas.eleicaoIniciada();
+        tornarCoordenador(g);
+    }
+
+    /**
+     * Mensagem de eleição de um nó menor: responde OK e assume a eleição.
+     */
+    public void eleicaoRecebida(int idRemetente) {
+        if (no.getId() <= idRemetente) return;
+        executar(() -> no.enviarMensagemOk(idRemetente));
+        if (no.getCoordenadorId() == no.getId() && !emEleicao.get()) {
+            // Já somos o coordenador: basta repetir o anúncio a quem perguntou.
+            metricas.registarEleicaoAgregada();
+            executar(() -> no.enviarMensagemCoordenador(idRemetente));
+            return;
+        }
+        iniciar();
+    }
+
+    public void okRecebido(int idRemetente) {
+        CompletableFuture<Resposta> resposta = respostaAtual;
+        if (resposta != null) resposta.complete(Resposta.OK);
+    }
+
+    public void anuncioRecebido(int novoCoordenadorId) {
+        geracao.incrementAndGet();
+        no.definirCoordenador(novoCoordenadorId);
+        emEleicao.set(false);
+        long duracao = metricas.eleicaoConcluida();
+        if (duracao >= 0) {
+            LOG.info("[ELEICAO] No %d: eleicao concluida em %d ms com P%d como coordenador.", no.getId(), duracao, novoCoordenadorId);
+        }
+    }
+
+    /**
+     * Prazo de resposta: um múltiplo do RTT de referência, limitado a [PRAZO_MIN_MS, PRAZO_MAX_MS].
+     * Sem medições, usa PRAZO_MAX_MS.
+     */
+    long prazoMs() {
+        long rttUs = metricas.getRttReferenciaUs();
+        if (rttUs <= 0) return PRAZO_MAX_MS;
+        return Math.max(PRAZO_MIN_MS, Math.min(PRAZO_MAX_MS, FATOR_PRAZO * rttUs / 1000));
+    }
+
+    public boolean isEmEleicao() { return emEleicao.get(); }
+
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+}
@@ -4,49 +4,154 @@ import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 public class EmissorMulticast {
+    private static final Registador LOG = Registador.para("Multicast");
     private static final String ENDERECO_MULTICAST = "239.0.0.1";
     private static final int PORTA_MULTICAST = 12345;
 
-    public void enviar(int idLider, List<Recurso> snapshot) {
+    /**
+     * Formatos de relatório suportados. Escolhido pela propriedade "monitoramento.formatoRelatorio".
+     */
+    public enum Formato { BINARIO, TEXTO }
+
+    private final Formato formato;
+    // Métricas do nó emissor (opcional).
+    private final MetricasNo metricas;
+    private long sequencia = 0;
+    // No formato binário, os relatórios seguem como deltas entre keyframes.
+    private final CodificadorDelta codificadorDelta = new CodificadorDelta();
+    // Buffer reutilizado entre envios no formato binário.
+    private ByteBuffer buffer = ByteBuffer.allocate(RelatorioBinario.tamanho(64));
+    // Datagrama reutilizado para cada fragmento.
+    private final byte[] datagrama = new byte[Fragmentos.TAMANHO_DATAGRAMA];
+
+    public EmissorMulticast() {
+        this(formatoDoSistema());
+    }
+
+    public EmissorMulticast(Formato formato) {
+        this(formato, null);
+    }
+
+    public EmissorMulticast(Formato formato, MetricasNo metricas) {
+        this.formato = formato;
+        this.metricas = metricas;
+    }
+
+    /**
+     * Formato definido por "monitoramento.formatoRelatorio", com registo nas métricas do nó.
+     */
+    public EmissorMulticast(MetricasNo metricas) {
+        this(formatoDoSistema(), metricas);
+    }
+
+    private static Formato formatoDoSistema() {
+        String valor = System.getProperty("monitoramento.formatoRelatorio", Formato.BINARIO.name());
+        try {
+            return Formato.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.aviso("[AVISO] Formato de relatorio desconhecido '%s'. A usar BINARIO.", valor);
+            return Formato.BINARIO;
+        }
+    }
+
+    public synchronized void enviar(int idLider, int relogioLamport, List<Recurso> snapshot) {
+        long inicioNs = System.nanoTime();
         try (MulticastSocket socket = new MulticastSocket()) {
 
             InetAddress localHost = InetAddress.getByName("127.0.0.1");
             socket.setNetworkInterface(NetworkInterface.getByInetAddress(localHost));
 
-            // --- NOVO FORMATO DE RELATÓRIO ---
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
-            LocalDateTime now = LocalDateTime.now();
-
-            StringBuilder sb = new StringBuilder();
-            sb.append(String.format("========== RELATÓRIO DE ESTADO DA REDE (Líder: P%d) ==========%n", idLider));
-            sb.append(String.format("| %-4s | %-8s | %-12s | %-11s | %-15s | %-15s%n", "NÓ", "CPU", "MEMÓRIA", "CARGA (1m)", "PROCESSADORES", " "));
-            sb.append(String.format("--------------------------------------------------------------------------------%n"));
-
-            int nosAtivos = 0;
-            for (Recurso r : snapshot) {
-                if (r != null) {
-                    sb.append(r.paraLinhaRelatorio()).append("\n");
-                    nosAtivos++;
-                }
+            sequencia++;
+            byte[] dados;
+            int comprimento;
+            if (formato == Formato.BINARIO) {
+                codificarBinario(idLider, relogioLamport, snapshot);
+                dados = buffer.array();
+                comprimento = buffer.position();
+            } else {
+                dados = construirTexto(idLider, snapshot).getBytes("UTF-8");
+                comprimento = dados.length;
+            }
+            if (comprimento > Fragmentos.TAMANHO_MAXIMO_SNAPSHOT) {
+                // Os clientes recusam snapshots acima deste tamanho.
+                LOG.erro("[LÍDER] Snapshot de %d bytes excede o maximo de %d; nao sera enviado.", comprimento, Fragmentos.TAMANHO_MAXIMO_SNAPSHOT);
+                return;
             }
 
-            sb.append(String.format("--------------------------------------------------------------------------------%n"));
-            sb.append(String.format("Relatório gerado em: %s | Nós ativos: %d%n", dtf.format(now), nosAtivos));
-            sb.append(String.format("================================================================================%n%n"));
-
-            byte[] dados = sb.toString().getBytes();
+            // O snapshot é dividido em datagramas abaixo da MTU; o cliente remonta-os.
             InetAddress grupo = InetAddress.getByName(ENDERECO_MULTICAST);
-            DatagramPacket pacote = new DatagramPacket(dados, dados.length, grupo, PORTA_MULTICAST);
-
-            socket.send(pacote);
+            long idSnapshot = Fragmentos.idSnapshot(idLider, sequencia);
+            int total = Fragmentos.numeroFragmentos(comprimento);
+            DatagramPacket pacote = new DatagramPacket(datagrama, datagrama.length, grupo, PORTA_MULTICAST);
+            long bytes = 0;
+            for (int indice = 0; indice < total; indice++) {
+                int tamanho = Fragmentos.escreverFragmento(datagrama, idSnapshot, indice, dados, comprimento);
+                pacote.setLength(tamanho);
+                socket.send(pacote);
+                bytes += tamanho;
+            }
+            if (metricas != null) metricas.registarEnvioMulticast(total, bytes, System.nanoTime() - inicioNs);
 
         } catch (Exception e) {
-            System.err.println("[LÍDER] Erro ao enviar snapshot via multicast: " + e.getMessage());
+            LOG.erro("[LÍDER] Erro ao enviar snapshot via multicast: %s", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private void codificarBinario(int idLider, int relogioLamport, List<Recurso> snapshot) {
+        int necessario = codificadorDelta.tamanhoMaximo(snapshot.size());
+        if (buffer.capacity() < necessario) {
+            buffer = ByteBuffer.allocate(Math.max(necessario, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        boolean keyframe = codificadorDelta.codificar(buffer, idLider, sequencia, relogioLamport, snapshot);
+        if (keyframe && metricas != null) metricas.registarKeyframeMulticast();
+    }
+
+    /**
+     * O próximo relatório binário será completo, para que os clientes novos ou que perderam
+     * relatórios reconstruam a vista sem esperar pelo keyframe periódico.
+     */
+    public void pedirKeyframe() {
+        codificadorDelta.pedirKeyframe();
+    }
+
+    private String construirTexto(int idLider, List<Recurso> snapshot) {
+        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+        LocalDateTime now = LocalDateTime.now();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(cabecalhoTexto(idLider));
+
+        int nosAtivos = 0;
+        for (Recurso r : snapshot) {
+            if (r != null) {
+                sb.append(r.paraLinhaRelatorio()).append("\n");
+                nosAtivos++;
+            }
+        }
+
+        sb.append(rodapeTexto(dtf.format(now), nosAtivos));
+        return sb.toString();
+    }
+
+    static String cabecalhoTexto(int idLider) {
+        return String.format("========== RELATÓRIO DE ESTADO DA REDE (Líder: P%d) ==========%n", idLider)
+                + String.format("| %-4s | %-8s | %-12s | %-11s | %-15s | %-15s%n", "NÓ", "CPU", "MEMÓRIA", "CARGA (1m)", "PROCESSADORES", " ")
+                + String.format("--------------------------------------------------------------------------------%n");
+    }
+
+    static String rodapeTexto(String dataGeracao, int nosAtivos) {
+        return String.format("--------------------------------------------------------------------------------%n")
+                + String.format("Relatório gerado em: %s | Nós ativos: %d%n", dataGeracao, nosAtivos)
+                + String.format("================================================================================%n%n");
+    }
+
+    public Formato getFormato() { return formato; }
+    public synchronized long getSequencia() { return sequencia; }
+}
@@ -0,0 +1,63 @@
+package monitoramento;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+
+/**
+ * Envia o {@link SinalLider} do coordenador para o grupo multicast dos relatórios, a cada
+ * "monitoramento.sinal.intervaloMs" (padrão 250 ms), enquanto o nó for o coordenador.
+ * O endereço anunciado para a autenticação define-se com "monitoramento.auth.endereco"
+ * (padrão 127.0.0.1).
+ */
+public class EmissorSinalLider implements Runnable {
+    private static final Registador LOG = Registador.para("Sinal");
+    private static final String ENDERECO_MULTICAST = "239.0.0.1";
+    private static final int PORTA_MULTICAST = 12345;
+    public static final long INTERVALO_MS = Math.max(10, Long.getLong("monitoramento.sinal.intervaloMs", 250));
+    public static final String ENDERECO_AUTENTICACAO = System.getProperty("monitoramento.auth.endereco", "127.0.0.1");
+
+    private final No noPai;
+
+    public EmissorSinalLider(No noPai) {
+        this.noPai = noPai;
+    }
+
+    @Override
+    public void run() {
+        try (MulticastSocket socket = new MulticastSocket()) {
+            socket.setNetworkInterface(NetworkInterface.getByInetAddress(InetAddress.getByName("127.0.0.1")));
+            InetAddress grupo = InetAddress.getByName(ENDERECO_MULTICAST);
+            InetAddress enderecoAutenticacao = InetAddress.getByName(ENDERECO_AUTENTICACAO);
+            ByteBuffer buffer = ByteBuffer.allocate(SinalLider.TAMANHO_MAXIMO);
+            DatagramPacket pacote = new DatagramPacket(buffer.array(), 0, grupo, PORTA_MULTICAST);
+            LOG.info("[SINAL] Lider P%d: sinal do lider a cada %d ms (epoca %d).", noPai.getId(), INTERVALO_MS, noPai.getEpocaLideranca());
+
+            while (noPai.isAtivo() && noPai.getId() == noPai.getCoordenadorId()) {
+                // Sem arrendamento confirmado o coordenador não atrai clientes, tal como não coleta.
+                if (noPai.isArrendamentoValido()) enviar(socket, pacote, buffer, enderecoAutenticacao);
+                Thread.sleep(INTERVALO_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.erro("[ERRO] Lider P%d: emissor do sinal do lider parou: %s", noPai.getId(), e.getMessage());
+        }
+        LOG.info("[SINAL] Lider P%d: sinal do lider encerrado.", noPai.getId());
+    }
+
+    private void enviar(MulticastSocket socket, DatagramPacket pacote, ByteBuffer buffer, InetAddress enderecoAutenticacao) {
+        buffer.clear();
+        SinalLider.codificar(buffer, noPai.getId(), noPai.getEpocaLideranca(), enderecoAutenticacao,
+                ServidorAutenticacao.PORTA_AUTENTICACAO);
+        pacote.setLength(buffer.position());
+        try {
+            socket.send(pacote);
+            noPai.getMetricas().registarSinalLider();
+        } catch (Exception e) {
+            LOG.debug("[SINAL] Lider P%d: falha ao enviar o sinal: %s", noPai.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package monitoramento;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Componente do modo PUSH: amostra periodicamente os recursos do nó e envia-os
+ * em lotes para o coordenador atual. Se o coordenador mudar, o lote pendente
+ * segue para o novo coordenador no envio seguinte.
+ */
+public class EmissorTelemetria implements Runnable {
+    private static final Registador LOG = Registador.para("Telemetria");
+    // Intervalo entre amostras e número de amostras por lote (configuráveis).
+    private static final long INTERVALO_AMOSTRA_MS = Long.getLong("monitoramento.push.intervaloMs", 1000);
+    private static final int TAMANHO_LOTE = Integer.getInteger("monitoramento.push.lote", 2);
+    // Limite do lote pendente quando o coordenador está inacessível.
+    private static final int MAX_PENDENTES = 32;
+
+    private final No noPai;
+    private final List<Recurso> pendentes = new ArrayList<>();
+    private int ultimoCoordenador = -1;
+
+    public EmissorTelemetria(No noPai) {
+        this.noPai = noPai;
+    }
+
+    /** Idade máxima aceitável de uma amostra na tabela do líder. */
+    public static long getIdadeMaximaMs() {
+        return 3 * INTERVALO_AMOSTRA_MS * TAMANHO_LOTE;
+    }
+
+    @Override
+    public void run() {
+        while (noPai.isAtivo()) {
+            try {
+                Thread.sleep(INTERVALO_AMOSTRA_MS);
+                Recurso amostra = noPai.getStatusLocal();
+                if (amostra == null) continue;
+                pendentes.add(amostra);
+                if (pendentes.size() > MAX_PENDENTES) {
+                    pendentes.remove(0);
+                }
+                if (pendentes.size() >= TAMANHO_LOTE) {
+                    enviarLote();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void enviarLote() {
+        int coordenador = noPai.getCoordenadorId();
+        if (coordenador != ultimoCoordenador) {
+            if (ultimoCoordenador != -1) {
+                LOG.info("[PUSH] No %d: coordenador mudou de P%d para P%d. Telemetria redirecionada.",
+                        noPai.getId(), ultimoCoordenador, coordenador);
+            }
+            ultimoCoordenador = coordenador;
+        }
+
+        // O coordenador lê o seu próprio estado localmente em cada rodada.
+        if (coordenador == noPai.getId()) {
+            pendentes.clear();
+            return;
+        }
+
+        NoInfo info = noPai.getNosDaRede().get(coordenador);
+        if (info == null || !info.isAtivo()) return;
+        try {
+            List<Recurso> lote = new ArrayList<>(pendentes);
+            noPai.getStubs().obter(coordenador).receberAmostras(lote, noPai.getRelogioLamport());
+            pendentes.clear();
+        } catch (RemoteException e) {
+            noPai.getStubs().invalidar(coordenador);
+        } catch (Exception e) {
+            // Coordenador ainda não registado; o lote fica pendente para o próximo envio.
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package monitoramento;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Esboço de quantis combinável para valores decimais não negativos.
+ * Os valores são escalados para inteiros (duas casas decimais) e contados nos mesmos
+ * baldes logarítmicos do {@link Histograma}, pelo que o erro relativo é de no máximo 12,5%.
+ * Dois esboços combinam-se somando os baldes, o que permite agregar janelas e nós
+ * sem guardar as amostras. O array de baldes cresce apenas até ao maior valor visto.
+ * Não é seguro para várias threads: a sincronização fica a cargo de quem o usa.
+ * É serializável para seguir nos resumos da coleta em árvore ({@link ResumoGrupo}).
+ */
+public class EsbocoQuantis implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final double ESCALA = 100.0;
+
+    private int[] baldes = new int[0];
+    private long contagem;
+
+    public void registar(double valor) {
+        long escalado = valor <= 0 ? 0 : Math.round(valor * ESCALA);
+        int i = Histograma.indice(escalado);
+        garantirCapacidade(i + 1);
+        baldes[i]++;
+        contagem++;
+    }
+
+    /**
+     * Acrescenta a este esboço as contagens de outro.
+     */
+    public void fundir(EsbocoQuantis outro) {
+        garantirCapacidade(outro.baldes.length);
+        for (int i = 0; i < outro.baldes.length; i++) baldes[i] += outro.baldes[i];
+        contagem += outro.contagem;
+    }
+
+    /**
+     * Valor aproximado (limite inferior do balde) do quantil indicado (0 a 100).
+     */
+    public double quantil(double p) {
+        if (contagem == 0) return Double.NaN;
+        long alvo = Math.max(1, (long) Math.ceil(contagem * p / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < baldes.length; i++) {
+            acumulado += baldes[i];
+            if (acumulado >= alvo) return Histograma.limiteInferior(i) / ESCALA;
+        }
+        return Histograma.limiteInferior(baldes.length - 1) / ESCALA;
+    }
+
+    /** Esvazia o esboço mantendo o array, para reutilização. */
+    public void limpar() {
+        Arrays.fill(baldes, 0);
+        contagem = 0;
+    }
+
+    public long getContagem() { return contagem; }
+
+    private void garantirCapacidade(int n) {
+        if (baldes.length < n) baldes = Arrays.copyOf(baldes, n);
+    }
+}
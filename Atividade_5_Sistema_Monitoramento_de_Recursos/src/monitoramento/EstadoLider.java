@@ -0,0 +1,36 @@
+package monitoramento;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Estado enviado pelo coordenador ao nó de reserva em cada renovação do arrendamento.
+ * O snapshot só segue quando mudou desde a última renovação aceite (caso contrário é null).
+ */
+public class EstadoLider implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int idLider;
+    private final int relogioLamport;
+    private final long duracaoArrendamentoMs;
+    private final boolean clienteAutenticado;
+    private final long versaoSnapshot;
+    private final List<Recurso> snapshot;
+
+    public EstadoLider(int idLider, int relogioLamport, long duracaoArrendamentoMs, boolean clienteAutenticado,
+                       long versaoSnapshot, List<Recurso> snapshot) {
+        this.idLider = idLider;
+        this.relogioLamport = relogioLamport;
+        this.duracaoArrendamentoMs = duracaoArrendamentoMs;
+        this.clienteAutenticado = clienteAutenticado;
+        this.versaoSnapshot = versaoSnapshot;
+        this.snapshot = snapshot;
+    }
+
+    public int getIdLider() { return idLider; }
+    public int getRelogioLamport() { return relogioLamport; }
+    public long getDuracaoArrendamentoMs() { return duracaoArrendamentoMs; }
+    public boolean isClienteAutenticado() { return clienteAutenticado; }
+    public long getVersaoSnapshot() { return versaoSnapshot; }
+    public List<Recurso> getSnapshot() { return snapshot; }
+}
@@ -0,0 +1,251 @@
+package monitoramento;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Camada de fragmentação dos snapshots enviados por multicast.
+ * Cada datagrama leva um cabeçalho com o ID do snapshot, o índice do fragmento,
+ * o número total de fragmentos e o tamanho total do snapshot, para que o
+ * recetor consiga remontar relatórios maiores que um datagrama.
+ *
+ * Cabeçalho (18 bytes): magia (2), ID do snapshot (8), índice (2), total (2), tamanho total (4).
+ */
+public final class Fragmentos {
+    public static final short MAGIA = 0x4D46; // "MF"
+    public static final int TAMANHO_CABECALHO = 18;
+    // Tamanho de cada datagrama, abaixo da MTU típica de Ethernet para evitar fragmentação IP.
+    public static final int TAMANHO_DATAGRAMA = 1400;
+    public static final int TAMANHO_FRAGMENTO = TAMANHO_DATAGRAMA - TAMANHO_CABECALHO;
+    // Maior snapshot que o emissor envia (e o recetor aceita). Cobre o maior relatório binário
+    // (65535 nós) e limita a memória reservada por cada snapshot pendente.
+    public static final int TAMANHO_MAXIMO_SNAPSHOT = 4 * 1024 * 1024;
+
+    private Fragmentos() {}
+
+    /**
+     * Compõe o ID de um snapshot a partir do líder e do número de sequência,
+     * para que snapshots de líderes diferentes nunca se confundam.
+     */
+    public static long idSnapshot(int idLider, long sequencia) {
+        return ((long) idLider << 48) | (sequencia & 0xFFFFFFFFFFFFL);
+    }
+
+    /**
+     * Número de fragmentos necessários para um payload do tamanho indicado.
+     */
+    public static int numeroFragmentos(int comprimento) {
+        return Math.max(1, (comprimento + TAMANHO_FRAGMENTO - 1) / TAMANHO_FRAGMENTO);
+    }
+
+    /**
+     * Escreve no datagrama de destino o fragmento indicado do payload.
+     * @return O número de bytes escritos no datagrama.
+     */
+    public static int escreverFragmento(byte[] datagrama, long idSnapshot, int indice,
+                                        byte[] payload, int comprimento) {
+        int total = numeroFragmentos(comprimento);
+        int inicio = indice * TAMANHO_FRAGMENTO;
+        int tamanho = Math.min(TAMANHO_FRAGMENTO, comprimento - inicio);
+        ByteBuffer bb = ByteBuffer.wrap(datagrama);
+        bb.putShort(MAGIA);
+        bb.putLong(idSnapshot);
+        bb.putShort((short) indice);
+        bb.putShort((short) total);
+        bb.putInt(comprimento);
+        bb.put(payload, inicio, tamanho);
+        return TAMANHO_CABECALHO + tamanho;
+    }
+
+    /**
+     * Indica se o datagrama começa com a magia de fragmento.
+     */
+    public static boolean isFragmento(byte[] dados, int deslocamento, int comprimento) {
+        return comprimento >= TAMANHO_CABECALHO
+                && (short) (((dados[deslocamento] & 0xFF) << 8) | (dados[deslocamento + 1] & 0xFF)) == MAGIA;
+    }
+
+    /**
+     * Indica se os bytes entre a posição e o limite do buffer começam com a magia de fragmento.
+     */
+    public static boolean isFragmento(ByteBuffer datagrama) {
+        return datagrama.remaining() >= TAMANHO_CABECALHO && datagrama.getShort(datagrama.position()) == MAGIA;
+    }
+
+    /**
+     * Remonta os snapshots a partir dos fragmentos recebidos.
+     * Mantém no máximo um número fixo de snapshots incompletos e descarta os que
+     * ficam incompletos para além do tempo limite, contabilizando-os como perdidos.
+     */
+    public static class Remontador {
+        private final int maxPendentes;
+        private final long tempoLimiteMs;
+        // Ordem de inserção: o primeiro é sempre o snapshot pendente mais antigo.
+        private final Map<Long, Pendente> pendentes = new LinkedHashMap<>();
+
+        // Estatísticas
+        private long fragmentosRecebidos;
+        private long fragmentosDuplicados;
+        private long snapshotsCompletos;
+        private long snapshotsPerdidos;
+        private long fragmentosPerdidos;
+        private long fragmentosInvalidos;
+        // Snapshots entregues ou descartados recentemente, para ignorar fragmentos atrasados.
+        private final Map<Long, Boolean> recentes = new LinkedHashMap<Long, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) { return size() > 64; }
+        };
+
+        private static final class Pendente {
+            final byte[] dados;
+            final BitSet recebidos;
+            final int total;
+            final long criadoEmMs;
+            Pendente(int comprimento, int total, long criadoEmMs) {
+                this.dados = new byte[comprimento];
+                this.recebidos = new BitSet(total);
+                this.total = total;
+                this.criadoEmMs = criadoEmMs;
+            }
+        }
+
+        public Remontador(int maxPendentes, long tempoLimiteMs) {
+            this.maxPendentes = maxPendentes;
+            this.tempoLimiteMs = tempoLimiteMs;
+        }
+
+        /**
+         * Processa um fragmento recebido.
+         * @return O payload completo, se este fragmento completar um snapshot; null caso contrário.
+         */
+        public byte[] receber(byte[] dados, int deslocamento, int comprimento) {
+            ByteBuffer payload = receber(ByteBuffer.wrap(dados, deslocamento, comprimento));
+            if (payload == null) return null;
+            if (payload.array() != dados) return payload.array();
+            // Snapshot de um só fragmento: o payload é uma vista sobre o datagrama, que o chamador reutiliza.
+            byte[] copia = new byte[payload.remaining()];
+            payload.get(copia);
+            return copia;
+        }
+
+        /**
+         * Processa um fragmento entre a posição e o limite do buffer.
+         *
+         * Um snapshot de um só fragmento (o caso normal) é devolvido sem cópia nem alocação: o
+         * próprio buffer, com a posição e o limite ajustados ao payload, válido até ao próximo
+         * datagrama. Os snapshots de vários fragmentos são remontados num array próprio.
+         * @return O payload completo, se este fragmento completar um snapshot; null caso contrário.
+         */
+        public ByteBuffer receber(ByteBuffer bb) {
+            long agora = System.currentTimeMillis();
+            if (!pendentes.isEmpty()) expirar(agora);
+
+            bb.getShort();
+            long idSnapshot = bb.getLong();
+            int indice = bb.getShort() & 0xFFFF;
+            int total = bb.getShort() & 0xFFFF;
+            int comprimentoTotal = bb.getInt();
+            fragmentosRecebidos++;
+
+            // O cabeçalho vem da rede: um tamanho negativo ou enorme não pode chegar à alocação.
+            if (comprimentoTotal < 0 || comprimentoTotal > TAMANHO_MAXIMO_SNAPSHOT
+                    || indice >= total || total != numeroFragmentos(comprimentoTotal)) {
+                fragmentosInvalidos++;
+                return null;
+            }
+            if (total == 1) {
+                // Fragmentos repetidos de um só fragmento são tratados pelo consumidor (número de sequência).
+                if (bb.remaining() < comprimentoTotal) {
+                    // Datagrama truncado: conta como inválido, para não desaparecer das estatísticas.
+                    fragmentosInvalidos++;
+                    return null;
+                }
+                snapshotsCompletos++;
+                bb.limit(bb.position() + comprimentoTotal);
+                return bb;
+            }
+            if (recentes.containsKey(idSnapshot)) {
+                // Fragmento atrasado de um snapshot já entregue ou descartado.
+                fragmentosDuplicados++;
+                return null;
+            }
+
+            Pendente p = pendentes.get(idSnapshot);
+            if (p == null) {
+                if (pendentes.size() >= maxPendentes) {
+                    descartarMaisAntigo();
+                }
+                p = new Pendente(comprimentoTotal, total, agora);
+                pendentes.put(idSnapshot, p);
+            }
+            if (p.recebidos.get(indice)) {
+                fragmentosDuplicados++;
+                return null;
+            }
+            int inicio = indice * TAMANHO_FRAGMENTO;
+            int tamanho = Math.min(TAMANHO_FRAGMENTO, comprimentoTotal - inicio);
+            if (bb.remaining() < tamanho) {
+                return null;
+            }
+            bb.get(p.dados, inicio, tamanho);
+            p.recebidos.set(indice);
+
+            if (p.recebidos.cardinality() == p.total) {
+                pendentes.remove(idSnapshot);
+                snapshotsCompletos++;
+                recentes.put(idSnapshot, Boolean.TRUE);
+                return ByteBuffer.wrap(p.dados);
+            }
+            return null;
+        }
+
+        private void expirar(long agora) {
+            Iterator<Map.Entry<Long, Pendente>> it = pendentes.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Pendente> e = it.next();
+                if (agora - e.getValue().criadoEmMs <= tempoLimiteMs) break;
+                contabilizarPerda(e);
+                it.remove();
+            }
+        }
+
+        private void descartarMaisAntigo() {
+            Iterator<Map.Entry<Long, Pendente>> it = pendentes.entrySet().iterator();
+            if (it.hasNext()) {
+                contabilizarPerda(it.next());
+                it.remove();
+            }
+        }
+
+        private void contabilizarPerda(Map.Entry<Long, Pendente> e) {
+            Pendente p = e.getValue();
+            recentes.put(e.getKey(), Boolean.TRUE);
+            snapshotsPerdidos++;
+            fragmentosPerdidos += p.total - p.recebidos.cardinality();
+        }
+
+        // --- Estatísticas ---
+        public long getFragmentosRecebidos() { return fragmentosRecebidos; }
+        public long getFragmentosDuplicados() { return fragmentosDuplicados; }
+        public long getSnapshotsCompletos() { return snapshotsCompletos; }
+        public long getSnapshotsPerdidos() { return snapshotsPerdidos; }
+        public long getFragmentosPerdidos() { return fragmentosPerdidos; }
+        /** Fragmentos com um cabeçalho incoerente (tamanho fora dos limites, índice ou total inválidos). */
+        public long getFragmentosInvalidos() { return fragmentosInvalidos; }
+        public int getPendentes() { return pendentes.size(); }
+
+        /** IDs dos snapshots ainda incompletos. */
+        public List<Long> getIdsPendentes() { return new ArrayList<>(pendentes.keySet()); }
+
+        @Override
+        public String toString() {
+            return String.format("completos=%d, perdidos=%d, fragmentos recebidos=%d, fragmentos perdidos=%d, duplicados=%d, invalidos=%d",
+                    snapshotsCompletos, snapshotsPerdidos, fragmentosRecebidos, fragmentosPerdidos, fragmentosDuplicados, fragmentosInvalidos);
+        }
+    }
+}
@@ -1,21 +1,55 @@
 package monitoramento;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
  * Componente ativo do mecanismo de Heartbeat.
  * Esta classe é executada em uma thread e periodicamente envia mensagens "PING"
  * para todos os outros nós da rede para verificar se estão ativos.
+ *
+ * As ligações a cada nó são persistentes e geridas por um único Selector: os PINGs
+ * e PONGs são quadros de tamanho fixo ({@link QuadroHeartbeat}) e uma falha na
+ * ligação conta como uma falha de heartbeat.
+ *
+ * A decisão de falha é adaptativa: cada PONG alimenta o detetor phi accrual do
+ * NoInfo do alvo, e o nó é considerado falho quando a suspeita atinge o limiar
+ * configurado ("monitoramento.phi.limiar", padrão 8).
  */
 public class HeartbeatGestor implements Runnable {
+    private static final Registador LOG = Registador.para("Heartbeat");
     private final No noPai;
     // Timeout para estabelecer a conexão e para ler a resposta.
     private static final int TIMEOUT_MS = 2000;
+    // Intervalo entre cada ciclo de verificação.
+    private static final long INTERVALO_CICLO_MS = NoInfo.INTERVALO_HEARTBEAT_MS;
+    // Nível de suspeita phi a partir do qual um nó é considerado falho.
+    public static final double LIMIAR_PHI = Double.parseDouble(System.getProperty("monitoramento.phi.limiar", "8.0"));
+    // Intervalo máximo entre avaliações da suspeita phi.
+    private static final long INTERVALO_AVALIACAO_PHI_MS = 100;
+
+    // Tempo de ida e volta PING/PONG, em microssegundos.
+    private final Histograma rttPong = new Histograma("us");
+
+    // Estado da ligação persistente a cada nó.
+    private final Map<Integer, Ligacao> ligacoes = new HashMap<>();
+
+    private static final class Ligacao {
+        final int idAlvo;
+        SocketChannel canal;
+        final ByteBuffer leitura = ByteBuffer.allocate(QuadroHeartbeat.TAMANHO);
+        final ByteBuffer escrita = ByteBuffer.allocate(QuadroHeartbeat.TAMANHO);
+        // Instante (ns) em que o PING em curso foi iniciado; 0 se não houver nenhum pendente.
+        long pingEnviadoEmNs;
+        Ligacao(int idAlvo) { this.idAlvo = idAlvo; }
+    }
 
     public HeartbeatGestor(No noPai) {
         this.noPai = noPai;
@@ -23,71 +57,215 @@ public class HeartbeatGestor implements Runnable {
 
     @Override
     public void run() {
-        // O loop continua enquanto o nó pai estiver ativo.
-        while (noPai.isAtivo()) {
-            try {
-                // Intervalo entre cada ciclo de verificação.
-                Thread.sleep(5000);
-
-                // Itera sobre todos os nós conhecidos na rede.
-                for (Map.Entry<Integer, NoInfo> entry : noPai.getNosDaRede().entrySet()) {
-                    int idAlvo = entry.getKey();
-                    NoInfo noAlvo = entry.getValue();
-
-                    // Não envia ping para si mesmo.
-                    if (idAlvo == noPai.getId()) continue;
-
-                    boolean isAlvoAtivo = false;
-                    try (Socket socket = new Socket()) {
-                        // Tenta se conectar ao servidor de heartbeat do nó alvo com um timeout.
-                        socket.connect(new InetSocketAddress("127.0.0.1", noAlvo.getPortaHeartbeat()), TIMEOUT_MS);
-                        socket.setSoTimeout(TIMEOUT_MS); // Timeout para a leitura da resposta.
-
-                        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                        out.println("PING");
-                        // Se receber "PONG" de volta, o nó está ativo.
-                        if ("PONG".equals(in.readLine())) {
-                            isAlvoAtivo = true;
-                        }
-                    } catch (Exception e) {
-                        // Qualquer exceção (e.g., Connection Refused, Socket Timeout) significa falha na comunicação.
-                    }
+        // Considera que todos os nós deram sinal de vida no arranque.
+        long inicioMs = System.currentTimeMillis();
+        for (NoInfo info : noPai.getNosDaRede().values()) {
+            info.registrarHeartbeat(inicioMs);
+        }
+        try (Selector selector = Selector.open()) {
+            long proximoCiclo = System.nanoTime() + INTERVALO_CICLO_MS * 1_000_000L;
+            // O loop continua enquanto o nó pai estiver ativo.
+            while (noPai.isAtivo()) {
+                long agora = System.nanoTime();
+                long esperaMs = Math.max(1, Math.min(INTERVALO_AVALIACAO_PHI_MS,
+                        (Math.min(proximoCiclo, proximoPrazo(agora)) - agora) / 1_000_000L));
+                selector.select(esperaMs);
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey chave = it.next();
+                    it.remove();
+                    tratarEvento(chave);
+                }
+
+                agora = System.nanoTime();
+                verificarPrazos(agora);
+                verificarSuspeitas(System.currentTimeMillis());
+                if (agora - proximoCiclo >= 0 && noPai.isAtivo()) {
+                    iniciarCiclo(selector, agora);
+                    proximoCiclo = agora + INTERVALO_CICLO_MS * 1_000_000L;
+                }
+            }
+        } catch (IOException e) {
+            LOG.erro("[ERRO] Nó %d: Falha no ciclo de heartbeat: %s", noPai.getId(), e.getMessage());
+        } finally {
+            for (Ligacao l : ligacoes.values()) fechar(l);
+        }
+    }
 
-                    if (isAlvoAtivo) {
-                        // Se o nó estava marcado como inativo e voltou, loga a reconexão.
-                        if (!noAlvo.isAtivo()) {
-                            System.out.printf("[INFO] Nó %d detectou: NÓ %d RECONECTADO!%n", noPai.getId(), idAlvo);
-                        }
-                        // Zera o contador de falhas e marca o nó como ativo.
-                        noAlvo.resetarContadorFalhas();
-                        noAlvo.setAtivo(true);
+    /**
+     * Envia um PING a cada nó conhecido, abrindo a ligação se ainda não existir.
+     */
+    private void iniciarCiclo(Selector selector, long agora) {
+        // Itera sobre todos os nós conhecidos na rede.
+        for (Map.Entry<Integer, NoInfo> entry : noPai.getNosDaRede().entrySet()) {
+            int idAlvo = entry.getKey();
+            // Não envia ping para si mesmo.
+            if (idAlvo == noPai.getId()) continue;
+
+            Ligacao l = ligacoes.computeIfAbsent(idAlvo, Ligacao::new);
+            if (l.pingEnviadoEmNs != 0) continue; // PING anterior ainda dentro do prazo.
+            l.pingEnviadoEmNs = agora;
+
+            if (l.canal == null) {
+                try {
+                    SocketChannel canal = SocketChannel.open();
+                    canal.configureBlocking(false);
+                    l.canal = canal;
+                    if (canal.connect(new InetSocketAddress("127.0.0.1", entry.getValue().getPortaHeartbeat()))) {
+                        canal.register(selector, SelectionKey.OP_READ, l);
+                        enviarPing(l);
                     } else {
-                        // Se a comunicação falhou, incrementa o contador de falhas.
-                        noAlvo.incrementarContadorFalhas();
-                        if (noAlvo.getContadorFalhas() == 1) {
-                            System.out.printf("[AVISO] Nó %d: Primeira falha ao pingar Nó %d. Monitorando...%n", noPai.getId(), idAlvo);
-                        }
-
-                        // Se o número de falhas consecutivas atingir o limite (3), o nó é considerado falho.
-                        if (noAlvo.getContadorFalhas() >= 3 && noAlvo.isAtivo()) {
-                            System.err.printf("[FALHA] Nó %d detectou: NÓ %d CONSIDERADO FALHO!%n", noPai.getId(), idAlvo);
-                            noAlvo.setAtivo(false);
-
-                            // Se o nó que falhou era o coordenador, inicia uma nova eleição.
-                            if (idAlvo == noPai.getCoordenadorId()) {
-                                noPai.iniciarEleicao();
-                            }
-                        }
+                        canal.register(selector, SelectionKey.OP_CONNECT, l);
                     }
+                } catch (IOException e) {
+                    falhar(l);
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            } else {
+                enviarPing(l);
             }
         }
     }
-}
 
+    private void tratarEvento(SelectionKey chave) {
+        Ligacao l = (Ligacao) chave.attachment();
+        try {
+            if (!chave.isValid()) return;
+            if (chave.isConnectable()) {
+                l.canal.finishConnect();
+                chave.interestOps(SelectionKey.OP_READ);
+                enviarPing(l);
+            } else if (chave.isReadable()) {
+                if (l.canal.read(l.leitura) < 0) {
+                    throw new IOException("Ligacao encerrada pelo no remoto");
+                }
+                if (!l.leitura.hasRemaining()) {
+                    l.leitura.flip();
+                    boolean pong = QuadroHeartbeat.lerTipo(l.leitura) == QuadroHeartbeat.PONG;
+                    long enviadoEmNs = QuadroHeartbeat.lerMarcaTemporal(l.leitura);
+                    l.leitura.clear();
+                    if (pong && l.pingEnviadoEmNs != 0) {
+                        long rttUs = (System.nanoTime() - enviadoEmNs) / 1000;
+                        rttPong.registar(rttUs);
+                        noPai.getMetricas().registarRtt(l.idAlvo, rttUs);
+                        l.pingEnviadoEmNs = 0;
+                        registrarSucesso(l.idAlvo);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Qualquer exceção (e.g., Connection Refused, ligação quebrada) significa falha na comunicação.
+            falhar(l);
+        }
+    }
 
+    private void enviarPing(Ligacao l) {
+        if (l.canal == null || !l.canal.isConnected()) return;
+        l.escrita.clear();
+        QuadroHeartbeat.escrever(l.escrita, QuadroHeartbeat.PING, noPai.getId(), System.nanoTime());
+        l.escrita.flip();
+        try {
+            l.canal.write(l.escrita);
+            if (l.escrita.hasRemaining()) {
+                // Um quadro de 16 bytes que não cabe no buffer de envio indica uma ligação bloqueada.
+                throw new IOException("Buffer de envio cheio");
+            }
+        } catch (IOException e) {
+            falhar(l);
+        }
+    }
 
+    /**
+     * Conta como falha qualquer PING sem PONG dentro do timeout.
+     */
+    private void verificarPrazos(long agora) {
+        long timeoutNs = TIMEOUT_MS * 1_000_000L;
+        for (Ligacao l : ligacoes.values()) {
+            if (l.pingEnviadoEmNs != 0 && agora - l.pingEnviadoEmNs > timeoutNs) {
+                falhar(l);
+            }
+        }
+    }
+
+    private long proximoPrazo(long agora) {
+        long prazo = Long.MAX_VALUE;
+        for (Ligacao l : ligacoes.values()) {
+            if (l.pingEnviadoEmNs != 0) {
+                prazo = Math.min(prazo, l.pingEnviadoEmNs + TIMEOUT_MS * 1_000_000L);
+            }
+        }
+        return prazo == Long.MAX_VALUE ? agora + INTERVALO_CICLO_MS * 1_000_000L : prazo;
+    }
+
+    private void falhar(Ligacao l) {
+        boolean pendente = l.pingEnviadoEmNs != 0;
+        fechar(l);
+        l.pingEnviadoEmNs = 0;
+        // Uma ligação quebrada entre ciclos só é contabilizada no próximo PING.
+        if (pendente) {
+            registrarFalha(l.idAlvo);
+        }
+    }
+
+    private void fechar(Ligacao l) {
+        if (l.canal != null) {
+            try {
+                l.canal.close();
+            } catch (IOException e) {
+                // Ignorado: o canal já está inutilizável.
+            }
+            l.canal = null;
+        }
+        l.leitura.clear();
+    }
+
+    /** Histograma do tempo de ida e volta dos PINGs, em microssegundos. */
+    public Histograma getRttPong() { return rttPong; }
+
+    private void registrarSucesso(int idAlvo) {
+        NoInfo noAlvo = noPai.getNosDaRede().get(idAlvo);
+        long agoraMs = System.currentTimeMillis();
+        // Se o nó estava marcado como inativo e voltou, loga a reconexão.
+        if (!noAlvo.isAtivo()) {
+            LOG.info("[INFO] Nó %d detectou: NÓ %d RECONECTADO!", noPai.getId(), idAlvo);
+            // O nó pode ter sido registado de novo: descarta o stub antigo.
+            noPai.getStubs().invalidar(idAlvo);
+            // Os intervalos medidos antes da falha não representam a ligação atual.
+            noAlvo.reiniciarDetector();
+        }
+        // Zera o contador de falhas, alimenta o detetor phi e marca o nó como ativo.
+        noAlvo.resetarContadorFalhas();
+        noAlvo.registrarHeartbeat(agoraMs);
+        noAlvo.setAtivo(true);
+    }
+
+    private void registrarFalha(int idAlvo) {
+        NoInfo noAlvo = noPai.getNosDaRede().get(idAlvo);
+        // Se a comunicação falhou, incrementa o contador de falhas (apenas informativo).
+        noAlvo.incrementarContadorFalhas();
+        if (noAlvo.getContadorFalhas() == 1) {
+            LOG.aviso("[AVISO] Nó %d: Primeira falha ao pingar Nó %d. Monitorando...", noPai.getId(), idAlvo);
+        }
+    }
+
+    /**
+     * Declara falhos os nós cuja suspeita phi atingiu o limiar.
+     */
+    private void verificarSuspeitas(long agoraMs) {
+        for (NoInfo noAlvo : noPai.getNosDaRede().values()) {
+            int idAlvo = noAlvo.getId();
+            if (idAlvo == noPai.getId() || !noAlvo.isAtivo()) continue;
+            double phi = noAlvo.getSuspeita(agoraMs);
+            if (phi >= LIMIAR_PHI) {
+                LOG.erro("[FALHA] Nó %d detectou: NÓ %d CONSIDERADO FALHO! (phi=%.2f)", noPai.getId(), idAlvo, phi);
+                noAlvo.setAtivo(false);
+                noPai.getStubs().invalidar(idAlvo);
+
+                // Se o nó que falhou era o coordenador, inicia uma nova eleição.
+                if (idAlvo == noPai.getCoordenadorId()) {
+                    noPai.iniciarEleicao();
+                }
+            }
+        }
+    }
+}
@@ -1,21 +1,47 @@
 package monitoramento;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.function.Consumer;
 
 /**
  * Componente passivo do mecanismo de Heartbeat.
+ * Atende todas as ligações persistentes de forma não bloqueante, num único Selector:
+ * um gestor lento ou parado nunca atrasa os PONGs dos outros nós. Cada ligação tem
+ * um prazo de leitura e é fechada se ficar inativa.
  */
 public class HeartbeatServidor implements Runnable {
+    private static final Registador LOG = Registador.para("Heartbeat");
     private final int porta;
     private final No noPai;
     // Callback para devolver a instância do ServerSocket para a classe No.
     private final Consumer<ServerSocket> socketCallback;
 
+    // Prazo para completar um quadro já iniciado.
+    private static final long TIMEOUT_QUADRO_MS = 2000;
+    // Uma ligação sem nenhum PING durante este tempo é considerada abandonada.
+    private static final long TIMEOUT_INATIVIDADE_MS = 15000;
+    // Intervalo máximo de espera no Selector, para reagir a setAtivo(false).
+    private static final long INTERVALO_VERIFICACAO_MS = 250;
+
+    // Tempo entre a chegada de um PING e o envio do PONG, em microssegundos.
+    private final Histograma latenciaPong = new Histograma("us");
+
+    private static final class Ligacao {
+        final ByteBuffer leitura = ByteBuffer.allocate(QuadroHeartbeat.TAMANHO);
+        final ByteBuffer escrita = ByteBuffer.allocate(QuadroHeartbeat.TAMANHO);
+        long ultimaAtividadeMs = System.currentTimeMillis();
+        // Instante em que chegou o primeiro byte do quadro em curso (0 se nenhum).
+        long inicioQuadroMs;
+    }
+
     /**
      * Construtor
      */
@@ -27,34 +53,112 @@ public class HeartbeatServidor implements Runnable {
 
     @Override
     public void run() {
-        try (ServerSocket serverSocket = new ServerSocket(porta)) {
+        try (Selector selector = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(porta));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
             // Devolve a referência do socket para o Nó, para que ele possa ser fechado externamente.
-            socketCallback.accept(serverSocket);
+            socketCallback.accept(serverChannel.socket());
 
-            System.out.printf("[INFO] No %d: Servidor de Heartbeat iniciado na porta %d, aguardando pings.%n", noPai.getId(), porta);
+            LOG.info("[INFO] No %d: Servidor de Heartbeat iniciado na porta %d, aguardando pings.", noPai.getId(), porta);
 
-            while (noPai.isAtivo()) {
-                try (Socket clientSocket = serverSocket.accept()) {
-                    BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                    String msg = in.readLine();
-
-                    if ("PING".equals(msg)) {
-                        PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-                        out.println("PONG");
-                    }
-                } catch (Exception e) {
-                    // Ignora erros de socket fechado, que são esperados quando o nó é desativado.
-                    if (noPai.isAtivo()) {
-                        System.err.printf("[ERRO] No %d: Erro no servidor de Heartbeat: %s%n", noPai.getId(), e.getMessage());
+            while (noPai.isAtivo() && serverChannel.isOpen()) {
+                selector.select(INTERVALO_VERIFICACAO_MS);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey chave = it.next();
+                    it.remove();
+                    try {
+                        if (!chave.isValid()) continue;
+                        if (chave.isAcceptable()) {
+                            aceitar(serverChannel, selector);
+                        } else if (chave.isReadable()) {
+                            ler(chave);
+                        }
+                    } catch (IOException e) {
+                        // A ligação foi fechada pelo outro lado; o gestor remoto volta a ligar-se no próximo ciclo.
+                        fechar(chave);
                     }
                 }
+                verificarPrazos(selector);
+            }
+
+            // As ligações persistentes também têm de cair, para que os outros nós detetem a falha.
+            for (SelectionKey chave : selector.keys()) {
+                fechar(chave);
             }
         } catch (Exception e) {
             // Só loga o erro se o nó deveria estar ativo.
             if (noPai.isAtivo()) {
-                System.err.printf("[ERRO] No %d: Nao foi possivel iniciar o servidor de Heartbeat na porta %d.%n", noPai.getId(), porta);
+                LOG.erro("[ERRO] No %d: Nao foi possivel iniciar o servidor de Heartbeat na porta %d.", noPai.getId(), porta);
             }
         }
-        System.out.printf("[INFO] No %d: Servidor de Heartbeat encerrado.%n", noPai.getId());
+        LOG.info("[INFO] No %d: Servidor de Heartbeat encerrado.", noPai.getId());
+    }
+
+    private void aceitar(ServerSocketChannel serverChannel, Selector selector) throws IOException {
+        SocketChannel canal;
+        while ((canal = serverChannel.accept()) != null) {
+            canal.configureBlocking(false);
+            canal.register(selector, SelectionKey.OP_READ, new Ligacao());
+        }
     }
-}
\ No newline at end of file
+
+    private void ler(SelectionKey chave) throws IOException {
+        SocketChannel canal = (SocketChannel) chave.channel();
+        Ligacao l = (Ligacao) chave.attachment();
+        long inicioNs = System.nanoTime();
+        if (canal.read(l.leitura) < 0) {
+            throw new IOException("Ligacao encerrada");
+        }
+        long agora = System.currentTimeMillis();
+        l.ultimaAtividadeMs = agora;
+        if (l.leitura.hasRemaining()) {
+            if (l.inicioQuadroMs == 0) l.inicioQuadroMs = agora;
+            return;
+        }
+        l.leitura.flip();
+        l.inicioQuadroMs = 0;
+        if (QuadroHeartbeat.lerTipo(l.leitura) == QuadroHeartbeat.PING && noPai.isAtivo()) {
+            l.escrita.clear();
+            QuadroHeartbeat.escrever(l.escrita, QuadroHeartbeat.PONG, noPai.getId(), QuadroHeartbeat.lerMarcaTemporal(l.leitura));
+            l.escrita.flip();
+            canal.write(l.escrita);
+            if (l.escrita.hasRemaining()) {
+                // Um quadro de 16 bytes que não cabe no buffer de envio indica um cliente parado.
+                throw new IOException("Cliente nao esta a ler os PONGs");
+            }
+            latenciaPong.registar((System.nanoTime() - inicioNs) / 1000);
+        }
+        l.leitura.clear();
+    }
+
+    /**
+     * Fecha as ligações com um quadro incompleto há demasiado tempo ou inativas.
+     */
+    private void verificarPrazos(Selector selector) {
+        long agora = System.currentTimeMillis();
+        for (SelectionKey chave : selector.keys()) {
+            if (!(chave.attachment() instanceof Ligacao)) continue;
+            Ligacao l = (Ligacao) chave.attachment();
+            boolean quadroExpirado = l.inicioQuadroMs != 0 && agora - l.inicioQuadroMs > TIMEOUT_QUADRO_MS;
+            boolean inativa = agora - l.ultimaAtividadeMs > TIMEOUT_INATIVIDADE_MS;
+            if (quadroExpirado || inativa) {
+                fechar(chave);
+            }
+        }
+    }
+
+    private static void fechar(SelectionKey chave) {
+        chave.cancel();
+        try {
+            chave.channel().close();
+        } catch (IOException e) {
+            // Ignorado: o canal já está inutilizável.
+        }
+    }
+
+    /** Histograma do tempo de resposta aos PINGs, em microssegundos. */
+    public Histograma getLatenciaPong() { return latenciaPong; }
+}
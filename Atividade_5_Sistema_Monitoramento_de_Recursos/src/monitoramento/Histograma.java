@@ -0,0 +1,119 @@
+package monitoramento;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências com baldes logarítmicos (estilo HDR), seguro para várias threads.
+ * Cada potência de dois é dividida em 8 sub-baldes, o que dá um erro relativo máximo de 12,5%.
+ * O registo não aloca memória: apenas incrementa contadores atómicos.
+ */
+public class Histograma {
+    private static final int BITS_SUB_BALDE = 3;
+    private static final int SUB_BALDES = 1 << BITS_SUB_BALDE;
+    private static final int NUMERO_BALDES = (64 - BITS_SUB_BALDE + 1) * SUB_BALDES;
+
+    private final String unidade;
+    private final AtomicLongArray baldes = new AtomicLongArray(NUMERO_BALDES);
+    private final AtomicLong contagem = new AtomicLong();
+    private final AtomicLong soma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * @param unidade Unidade dos valores registados (apenas para exibição, ex.: "us").
+     */
+    public Histograma(String unidade) {
+        this.unidade = unidade;
+    }
+
+    /**
+     * Regista um valor (valores negativos são tratados como zero).
+     */
+    public void registar(long valor) {
+        if (valor < 0) valor = 0;
+        baldes.incrementAndGet(indice(valor));
+        contagem.incrementAndGet();
+        soma.addAndGet(valor);
+        long atual;
+        while (valor > (atual = maximo.get()) && !maximo.compareAndSet(atual, valor)) {
+            // Repete até atualizar o máximo.
+        }
+    }
+
+    static int indice(long valor) {
+        if (valor < SUB_BALDES) return (int) valor;
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int mantissa = (int) ((valor >>> (expoente - BITS_SUB_BALDE)) & (SUB_BALDES - 1));
+        return ((expoente - BITS_SUB_BALDE + 1) << BITS_SUB_BALDE) | mantissa;
+    }
+
+    static long limiteInferior(int indice) {
+        int expoente = indice >>> BITS_SUB_BALDE;
+        int mantissa = indice & (SUB_BALDES - 1);
+        if (expoente == 0) return mantissa;
+        return ((long) (SUB_BALDES | mantissa)) << (expoente - 1);
+    }
+
+    /**
+     * Devolve o valor aproximado do percentil indicado (0 a 100).
+     */
+    public long percentil(double p) {
+        long total = contagem.get();
+        if (total == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(total * p / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < NUMERO_BALDES; i++) {
+            acumulado += baldes.get(i);
+            if (acumulado >= alvo) {
+                return Math.min(limiteInferior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    public long getContagem() { return contagem.get(); }
+    public long getMaximo() { return maximo.get(); }
+    public double getMedia() {
+        long n = contagem.get();
+        return n == 0 ? 0 : (double) soma.get() / n;
+    }
+
+    /** Contagem de um balde, para exportação. */
+    long getBalde(int indice) { return baldes.get(indice); }
+    static int getNumeroBaldes() { return NUMERO_BALDES; }
+
+    /**
+     * Acrescenta a este histograma as contagens de outro (ex.: para juntar vários nós).
+     */
+    public void fundir(Histograma outro) {
+        for (int i = 0; i < NUMERO_BALDES; i++) {
+            long c = outro.baldes.get(i);
+            if (c != 0) baldes.addAndGet(i, c);
+        }
+        contagem.addAndGet(outro.contagem.get());
+        soma.addAndGet(outro.soma.get());
+        long valor = outro.maximo.get(), atual;
+        while (valor > (atual = maximo.get()) && !maximo.compareAndSet(atual, valor)) {
+            // Repete até atualizar o máximo.
+        }
+    }
+
+    public void limpar() {
+        for (int i = 0; i < NUMERO_BALDES; i++) baldes.set(i, 0);
+        contagem.set(0);
+        soma.set(0);
+        maximo.set(0);
+    }
+
+    /**
+     * Resumo textual: contagem, média, p50, p90, p99 e máximo.
+     */
+    public String resumo() {
+        return String.format("n=%d media=%.1f%s p50=%d%s p90=%d%s p99=%d%s max=%d%s",
+                getContagem(), getMedia(), unidade, percentil(50), unidade, percentil(90), unidade,
+                percentil(99), unidade, getMaximo(), unidade);
+    }
+
+    @Override
+    public String toString() { return resumo(); }
+}
@@ -0,0 +1,234 @@
+package monitoramento;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Histórico em memória das amostras de cada nó, mantido pelo líder.
+ * Cada nó tem buffers circulares de capacidade fixa em arrays primitivos (um por métrica),
+ * pelo que a memória ocupada é limitada e não são guardados objetos Recurso.
+ * Suporta consultas das últimas N amostras, por intervalo de tempo e estatísticas
+ * (mínimo, máximo, média e percentis) sobre uma janela.
+ */
+public class HistoricoMetricas {
+    public static final int CAPACIDADE_PADRAO = Integer.getInteger("monitoramento.historico.capacidade", 3600);
+
+    /** Métricas guardadas no histórico. */
+    public enum Metrica { CPU, MEMORIA, CARGA, TEMPO_ATIVIDADE }
+
+    private final int capacidade;
+    private final Map<Integer, Serie> series = new ConcurrentHashMap<>();
+
+    public HistoricoMetricas() {
+        this(CAPACIDADE_PADRAO);
+    }
+
+    public HistoricoMetricas(int capacidade) {
+        this.capacidade = capacidade;
+    }
+
+    /**
+     * Buffers circulares de um nó. A amostra mais antiga é substituída quando a série está cheia.
+     */
+    private static final class Serie {
+        final long[] instantes;
+        final double[] cpu;
+        final double[] memoria;
+        final double[] carga;
+        final long[] tempoAtividade;
+        int inicio;
+        int tamanho;
+
+        Serie(int capacidade) {
+            instantes = new long[capacidade];
+            cpu = new double[capacidade];
+            memoria = new double[capacidade];
+            carga = new double[capacidade];
+            tempoAtividade = new long[capacidade];
+        }
+
+        int indice(int i) { return (inicio + i) % instantes.length; }
+
+        long ultimoInstante() { return tamanho == 0 ? Long.MIN_VALUE : instantes[indice(tamanho - 1)]; }
+
+        double valor(int pos, Metrica m) {
+            switch (m) {
+                case CPU: return cpu[pos];
+                case MEMORIA: return memoria[pos];
+                case CARGA: return carga[pos];
+                default: return tempoAtividade[pos];
+            }
+        }
+
+        /** Primeira posição lógica com instante >= desdeMs (pesquisa binária). */
+        int primeiraDesde(long desdeMs) {
+            int baixo = 0, alto = tamanho;
+            while (baixo < alto) {
+                int meio = (baixo + alto) >>> 1;
+                if (instantes[indice(meio)] < desdeMs) baixo = meio + 1; else alto = meio;
+            }
+            return baixo;
+        }
+    }
+
+    /**
+     * Regista todas as amostras de um snapshot.
+     */
+    public void registar(List<Recurso> snapshot) {
+        for (Recurso r : snapshot) {
+            if (r != null) registar(r);
+        }
+    }
+
+    /**
+     * Regista uma amostra. Amostras repetidas ou mais antigas que a última do nó são ignoradas.
+     */
+    public void registar(Recurso r) {
+        Serie s = series.computeIfAbsent(r.getNoId(), k -> new Serie(capacidade));
+        synchronized (s) {
+            if (r.getInstanteAmostraMs() <= s.ultimoInstante()) return;
+            int pos;
+            if (s.tamanho < capacidade) {
+                pos = s.indice(s.tamanho);
+                s.tamanho++;
+            } else {
+                pos = s.inicio;
+                s.inicio = (s.inicio + 1) % capacidade;
+            }
+            s.instantes[pos] = r.getInstanteAmostraMs();
+            s.cpu[pos] = r.getUsoCpu();
+            s.memoria[pos] = r.getUsoMemoria();
+            s.carga[pos] = r.getCargaSistema();
+            s.tempoAtividade[pos] = r.getTempoAtividade();
+        }
+    }
+
+    /**
+     * Copia as últimas N amostras de uma métrica, da mais antiga para a mais recente.
+     * @return O número de amostras copiadas (no máximo o tamanho dos arrays de destino).
+     */
+    public int ultimos(int pid, Metrica metrica, long[] instantesDestino, double[] valoresDestino) {
+        Serie s = series.get(pid);
+        if (s == null) return 0;
+        synchronized (s) {
+            int n = Math.min(Math.min(instantesDestino.length, valoresDestino.length), s.tamanho);
+            int primeiro = s.tamanho - n;
+            for (int i = 0; i < n; i++) {
+                int pos = s.indice(primeiro + i);
+                instantesDestino[i] = s.instantes[pos];
+                valoresDestino[i] = s.valor(pos, metrica);
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Copia as amostras de uma métrica com instante em [desdeMs, ateMs].
+     * @return O número de amostras copiadas (no máximo o tamanho dos arrays de destino).
+     */
+    public int intervalo(int pid, Metrica metrica, long desdeMs, long ateMs, long[] instantesDestino, double[] valoresDestino) {
+        Serie s = series.get(pid);
+        if (s == null) return 0;
+        synchronized (s) {
+            int limite = Math.min(instantesDestino.length, valoresDestino.length);
+            int n = 0;
+            for (int i = s.primeiraDesde(desdeMs); i < s.tamanho && n < limite; i++) {
+                int pos = s.indice(i);
+                if (s.instantes[pos] > ateMs) break;
+                instantesDestino[n] = s.instantes[pos];
+                valoresDestino[n] = s.valor(pos, metrica);
+                n++;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Calcula estatísticas de uma métrica sobre a janela [desdeMs, ateMs].
+     */
+    public Estatisticas estatisticas(int pid, Metrica metrica, long desdeMs, long ateMs) {
+        Serie s = series.get(pid);
+        if (s == null) return Estatisticas.VAZIA;
+        double[] valores;
+        int n = 0;
+        synchronized (s) {
+            int primeiro = s.primeiraDesde(desdeMs);
+            valores = new double[s.tamanho - primeiro];
+            for (int i = primeiro; i < s.tamanho; i++) {
+                int pos = s.indice(i);
+                if (s.instantes[pos] > ateMs) break;
+                valores[n++] = s.valor(pos, metrica);
+            }
+        }
+        if (n == 0) return Estatisticas.VAZIA;
+        double soma = 0;
+        for (int i = 0; i < n; i++) soma += valores[i];
+        Arrays.sort(valores, 0, n);
+        return new Estatisticas(n, valores[0], valores[n - 1], soma / n,
+                percentil(valores, n, 50), percentil(valores, n, 95), percentil(valores, n, 99));
+    }
+
+    /**
+     * Estatísticas da janela que termina agora e dura a quantidade de milissegundos indicada.
+     */
+    public Estatisticas estatisticasRecentes(int pid, Metrica metrica, long duracaoMs) {
+        long agora = System.currentTimeMillis();
+        return estatisticas(pid, metrica, agora - duracaoMs, agora);
+    }
+
+    private static double percentil(double[] ordenados, int n, double p) {
+        int indice = (int) Math.ceil(p / 100.0 * n) - 1;
+        return ordenados[Math.max(0, Math.min(n - 1, indice))];
+    }
+
+    public int getNumeroAmostras(int pid) {
+        Serie s = series.get(pid);
+        if (s == null) return 0;
+        synchronized (s) { return s.tamanho; }
+    }
+
+    public Set<Integer> getNos() { return series.keySet(); }
+    public int getCapacidade() { return capacidade; }
+
+    /**
+     * Resultado imutável de uma consulta de estatísticas.
+     */
+    public static final class Estatisticas {
+        static final Estatisticas VAZIA = new Estatisticas(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+        private final int contagem;
+        private final double minimo;
+        private final double maximo;
+        private final double media;
+        private final double p50;
+        private final double p95;
+        private final double p99;
+
+        Estatisticas(int contagem, double minimo, double maximo, double media, double p50, double p95, double p99) {
+            this.contagem = contagem;
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.media = media;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+        }
+
+        public int getContagem() { return contagem; }
+        public double getMinimo() { return minimo; }
+        public double getMaximo() { return maximo; }
+        public double getMedia() { return media; }
+        public double getP50() { return p50; }
+        public double getP95() { return p95; }
+        public double getP99() { return p99; }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d min=%.2f max=%.2f media=%.2f p50=%.2f p95=%.2f p99=%.2f",
+                    contagem, minimo, maximo, media, p50, p95, p99);
+        }
+    }
+}
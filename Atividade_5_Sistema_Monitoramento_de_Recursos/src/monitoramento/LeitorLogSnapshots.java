@@ -0,0 +1,208 @@
+package monitoramento;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitor do {@link LogSnapshots}. Mapeia os segmentos só para leitura e localiza um
+ * intervalo por instante ou por relógio de Lamport com pesquisa binária sobre os
+ * registos de largura fixa. A reprodução lê os registos diretamente do mapeamento
+ * para uma vista {@link RelatorioDecodificado} reutilizada, sem cópias intermédias.
+ *
+ * O relógio de Lamport recomeça em cada execução do nó, pelo que a pesquisa por Lamport é
+ * feita apenas nos segmentos de uma execução (por padrão, a mais recente).
+ *
+ * Uso: java monitoramento.LeitorLogSnapshots diretorio [velocidade] [desde] [ate] [instante|lamport] [execucao]
+ */
+public class LeitorLogSnapshots {
+    private static final int DESLOCAMENTO_INSTANTE = 0;
+    private static final int DESLOCAMENTO_LAMPORT = 8;
+    private static final int DESLOCAMENTO_LIDER = 12;
+    private static final int DESLOCAMENTO_NUMERO_NOS = 16;
+    private static final int DESLOCAMENTO_INDICE = 18;
+
+    /** Chave usada para localizar um intervalo no log. */
+    public enum Chave { INSTANTE, LAMPORT }
+
+    private static final class Segmento {
+        final File ficheiro;
+        final MappedByteBuffer dados;
+        final long registos;
+        final long execucao;
+        Segmento(File ficheiro, MappedByteBuffer dados, long registos, long execucao) {
+            this.ficheiro = ficheiro;
+            this.dados = dados;
+            this.registos = registos;
+            this.execucao = execucao;
+        }
+        int posicao(long registo) {
+            return LogSnapshots.TAMANHO_CABECALHO_SEGMENTO + (int) (registo * LogSnapshots.TAMANHO_REGISTO);
+        }
+        long chave(long registo, Chave chave) {
+            int p = posicao(registo);
+            return chave == Chave.INSTANTE ? dados.getLong(p + DESLOCAMENTO_INSTANTE) : dados.getInt(p + DESLOCAMENTO_LAMPORT);
+        }
+    }
+
+    private final File diretorio;
+    private final List<Segmento> segmentos = new ArrayList<>();
+
+    public LeitorLogSnapshots(File diretorio) throws IOException {
+        this.diretorio = diretorio;
+        atualizar();
+    }
+
+    /**
+     * Volta a ler a lista de segmentos e o número de registos de cada um.
+     */
+    public void atualizar() throws IOException {
+        segmentos.clear();
+        for (File f : LogSnapshots.listarSegmentos(diretorio)) {
+            try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel canal = raf.getChannel()) {
+                if (canal.size() < LogSnapshots.TAMANHO_CABECALHO_SEGMENTO) continue;
+                MappedByteBuffer dados = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                if (dados.getInt(0) != LogSnapshots.MAGIA || dados.getShort(4) != LogSnapshots.VERSAO
+                        || dados.getShort(6) != LogSnapshots.TAMANHO_REGISTO) {
+                    System.err.printf("[AVISO] Segmento ignorado (formato desconhecido): %s%n", f);
+                    continue;
+                }
+                long registos = dados.getLong(8);
+                if (registos > 0) segmentos.add(new Segmento(f, dados, registos, dados.getLong(16)));
+            } catch (IOException e) {
+                // O segmento pode ter sido apagado pela retenção entretanto.
+            }
+        }
+    }
+
+    /**
+     * Reproduz os snapshots cuja chave está em [desde, ate]; por Lamport, na execução mais recente.
+     * @param velocidade Fator de aceleração face ao tempo real (0 ou negativo: sem pausas).
+     * @return O número de snapshots entregues ao consumidor.
+     */
+    public int reproduzir(Chave chave, long desde, long ate, double velocidade, ConsumidorRelatorio consumidor)
+            throws InterruptedException {
+        long execucao = segmentos.isEmpty() ? 0 : segmentos.get(segmentos.size() - 1).execucao;
+        return reproduzir(chave, desde, ate, execucao, velocidade, consumidor);
+    }
+
+    /**
+     * Reproduz os snapshots cuja chave está em [desde, ate]. Por instante, o log inteiro; por
+     * Lamport, só os segmentos da execução indicada (ver {@link #getExecucoes()}).
+     * @param velocidade Fator de aceleração face ao tempo real (0 ou negativo: sem pausas).
+     * @return O número de snapshots entregues ao consumidor.
+     */
+    public int reproduzir(Chave chave, long desde, long ate, long execucao, double velocidade, ConsumidorRelatorio consumidor)
+            throws InterruptedException {
+        List<Segmento> segmentos = this.segmentos;
+        if (chave == Chave.LAMPORT) {
+            segmentos = new ArrayList<>();
+            for (Segmento seg : this.segmentos) {
+                if (seg.execucao == execucao) segmentos.add(seg);
+            }
+        }
+        RelatorioDecodificado vista = new RelatorioDecodificado();
+        int s = 0;
+        long r = 0;
+        // Localiza o primeiro segmento que pode conter a chave e, nele, o primeiro registo >= desde.
+        while (s < segmentos.size() && segmentos.get(s).chave(segmentos.get(s).registos - 1, chave) < desde) s++;
+        if (s < segmentos.size()) r = primeiroRegisto(segmentos.get(s), chave, desde);
+
+        int entregues = 0;
+        long instanteAnterior = -1;
+        while (s < segmentos.size()) {
+            Segmento seg = segmentos.get(s);
+            if (r >= seg.registos) {
+                s++;
+                r = 0;
+                continue;
+            }
+            int p = seg.posicao(r);
+            if (seg.dados.getShort(p + DESLOCAMENTO_INDICE) != 0) {
+                r++; // Início a meio de um snapshot: avança até ao próximo.
+                continue;
+            }
+            long valorChave = seg.chave(r, chave);
+            if (valorChave > ate) break;
+
+            long instante = seg.dados.getLong(p + DESLOCAMENTO_INSTANTE);
+            int lamport = seg.dados.getInt(p + DESLOCAMENTO_LAMPORT);
+            int numeroNos = seg.dados.getShort(p + DESLOCAMENTO_NUMERO_NOS) & 0xFFFF;
+            vista.iniciar(seg.dados.getInt(p + DESLOCAMENTO_LIDER), entregues + 1, lamport, instante, numeroNos);
+
+            // Os registos de um snapshot podem continuar no segmento seguinte.
+            int lidos = 0;
+            while (lidos < numeroNos && s < segmentos.size()) {
+                seg = segmentos.get(s);
+                if (r >= seg.registos) {
+                    s++;
+                    r = 0;
+                    continue;
+                }
+                p = seg.posicao(r);
+                if (seg.dados.getShort(p + DESLOCAMENTO_INDICE) != lidos) break;
+                vista.lerRegisto(lidos, seg.dados, p + LogSnapshots.TAMANHO_PREFIXO);
+                lidos++;
+                r++;
+            }
+            if (lidos < numeroNos) continue; // Snapshot incompleto (p. ex., interrompido a meio da escrita).
+
+            if (velocidade > 0 && instanteAnterior >= 0 && instante > instanteAnterior) {
+                Thread.sleep((long) ((instante - instanteAnterior) / velocidade));
+            }
+            instanteAnterior = instante;
+            consumidor.consumir(vista);
+            entregues++;
+        }
+        return entregues;
+    }
+
+    private static long primeiroRegisto(Segmento seg, Chave chave, long desde) {
+        long baixo = 0, alto = seg.registos;
+        while (baixo < alto) {
+            long meio = (baixo + alto) >>> 1;
+            if (seg.chave(meio, chave) < desde) baixo = meio + 1; else alto = meio;
+        }
+        return baixo;
+    }
+
+    public int getNumeroSegmentos() { return segmentos.size(); }
+
+    /** Identificadores das execuções presentes no log, da mais antiga para a mais recente. */
+    public List<Long> getExecucoes() {
+        List<Long> execucoes = new ArrayList<>();
+        for (Segmento s : segmentos) {
+            if (execucoes.isEmpty() || execucoes.get(execucoes.size() - 1) != s.execucao) execucoes.add(s.execucao);
+        }
+        return execucoes;
+    }
+
+    public long getNumeroRegistos() {
+        long total = 0;
+        for (Segmento s : segmentos) total += s.registos;
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Uso: java monitoramento.LeitorLogSnapshots diretorio [velocidade] [desde] [ate] [instante|lamport] [execucao]");
+            return;
+        }
+        double velocidade = args.length > 1 ? Double.parseDouble(args[1]) : 10.0;
+        long desde = args.length > 2 ? Long.parseLong(args[2]) : Long.MIN_VALUE;
+        long ate = args.length > 3 ? Long.parseLong(args[3]) : Long.MAX_VALUE;
+        Chave chave = args.length > 4 ? Chave.valueOf(args[4].toUpperCase()) : Chave.INSTANTE;
+
+        LeitorLogSnapshots leitor = new LeitorLogSnapshots(new File(args[0]));
+        List<Long> execucoes = leitor.getExecucoes();
+        long execucao = args.length > 5 ? Long.parseLong(args[5]) : execucoes.isEmpty() ? 0 : execucoes.get(execucoes.size() - 1);
+        System.out.printf("[REPRODUCAO] %d segmentos, %d registos, execucoes %s. Velocidade: %.1fx%n",
+                leitor.getNumeroSegmentos(), leitor.getNumeroRegistos(), execucoes, velocidade);
+        int n = leitor.reproduzir(chave, desde, ate, execucao, velocidade, r -> System.out.println(r.paraTexto()));
+        System.out.printf("[REPRODUCAO] %d snapshots reproduzidos.%n", n);
+    }
+}
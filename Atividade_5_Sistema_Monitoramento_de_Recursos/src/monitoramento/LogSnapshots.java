@@ -0,0 +1,207 @@
+package monitoramento;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log binário, só de acréscimo, dos snapshots globais produzidos pelo líder.
+ *
+ * O log é dividido em segmentos de tamanho fixo mapeados em memória. Cada segmento
+ * tem um cabeçalho ({@link #TAMANHO_CABECALHO_SEGMENTO} bytes: magia, versão, tamanho
+ * do registo, número de registos válidos e identificador da execução) seguido de registos de largura fixa, um por
+ * nó de cada snapshot: instante do snapshot em ms (8), relógio de Lamport do líder (4),
+ * ID do líder (4), número de nós do snapshot (2), índice do nó no snapshot (2) e o
+ * registo do nó no formato de {@link RelatorioBinario} (30).
+ *
+ * A escrita é feita por uma thread própria a partir de uma fila limitada: a coleta nunca
+ * espera pelo disco e, se a fila encher, o snapshot é descartado e contabilizado.
+ * Quando o número de segmentos excede a retenção, os mais antigos são apagados.
+ *
+ * Os segmentos de execuções anteriores são mantidos, mas o relógio de Lamport recomeça em
+ * cada arranque do nó: o identificador da execução (o instante do arranque do log) permite
+ * ao {@link LeitorLogSnapshots} pesquisar por Lamport apenas dentro de uma execução.
+ */
+public class LogSnapshots {
+    private static final Registador LOG = Registador.para("LogSnapshots");
+    public static final int MAGIA = 0x4D524C47; // "MRLG"
+    public static final short VERSAO = 2;
+    public static final int TAMANHO_CABECALHO_SEGMENTO = 24;
+    public static final int TAMANHO_PREFIXO = 20;
+    public static final int TAMANHO_REGISTO = TAMANHO_PREFIXO + RelatorioBinario.TAMANHO_REGISTO;
+    static final String PREFIXO_FICHEIRO = "segmento-";
+    static final String EXTENSAO = ".log";
+
+    public static final long TAMANHO_SEGMENTO = Long.getLong("monitoramento.log.tamanhoSegmento", 4L * 1024 * 1024);
+    public static final int RETENCAO_SEGMENTOS = Integer.getInteger("monitoramento.log.retencao", 16);
+    private static final int CAPACIDADE_FILA = 64;
+
+    private static final class Entrada {
+        final long instanteMs;
+        final int relogioLamport;
+        final int idLider;
+        final List<Recurso> snapshot;
+        Entrada(long instanteMs, int relogioLamport, int idLider, List<Recurso> snapshot) {
+            this.instanteMs = instanteMs;
+            this.relogioLamport = relogioLamport;
+            this.idLider = idLider;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private final File diretorio;
+    private final long tamanhoSegmento;
+    private final int retencao;
+    private final long execucao = System.currentTimeMillis();
+    private final BlockingQueue<Entrada> fila = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+    private final Thread escritor;
+    private volatile boolean ativo = true;
+
+    // Estado do segmento atual (apenas usado pela thread de escrita).
+    private final Deque<File> segmentos = new ArrayDeque<>();
+    private MappedByteBuffer atual;
+    private long registosNoAtual;
+    private long proximoNumero;
+
+    // Estatísticas
+    private final AtomicLong snapshotsEscritos = new AtomicLong();
+    private final AtomicLong snapshotsDescartados = new AtomicLong();
+    private final AtomicLong registosEscritos = new AtomicLong();
+
+    public LogSnapshots(File diretorio) throws IOException {
+        this(diretorio, TAMANHO_SEGMENTO, RETENCAO_SEGMENTOS);
+    }
+
+    public LogSnapshots(File diretorio, long tamanhoSegmento, int retencao) throws IOException {
+        this.diretorio = diretorio;
+        this.tamanhoSegmento = tamanhoSegmento;
+        this.retencao = retencao;
+        if (!diretorio.isDirectory() && !diretorio.mkdirs()) {
+            throw new IOException("Nao foi possivel criar o diretorio do log: " + diretorio);
+        }
+        // Os segmentos existentes são mantidos; a escrita continua num segmento novo.
+        for (File f : listarSegmentos(diretorio)) {
+            segmentos.addLast(f);
+            proximoNumero = Math.max(proximoNumero, numeroSegmento(f) + 1);
+        }
+        this.escritor = new Thread(this::escrever, "log-snapshots-" + diretorio.getName());
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Acrescenta um snapshot ao log sem bloquear. Se a fila estiver cheia, o snapshot é descartado.
+     * @return true se o snapshot foi aceite.
+     */
+    public boolean anexar(int idLider, int relogioLamport, List<Recurso> snapshot) {
+        boolean aceite = ativo && fila.offer(new Entrada(System.currentTimeMillis(), relogioLamport, idLider, snapshot));
+        if (!aceite) snapshotsDescartados.incrementAndGet();
+        return aceite;
+    }
+
+    private void escrever() {
+        try {
+            while (ativo || !fila.isEmpty()) {
+                Entrada e = fila.poll(200, TimeUnit.MILLISECONDS);
+                if (e != null) gravar(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.erro("[ERRO] Log de snapshots em %s desativado: %s", diretorio, e.getMessage());
+            ativo = false;
+        } finally {
+            if (atual != null) atual.force();
+        }
+    }
+
+    private void gravar(Entrada e) throws IOException {
+        List<Recurso> nos = new ArrayList<>(e.snapshot.size());
+        for (Recurso r : e.snapshot) {
+            if (r != null) nos.add(r);
+        }
+        for (int i = 0; i < nos.size(); i++) {
+            if (atual == null || atual.remaining() < TAMANHO_REGISTO) {
+                rolarSegmento();
+            }
+            atual.putLong(e.instanteMs);
+            atual.putInt(e.relogioLamport);
+            atual.putInt(e.idLider);
+            atual.putShort((short) nos.size());
+            atual.putShort((short) i);
+            RelatorioBinario.codificarRegisto(atual, nos.get(i));
+            registosNoAtual++;
+            // O contador no cabeçalho é atualizado depois do registo, para o leitor nunca ver um registo incompleto.
+            atual.putLong(8, registosNoAtual);
+        }
+        registosEscritos.addAndGet(nos.size());
+        snapshotsEscritos.incrementAndGet();
+    }
+
+    private void rolarSegmento() throws IOException {
+        if (atual != null) atual.force();
+        File f = new File(diretorio, String.format("%s%08d%s", PREFIXO_FICHEIRO, proximoNumero++, EXTENSAO));
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw"); FileChannel canal = raf.getChannel()) {
+            // O mapeamento continua válido depois de o canal ser fechado.
+            atual = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoSegmento);
+        }
+        atual.putInt(MAGIA);
+        atual.putShort(VERSAO);
+        atual.putShort((short) TAMANHO_REGISTO);
+        atual.putLong(0);
+        atual.putLong(execucao);
+        registosNoAtual = 0;
+        segmentos.addLast(f);
+        while (segmentos.size() > retencao) {
+            File antigo = segmentos.removeFirst();
+            if (!antigo.delete()) {
+                LOG.aviso("[AVISO] Nao foi possivel apagar o segmento antigo %s.", antigo);
+            }
+        }
+    }
+
+    /**
+     * Termina a escrita depois de gravar os snapshots ainda na fila.
+     */
+    public void encerrar() {
+        ativo = false;
+        try {
+            escritor.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static File[] listarSegmentos(File diretorio) {
+        File[] ficheiros = diretorio.listFiles((d, nome) -> nome.startsWith(PREFIXO_FICHEIRO) && nome.endsWith(EXTENSAO));
+        if (ficheiros == null) return new File[0];
+        Arrays.sort(ficheiros);
+        return ficheiros;
+    }
+
+    static long numeroSegmento(File f) {
+        String nome = f.getName();
+        try {
+            return Long.parseLong(nome.substring(PREFIXO_FICHEIRO.length(), nome.length() - EXTENSAO.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public File getDiretorio() { return diretorio; }
+    public long getExecucao() { return execucao; }
+    public long getSnapshotsEscritos() { return snapshotsEscritos.get(); }
+    public long getSnapshotsDescartados() { return snapshotsDescartados.get(); }
+    public long getRegistosEscritos() { return registosEscritos.get(); }
+}
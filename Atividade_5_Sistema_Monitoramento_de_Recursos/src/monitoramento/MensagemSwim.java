@@ -0,0 +1,75 @@
+package monitoramento;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mensagem do protocolo SWIM (PING, PING_REQ ou ACK) com as atualizações de
+ * pertença transportadas por piggyback.
+ *
+ * Formato: tipo (1), remetente (4), sequência (4), alvo (4), número de atualizações (1),
+ * seguido de cada atualização: ID (4), estado (1), incarnação (4).
+ */
+public final class MensagemSwim {
+    public static final byte PING = 1;
+    public static final byte PING_REQ = 2;
+    public static final byte ACK = 3;
+
+    public static final int TAMANHO_CABECALHO = 14;
+    public static final int TAMANHO_ATUALIZACAO = 9;
+
+    final byte tipo;
+    final int remetente;
+    final int sequencia;
+    // PING_REQ: nó a sondar indiretamente. ACK: nó que confirmou estar vivo.
+    final int alvo;
+    final int[] idsAtualizacao;
+    final byte[] estadosAtualizacao;
+    final int[] incarnacoesAtualizacao;
+
+    MensagemSwim(byte tipo, int remetente, int sequencia, int alvo,
+                 int[] idsAtualizacao, byte[] estadosAtualizacao, int[] incarnacoesAtualizacao) {
+        this.tipo = tipo;
+        this.remetente = remetente;
+        this.sequencia = sequencia;
+        this.alvo = alvo;
+        this.idsAtualizacao = idsAtualizacao;
+        this.estadosAtualizacao = estadosAtualizacao;
+        this.incarnacoesAtualizacao = incarnacoesAtualizacao;
+    }
+
+    public int numeroAtualizacoes() { return idsAtualizacao.length; }
+
+    public int tamanho() {
+        return TAMANHO_CABECALHO + idsAtualizacao.length * TAMANHO_ATUALIZACAO;
+    }
+
+    public void codificar(ByteBuffer destino) {
+        destino.put(tipo);
+        destino.putInt(remetente);
+        destino.putInt(sequencia);
+        destino.putInt(alvo);
+        destino.put((byte) idsAtualizacao.length);
+        for (int i = 0; i < idsAtualizacao.length; i++) {
+            destino.putInt(idsAtualizacao[i]);
+            destino.put(estadosAtualizacao[i]);
+            destino.putInt(incarnacoesAtualizacao[i]);
+        }
+    }
+
+    public static MensagemSwim decodificar(ByteBuffer origem) {
+        byte tipo = origem.get();
+        int remetente = origem.getInt();
+        int sequencia = origem.getInt();
+        int alvo = origem.getInt();
+        int n = origem.get() & 0xFF;
+        int[] ids = new int[n];
+        byte[] estados = new byte[n];
+        int[] incarnacoes = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = origem.getInt();
+            estados[i] = origem.get();
+            incarnacoes[i] = origem.getInt();
+        }
+        return new MensagemSwim(tipo, remetente, sequencia, alvo, ids, estados, incarnacoes);
+    }
+}
@@ -0,0 +1,276 @@
+package monitoramento;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Métricas de execução de um nó: contadores repartidos ({@link LongAdder}) e histogramas
+ * de latência ({@link Histograma}). O registo não aloca memória: os histogramas por nó
+ * remoto são criados no arranque e indexados pelo ID.
+ *
+ * Todos os valores são exportados com os mesmos nomes como atributos de um MBean
+ * ("monitoramento:type=No,id=N") e pelo {@link ServidorMetricas} em texto simples.
+ */
+public class MetricasNo implements DynamicMBean {
+    private final int idNo;
+
+    // Coleta
+    private final LongAdder rodadas = new LongAdder();
+    private final Histograma duracaoRodada = new Histograma("us");
+    private final Histograma latenciaGetStatus = new Histograma("us");
+    private final LongAdder falhasGetStatus = new LongAdder();
+
+    // Eleição
+    private final LongAdder eleicoes = new LongAdder();
+    private final Histograma duracaoEleicao = new Histograma("ms");
+    private final AtomicLong inicioEleicaoNs = new AtomicLong();
+    private final LongAdder eleicoesAgregadas = new LongAdder();
+    private final LongAdder mensagensEleicao = new LongAdder();
+    private final Histograma latenciaRmiEleicao = new Histograma("us");
+
+    // Multicast
+    private final LongAdder snapshotsEnviados = new LongAdder();
+    private final LongAdder datagramasEnviados = new LongAdder();
+    private final LongAdder bytesEnviados = new LongAdder();
+    private final LongAdder keyframesEnviados = new LongAdder();
+    private final Histograma duracaoEnvio = new Histograma("us");
+    private final LongAdder sinaisLider = new LongAdder();
+
+    // Autenticação
+    private final LongAdder pedidosAutenticacao = new LongAdder();
+    private final LongAdder autenticacoesRecusadas = new LongAdder();
+    private final LongAdder autenticacoesLimitadas = new LongAdder();
+    private final Histograma duracaoAutenticacao = new Histograma("us");
+
+    // Heartbeat: RTT por nó remoto, indexado pelo ID.
+    private final Histograma[] rttPorNo;
+
+    // Fontes externas (opcionais), lidas apenas na exportação.
+    private volatile HeartbeatGestor heartbeatGestor;
+    private volatile HeartbeatServidor heartbeatServidor;
+    private volatile PoolStubs stubs;
+
+    public MetricasNo(int idNo, List<Integer> todosPids) {
+        this.idNo = idNo;
+        int maior = 0;
+        for (int pid : todosPids) maior = Math.max(maior, pid);
+        rttPorNo = new Histograma[maior + 1];
+        for (int pid : todosPids) {
+            if (pid != idNo) rttPorNo[pid] = new Histograma("us");
+        }
+    }
+
+    void ligar(HeartbeatGestor gestor, HeartbeatServidor servidor, PoolStubs stubs) {
+        this.heartbeatGestor = gestor;
+        this.heartbeatServidor = servidor;
+        this.stubs = stubs;
+    }
+
+    // --- Registo ---
+
+    public void registarRodada(long duracaoNs) {
+        rodadas.increment();
+        duracaoRodada.registar(duracaoNs / 1000);
+    }
+
+    public void registarGetStatus(long duracaoNs, boolean sucesso) {
+        latenciaGetStatus.registar(duracaoNs / 1000);
+        if (!sucesso) falhasGetStatus.increment();
+    }
+
+    /** Marca o início de uma eleição (ignorado se já houver uma em curso). */
+    public void eleicaoIniciada() {
+        if (inicioEleicaoNs.compareAndSet(0, System.nanoTime())) eleicoes.increment();
+    }
+
+    /**
+     * Regista a duração da eleição em curso, se houver.
+     * @return A duração em ms, ou -1 se não havia eleição em curso.
+     */
+    public long eleicaoConcluida() {
+        long inicio = inicioEleicaoNs.getAndSet(0);
+        if (inicio == 0) return -1;
+        long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        duracaoEleicao.registar(duracaoMs);
+        return duracaoMs;
+    }
+
+    /** Pedido de eleição absorvido por uma eleição em curso ou por um coordenador ativo. */
+    public void registarEleicaoAgregada() {
+        eleicoesAgregadas.increment();
+    }
+
+    /** Mensagem de eleição, OK ou anúncio enviada; a latência só é registada nas entregues. */
+    public void registarMensagemEleicao(long duracaoNs, boolean entregue) {
+        mensagensEleicao.increment();
+        if (entregue) latenciaRmiEleicao.registar(duracaoNs / 1000);
+    }
+
+    /**
+     * RTT de referência para prazos, em us: o maior p99 das chamadas RMI medidas (getStatus e
+     * mensagens de eleição) ou, sem essas medições, o RTT dos heartbeats. 0 se não houver medições.
+     */
+    public long getRttReferenciaUs() {
+        long rtt = 0;
+        if (latenciaGetStatus.getContagem() > 0) rtt = latenciaGetStatus.percentil(99);
+        if (latenciaRmiEleicao.getContagem() > 0) rtt = Math.max(rtt, latenciaRmiEleicao.percentil(99));
+        HeartbeatGestor gestor = heartbeatGestor;
+        if (rtt == 0 && gestor != null && gestor.getRttPong().getContagem() > 0) rtt = gestor.getRttPong().percentil(99);
+        return rtt;
+    }
+
+    public void registarEnvioMulticast(int datagramas, long bytes, long duracaoNs) {
+        snapshotsEnviados.increment();
+        datagramasEnviados.add(datagramas);
+        bytesEnviados.add(bytes);
+        duracaoEnvio.registar(duracaoNs / 1000);
+    }
+
+    public void registarKeyframeMulticast() {
+        keyframesEnviados.increment();
+    }
+
+    public void registarSinalLider() {
+        sinaisLider.increment();
+    }
+
+    public void registarAutenticacao(boolean aceite, long duracaoNs) {
+        pedidosAutenticacao.increment();
+        if (!aceite) autenticacoesRecusadas.increment();
+        duracaoAutenticacao.registar(duracaoNs / 1000);
+    }
+
+    /** Ligação recusada pelo limite de pedidos por cliente, antes de ler as credenciais. */
+    public void registarAutenticacaoLimitada() {
+        autenticacoesLimitadas.increment();
+    }
+
+    public void registarRtt(int pid, long rttUs) {
+        if (pid > 0 && pid < rttPorNo.length && rttPorNo[pid] != null) rttPorNo[pid].registar(rttUs);
+    }
+
+    // --- Exportação ---
+
+    /**
+     * Todos os valores atuais, por nome. Usado pelo MBean e pelo endpoint HTTP.
+     */
+    public Map<String, Number> valores() {
+        Map<String, Number> v = new LinkedHashMap<>();
+        v.put("rodadas_total", rodadas.sum());
+        histograma(v, "rodada_duracao_us", duracaoRodada);
+        histograma(v, "getstatus_latencia_us", latenciaGetStatus);
+        v.put("getstatus_falhas_total", falhasGetStatus.sum());
+        v.put("eleicoes_total", eleicoes.sum());
+        histograma(v, "eleicao_duracao_ms", duracaoEleicao);
+        v.put("eleicoes_agregadas_total", eleicoesAgregadas.sum());
+        v.put("eleicao_mensagens_total", mensagensEleicao.sum());
+        histograma(v, "eleicao_rmi_us", latenciaRmiEleicao);
+        v.put("multicast_snapshots_total", snapshotsEnviados.sum());
+        v.put("multicast_datagramas_total", datagramasEnviados.sum());
+        v.put("multicast_bytes_total", bytesEnviados.sum());
+        v.put("multicast_keyframes_total", keyframesEnviados.sum());
+        histograma(v, "multicast_envio_us", duracaoEnvio);
+        v.put("sinais_lider_enviados_total", sinaisLider.sum());
+        v.put("autenticacao_pedidos_total", pedidosAutenticacao.sum());
+        v.put("autenticacao_recusadas_total", autenticacoesRecusadas.sum());
+        v.put("autenticacao_limitadas_total", autenticacoesLimitadas.sum());
+        histograma(v, "autenticacao_duracao_us", duracaoAutenticacao);
+        HeartbeatGestor gestor = heartbeatGestor;
+        if (gestor != null) histograma(v, "heartbeat_rtt_us", gestor.getRttPong());
+        HeartbeatServidor servidor = heartbeatServidor;
+        if (servidor != null) histograma(v, "heartbeat_resposta_us", servidor.getLatenciaPong());
+        for (int pid = 1; pid < rttPorNo.length; pid++) {
+            if (rttPorNo[pid] != null && rttPorNo[pid].getContagem() > 0) {
+                histograma(v, "heartbeat_rtt_us_p" + pid, rttPorNo[pid]);
+            }
+        }
+        PoolStubs s = stubs;
+        if (s != null) {
+            v.put("stubs_acertos_total", s.getAcertos());
+            v.put("stubs_faltas_total", s.getFaltas());
+            v.put("stubs_renovacoes_total", s.getRenovacoes());
+        }
+        return v;
+    }
+
+    private static void histograma(Map<String, Number> v, String nome, Histograma h) {
+        v.put(nome + "_contagem", h.getContagem());
+        v.put(nome + "_media", h.getMedia());
+        v.put(nome + "_p50", h.percentil(50));
+        v.put(nome + "_p90", h.percentil(90));
+        v.put(nome + "_p99", h.percentil(99));
+        v.put(nome + "_max", h.getMaximo());
+    }
+
+    /**
+     * Texto simples, uma métrica por linha: monitoramento_&lt;nome&gt;{no="N"} valor.
+     */
+    public String paraTexto() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Map.Entry<String, Number> e : valores().entrySet()) {
+            sb.append("monitoramento_").append(e.getKey()).append("{no=\"").append(idNo).append("\"} ")
+                    .append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public int getIdNo() { return idNo; }
+    public Histograma getDuracaoRodada() { return duracaoRodada; }
+
+    // --- DynamicMBean ---
+
+    @Override
+    public Object getAttribute(String atributo) throws AttributeNotFoundException {
+        Number valor = valores().get(atributo);
+        if (valor == null) throw new AttributeNotFoundException(atributo);
+        return valor;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] atributos) {
+        Map<String, Number> v = valores();
+        AttributeList lista = new AttributeList();
+        for (String a : atributos) {
+            if (v.containsKey(a)) lista.add(new Attribute(a, v.get(a)));
+        }
+        return lista;
+    }
+
+    @Override
+    public void setAttribute(Attribute atributo) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(atributo.getName() + " (somente leitura)");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList atributos) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String operacao, Object[] parametros, String[] assinatura) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(operacao));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Number> v = valores();
+        MBeanAttributeInfo[] atributos = new MBeanAttributeInfo[v.size()];
+        int i = 0;
+        for (Map.Entry<String, Number> e : v.entrySet()) {
+            atributos[i++] = new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Metricas do No " + idNo, atributos, null, new MBeanOperationInfo[0], null);
+    }
+}
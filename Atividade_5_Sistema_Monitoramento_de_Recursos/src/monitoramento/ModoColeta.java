@@ -0,0 +1,29 @@
+package monitoramento;
+
+/**
+ * Define como o líder obtém o estado dos nós.
+ * PULL: o líder chama getStatus em cada nó a cada rodada.
+ * PUSH: cada nó envia as suas amostras ao coordenador e o líder apenas lê a tabela local.
+ * ARVORE: o líder pede resumos a subcoordenadores, que coletam os seus grupos (ver {@link ColetaHierarquica}).
+ * O modo é escolhido pela propriedade de sistema "monitoramento.modoColeta".
+ */
+public enum ModoColeta {
+    PULL,
+    PUSH,
+    ARVORE;
+
+    public static final String PROPRIEDADE = "monitoramento.modoColeta";
+
+    /**
+     * Lê o modo configurado nas propriedades de sistema (padrão: PULL).
+     */
+    public static ModoColeta doSistema() {
+        String valor = System.getProperty(PROPRIEDADE, PULL.name());
+        try {
+            return ModoColeta.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.printf("[AVISO] Modo de coleta desconhecido '%s'. A usar PULL.%n", valor);
+            return PULL;
+        }
+    }
+}
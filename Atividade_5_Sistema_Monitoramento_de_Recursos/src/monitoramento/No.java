@@ -1,57 +1,140 @@
 package monitoramento;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.ServerSocket;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Representa um nó no sistema distribuído.
  */
 public class No {
+    private static final Registador LOG = Registador.para("No");
+    // Intervalo entre rodadas de coleta do coordenador.
+    public static final long INTERVALO_COLETA_MS = Long.getLong("monitoramento.coleta.intervaloMs", 10000);
     // Atributos principais
     private final int id;
     private final ServicoNo servidorRMI;
     private final AtomicBoolean ativo = new AtomicBoolean(true);
     private final Map<Integer, NoInfo> nosDaRede = new ConcurrentHashMap<>();
     private final int portaHeartbeat;
-    private int coordenadorId;
+    private volatile int coordenadorId;
     private final List<Integer> todosPids;
 
-    // Atributos para Eleição
-    private AtomicBoolean emEleicao = new AtomicBoolean(false);
-    private AtomicBoolean respondeuOk = new AtomicBoolean(false);
-
     // Outros componentes
     private final AtomicInteger relogioLamport = new AtomicInteger(0);
-    private final EmissorMulticast emissor = new EmissorMulticast();
+    private final EmissorMulticast emissor;
     private final AtomicBoolean clienteAutenticadoPresente = new AtomicBoolean(false);
+    // Época da liderança deste nó, anunciada no sinal do líder; muda sempre que se torna coordenador.
+    private volatile long epocaLideranca;
+    // Tokens emitidos pelo servidor de autenticação; sobrevivem a reinícios do servidor.
+    private final ArmazemTokens tokens = new ArmazemTokens();
+    private final ColetorEstado coletor;
+    private final PoolStubs stubs;
+    private final ModoColeta modoColeta = ModoColeta.doSistema();
+    private final TabelaTelemetria telemetria = new TabelaTelemetria();
+    private final AmostradorRecursos amostrador;
+    private final HistoricoMetricas historico = new HistoricoMetricas();
+    private final AgregadosMetricas agregados = new AgregadosMetricas();
+    private final LogSnapshots logSnapshots;
+    private final MetricasNo metricas;
+    private final ServidorMetricas servidorMetricas;
+    private final EleicaoBully eleicao;
+    private final ArrendamentoLider arrendamento;
+    private final ColetaHierarquica coletaHierarquica;
+    private volatile ResumoGrupo ultimoResumo;
+    // O aviso do modo ARVORE sem detalhe por nó sai apenas na primeira rodada.
+    private boolean avisoArvoreSemDetalhe;
+    // Último snapshot coletado (ou espelhado do coordenador, na reserva) e a sua versão.
+    private volatile List<Recurso> ultimoSnapshot = Collections.emptyList();
+    private final AtomicLong versaoSnapshot = new AtomicLong();
+    // Liberta a tarefa do coordenador antes do fim do intervalo (ex.: quando a reserva assume).
+    private final Semaphore anteciparColeta = new Semaphore(0);
+
+    private HeartbeatServidor heartbeatServidor;
+    private HeartbeatGestor heartbeatGestor;
+    private ServicoSwim servicoSwim;
+    private final TipoDetector tipoDetector;
+    // Transporte em memória usado pelo SimuladorCluster (null = RMI e sockets reais).
+    private final RedeLocal rede;
 
     private ServerSocket servidorSocketAuth;
+    // Canal de subscrições do líder; null se desativado ou se este nó não é o coordenador.
+    private volatile ServidorSubscricoes servidorSubscricoes;
     private ServerSocket servidorSocketHeartbeat;
 
     public No(int id, List<Integer> todosPids, Map<Integer, Integer> portasHeartbeat) throws RemoteException {
+        this(id, todosPids, portasHeartbeat, null);
+    }
+
+    /**
+     * Com uma {@link RedeLocal}, as chamadas entre nós e o detetor de falhas (sempre SWIM)
+     * passam pela rede em memória; o nó não abre portas de heartbeat.
+     */
+    public No(int id, List<Integer> todosPids, Map<Integer, Integer> portasHeartbeat, RedeLocal rede) throws RemoteException {
         this.id = id;
+        this.rede = rede;
+        this.stubs = new PoolStubs(rede, id);
+        this.tipoDetector = rede != null ? TipoDetector.SWIM : TipoDetector.doSistema();
         this.todosPids = todosPids;
         this.portaHeartbeat = portasHeartbeat.get(id);
         this.coordenadorId = todosPids.stream().max(Integer::compareTo).orElse(this.id);
         for (Map.Entry<Integer, Integer> entry : portasHeartbeat.entrySet()) {
             nosDaRede.put(entry.getKey(), new NoInfo(entry.getKey(), entry.getValue()));
         }
+        this.coletor = new ColetorEstado(id, todosPids.size() - 1);
+        this.amostrador = new AmostradorRecursos(id);
+        this.coletaHierarquica = new ColetaHierarquica(this, coletor);
+        this.logSnapshots = abrirLogSnapshots(id);
+        this.metricas = new MetricasNo(id, todosPids);
+        this.emissor = new EmissorMulticast(metricas);
+        this.eleicao = new EleicaoBully(this, metricas);
+        this.arrendamento = ArrendamentoLider.DURACAO_MS > 0 ? new ArrendamentoLider(this, ArrendamentoLider.DURACAO_MS) : null;
         this.servidorRMI = new NoServidor(this);
-        System.out.printf("[INFO] No %d iniciado. Coordenador inicial: P%d.%n", id, this.coordenadorId);
+        LOG.info("[INFO] No %d iniciado. Coordenador inicial: P%d. Modo de coleta: %s. Detetor: %s.", id, this.coordenadorId, modoColeta, tipoDetector);
         iniciarServicosHeartbeat();
+        metricas.ligar(heartbeatGestor, heartbeatServidor, stubs);
+        this.servidorMetricas = new ServidorMetricas(metricas);
+        // Na rede em memória os nós partilham o processo: apenas JMX, sem portas HTTP.
+        servidorMetricas.iniciar(rede == null && ServidorMetricas.PORTA_BASE > 0 ? ServidorMetricas.PORTA_BASE + id : 0);
+        if (modoColeta == ModoColeta.PUSH) {
+            new Thread(new EmissorTelemetria(this)).start();
+        }
+        if (arrendamento != null) {
+            Thread t = new Thread(arrendamento, "arrendamento-P" + id);
+            t.setDaemon(true);
+            t.start();
+        }
         iniciarTarefaCoordenador();
     }
 
+    /**
+     * Abre o log de snapshots do nó em "monitoramento.log.diretorio" (padrão: dados/snapshots).
+     * Uma propriedade vazia desativa o log.
+     */
+    private static LogSnapshots abrirLogSnapshots(int id) {
+        String base = System.getProperty("monitoramento.log.diretorio", "dados/snapshots");
+        if (base.isEmpty()) return null;
+        try {
+            return new LogSnapshots(new File(base, "P" + id));
+        } catch (IOException e) {
+            LOG.aviso("[AVISO] No %d: Log de snapshots desativado: %s", id, e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Metodo Chamado para forçar o encerramento dos sockets dos servidores.
      * Isso interrompe imediatamente as threads que estão bloqueadas em 'accept()'.
@@ -64,9 +147,16 @@ public class No {
             if (servidorSocketAuth != null && !servidorSocketAuth.isClosed()) {
                 servidorSocketAuth.close();
             }
+            ServidorSubscricoes subscricoes = servidorSubscricoes;
+            if (subscricoes != null) subscricoes.encerrar();
+            coletor.encerrar();
+            amostrador.encerrar();
+            if (logSnapshots != null) logSnapshots.encerrar();
+            servidorMetricas.encerrar();
+            eleicao.encerrar();
         } catch (Exception e) {
             // Este erro é menor, apenas logamos para depuração.
-            System.err.printf("[ERRO] No %d: Erro ao fechar sockets do servidor: %s%n", id, e.getMessage());
+            LOG.erro("[ERRO] No %d: Erro ao fechar sockets do servidor: %s", id, e.getMessage());
         }
     }
 
@@ -82,10 +172,18 @@ public class No {
 
     /**
      * Passa um callback para que o nó possa obter a referência do ServerSocket.
+     * Com o detetor SWIM, o par PING/PONG é substituído pelo ServicoSwim.
      */
     private void iniciarServicosHeartbeat() {
-        new Thread(new HeartbeatServidor(this, this.portaHeartbeat, (socket) -> this.servidorSocketHeartbeat = socket)).start();
-        new Thread(new HeartbeatGestor(this)).start();
+        if (tipoDetector == TipoDetector.SWIM) {
+            servicoSwim = new ServicoSwim(this, rede);
+            new Thread(servicoSwim).start();
+            return;
+        }
+        heartbeatServidor = new HeartbeatServidor(this, this.portaHeartbeat, (socket) -> this.servidorSocketHeartbeat = socket);
+        heartbeatGestor = new HeartbeatGestor(this);
+        new Thread(heartbeatServidor).start();
+        new Thread(heartbeatGestor).start();
     }
 
     /**
@@ -94,15 +192,34 @@ public class No {
     private void iniciarTarefaCoordenador() {
         new Thread(() -> {
             Thread servidorAuthThread = null;
+            Thread sinalThread = null;
+            Thread subscricoesThread = null;
             while (ativo.get()) {
                 try {
-                    Thread.sleep(10000);
+                    if (anteciparColeta.tryAcquire(INTERVALO_COLETA_MS, TimeUnit.MILLISECONDS)) {
+                        anteciparColeta.drainPermits();
+                    }
                     if (id == coordenadorId && ativo.get()) {
+                        if (!isArrendamentoValido()) {
+                            LOG.aviso("[AVISO] Lider P%d: arrendamento sem renovacao confirmada. Coleta suspensa.", id);
+                            continue;
+                        }
                         if (servidorAuthThread == null || !servidorAuthThread.isAlive()) {
                             servidorAuthThread = new Thread(new ServidorAutenticacao(this, (socket) -> this.servidorSocketAuth = socket));
                             servidorAuthThread.start();
                         }
-                        System.out.printf("%n================ [LIDER P%d] INICIANDO COLETA DE ESTADO GLOBAL ===============%n", id);
+                        if (sinalThread == null || !sinalThread.isAlive()) {
+                            sinalThread = new Thread(new EmissorSinalLider(this), "sinal-P" + id);
+                            sinalThread.setDaemon(true);
+                            sinalThread.start();
+                        }
+                        if (ServidorSubscricoes.PORTA > 0 && (subscricoesThread == null || !subscricoesThread.isAlive())) {
+                            servidorSubscricoes = new ServidorSubscricoes(this);
+                            subscricoesThread = new Thread(servidorSubscricoes, "subscricoes-P" + id);
+                            subscricoesThread.setDaemon(true);
+                            subscricoesThread.start();
+                        }
+                        LOG.info("%n================ [LIDER P%d] INICIANDO COLETA DE ESTADO GLOBAL ===============", id);
                         coletarEstadoGlobal();
                     }
                 } catch (InterruptedException e) {
@@ -112,41 +229,209 @@ public class No {
         }).start();
     }
 
-    private void coletarEstadoGlobal() {
+    // Visível no pacote para os benchmarks de rodada completa.
+    void coletarEstadoGlobal() {
+        long inicioRodadaNs = System.nanoTime();
         relogioLamport.incrementAndGet();
-        System.out.printf("[LIDER P%d] Relogio Logico antes da coleta: %d%n", id, relogioLamport.get());
+        LOG.info("[LIDER P%d] Relogio Logico antes da coleta: %d", id, relogioLamport.get());
 
-        List<Recurso> snapshot = new ArrayList<>();
-        snapshot.add(this.getStatusLocal());
+        List<Recurso> snapshot;
+        // Na árvore sem detalhe, o snapshot só tem o líder: o cluster fica no resumo.
+        ResumoGrupo resumoSemDetalhe = null;
+        switch (modoColeta) {
+            case PUSH: snapshot = lerTelemetria(); break;
+            case ARVORE:
+                snapshot = coletarPorArvore();
+                if (ultimoResumo.getDetalhe() == null) resumoSemDetalhe = ultimoResumo;
+                break;
+            default: snapshot = coletarPorPull();
+        }
+        historico.registar(snapshot);
+        if (resumoSemDetalhe != null) {
+            agregados.registarResumo(System.currentTimeMillis(), resumoSemDetalhe, snapshot);
+        } else {
+            agregados.registar(snapshot);
+        }
+        ultimoSnapshot = snapshot;
+        versaoSnapshot.incrementAndGet();
+        if (logSnapshots != null) {
+            // A escrita em disco é feita noutra thread; aqui apenas se enfileira o snapshot.
+            logSnapshots.anexar(this.id, relogioLamport.get(), snapshot);
+        }
+
+        if (LOG.isInfoAtivo()) {
+            // O bloco é enviado como uma única mensagem, para não se intercalar com outras threads.
+            StringBuilder sb = new StringBuilder();
+            sb.append("\n--- [LIDER P").append(id).append("] SNAPSHOT GLOBAL COLETADO ---\n");
+            for (Recurso r : snapshot) {
+                if (r != null) sb.append("  -> ").append(r).append('\n');
+            }
+            sb.append("----------------------------------------\n");
+            for (Recurso r : snapshot) {
+                if (r == null) continue;
+                HistoricoMetricas.Estatisticas cpu = historico.estatisticasRecentes(r.getNoId(), HistoricoMetricas.Metrica.CPU, 60000);
+                sb.append(String.format("  [HISTORICO] No %d | CPU no ultimo minuto: %s%n", r.getNoId(), cpu));
+            }
+            if (resumoSemDetalhe != null) {
+                sb.append(String.format("  [ARVORE] Cluster (sem detalhe por no) | %s%n", resumoSemDetalhe));
+            }
+            sb.append(String.format("  [AGREGADOS] Cluster | CPU na ultima hora: %s%n",
+                    agregados.consultarRecentes(AgregadosMetricas.CLUSTER, HistoricoMetricas.Metrica.CPU, 3_600_000L)));
+            sb.append("----------------------------------------\n");
+            LOG.info("%s", sb);
+        }
+
+        ServidorSubscricoes subscricoes = servidorSubscricoes;
+        if (subscricoes != null) subscricoes.publicar(snapshot);
+        if (clienteAutenticadoPresente.get()) {
+            emissor.enviar(this.id, relogioLamport.get(), snapshot);
+            LOG.info("[LIDER P%d] Snapshot enviado via multicast para clientes autenticados.", id);
+        } else {
+            LOG.info("[LIDER P%d] Nenhum cliente autenticado. Snapshot nao sera enviado via multicast.", id);
+        }
+        if (heartbeatGestor != null) {
+            LOG.info("[LIDER P%d] Heartbeat: RTT PING/PONG %s | Resposta a PINGs %s",
+                    id, heartbeatGestor.getRttPong(), heartbeatServidor.getLatenciaPong());
+            LOG.info("[LIDER P%d] Suspeita phi por no (limiar %.1f): %s", id, HeartbeatGestor.LIMIAR_PHI, formatarSuspeitas());
+        }
+        metricas.registarRodada(System.nanoTime() - inicioRodadaNs);
+        LOG.info("======================= [LIDER P%d] FIM DA COLETA ======================%n", id);
+    }
 
+    /**
+     * Modo PULL: pede o estado a cada nó ativo em paralelo.
+     */
+    private List<Recurso> coletarPorPull() {
+        List<Integer> alvos = new ArrayList<>();
         for (int pid : todosPids) {
             if (pid != this.id && nosDaRede.get(pid).isAtivo()) {
-                try {
-                    Registry registry = LocateRegistry.getRegistry("127.0.0.1", 1099);
-                    ServicoNo stub = (ServicoNo) registry.lookup("No" + pid);
-                    Recurso recursoRemoto = stub.getStatus(this.relogioLamport.get());
-                    snapshot.add(recursoRemoto);
-                } catch (Exception e) {
-                    System.err.printf("[FALHA] Lider P%d nao conseguiu coletar estado do No %d.%n", id, pid);
-                }
+                alvos.add(pid);
             }
         }
 
-        System.out.println("\n--- [LIDER P" + id + "] SNAPSHOT GLOBAL COLETADO ---");
-        snapshot.forEach(r -> { if (r != null) System.out.println("  -> " + r); });
-        System.out.println("----------------------------------------\n");
+        // Os pedidos são feitos em paralelo; quem não responder até ao prazo fica de fora desta rodada.
+        int relogioColeta = this.relogioLamport.get();
+        ColetorEstado.ResultadoColeta resultado = coletor.coletar(alvos, pid -> {
+            long inicioNs = System.nanoTime();
+            boolean sucesso = false;
+            try {
+                Recurso r = stubs.obter(pid).getStatus(relogioColeta);
+                sucesso = true;
+                return r;
+            } catch (RemoteException e) {
+                stubs.invalidar(pid);
+                throw e;
+            } finally {
+                metricas.registarGetStatus(System.nanoTime() - inicioNs, sucesso);
+            }
+        });
+
+        List<Recurso> snapshot = new ArrayList<>();
+        snapshot.add(this.getStatusLocal());
+        snapshot.addAll(resultado.getRecursos());
 
-        if (clienteAutenticadoPresente.get()) {
-            emissor.enviar(this.id, snapshot);
-            System.out.printf("[LIDER P%d] Snapshot enviado via multicast para clientes autenticados.%n", id);
-        } else {
-            System.out.printf("[LIDER P%d] Nenhum cliente autenticado. Snapshot nao sera enviado via multicast.%n", id);
+        for (int pid : resultado.getFalhados()) {
+            LOG.erro("[FALHA] Lider P%d nao conseguiu coletar estado do No %d.", id, pid);
+        }
+        if (!resultado.getAtrasados().isEmpty()) {
+            LOG.aviso("[AVISO] Lider P%d: Nos sem resposta dentro do prazo de %d ms (obsoletos): %s",
+                    id, coletor.getPrazoRodadaMs(), resultado.getAtrasados());
+        }
+        LOG.info("[LIDER P%d] Rodada concluida em %d ms | Latencia por no (ms): %s | Prazos falhados (total): %d",
+                id, resultado.getDuracaoMs(), resultado.getLatenciasMs(), coletor.getTotalPrazosFalhados());
+        LOG.info("[LIDER P%d] Cache de stubs RMI: %s", id, stubs);
+        return snapshot;
+    }
+
+    /**
+     * Modo ARVORE: pede resumos aos subcoordenadores; o snapshot tem o detalhe por nó apenas
+     * se "monitoramento.arvore.detalhe" estiver ativo (caso contrário, só o próprio líder).
+     */
+    private List<Recurso> coletarPorArvore() {
+        ResumoGrupo resumo = coletaHierarquica.coletar(ColetaHierarquica.membrosAtivos(this),
+                relogioLamport.get(), coletor.getPrazoRodadaMs());
+        ultimoResumo = resumo;
+        if (!resumo.getSemResposta().isEmpty()) {
+            LOG.aviso("[AVISO] Lider P%d: %d nos sem resposta na arvore: %s", id, resumo.getSemResposta().size(), resumo.getSemResposta());
+        }
+        LOG.info("[LIDER P%d] Arvore de coleta: %s", id, resumo);
+        if (resumo.getDetalhe() != null) return resumo.getDetalhe();
+        if (!avisoArvoreSemDetalhe) {
+            avisoArvoreSemDetalhe = true;
+            LOG.aviso("[AVISO] Lider P%d: modo ARVORE sem detalhe por no. O relatorio multicast, o historico, o log de snapshots "
+                    + "e as subscricoes contem apenas o lider; o agregado do cluster vem dos resumos "
+                    + "(monitoramento.arvore.detalhe=true para o detalhe).", id);
+        }
+        List<Recurso> snapshot = new ArrayList<>();
+        snapshot.add(this.getStatusLocal());
+        return snapshot;
+    }
+
+    /**
+     * Modo PUSH: lê a tabela de telemetria alimentada pelos nós, sem chamadas RMI.
+     */
+    private List<Recurso> lerTelemetria() {
+        List<Recurso> snapshot = new ArrayList<>();
+        snapshot.add(this.getStatusLocal());
+        for (Recurso r : telemetria.snapshot(EmissorTelemetria.getIdadeMaximaMs())) {
+            NoInfo info = nosDaRede.get(r.getNoId());
+            if (r.getNoId() != this.id && info != null && info.isAtivo()) {
+                snapshot.add(r);
+            }
+        }
+        LOG.info("[LIDER P%d] Snapshot lido da tabela de telemetria (PUSH): %d nos.", id, snapshot.size());
+        return snapshot;
+    }
+
+    /**
+     * Nível de suspeita phi atual de cada outro nó, para ajustar o limiar.
+     */
+    public Map<Integer, Double> getSuspeitas() {
+        long agora = System.currentTimeMillis();
+        Map<Integer, Double> suspeitas = new TreeMap<>();
+        for (NoInfo info : nosDaRede.values()) {
+            if (info.getId() != this.id) suspeitas.put(info.getId(), info.getSuspeita(agora));
         }
-        System.out.printf("======================= [LIDER P%d] FIM DA COLETA ======================%n%n", id);
+        return suspeitas;
+    }
+
+    private String formatarSuspeitas() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<Integer, Double> e : getSuspeitas().entrySet()) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(e.getKey()).append('=').append(String.format("%.2f", e.getValue()));
+        }
+        return sb.append('}').toString();
     }
 
     public void registrarClienteAutenticado() {
         this.clienteAutenticadoPresente.set(true);
+        // Um cliente novo não tem a vista anterior: o próximo relatório segue completo.
+        emissor.pedirKeyframe();
+    }
+
+    /** Pedido de um cliente que perdeu a base dos deltas: o próximo relatório segue completo. */
+    public void pedirKeyframe() {
+        emissor.pedirKeyframe();
+    }
+
+    public boolean isClienteAutenticadoPresente() { return clienteAutenticadoPresente.get(); }
+    public ArmazemTokens getTokens() { return tokens; }
+
+    /**
+     * Guarda, no nó de reserva, o snapshot recebido do coordenador: entra no histórico e nos
+     * agregados e, no modo PUSH, semeia a tabela de telemetria para a primeira coleta após assumir.
+     */
+    void espelharSnapshot(List<Recurso> snapshot) {
+        historico.registar(snapshot);
+        agregados.registar(snapshot);
+        telemetria.atualizar(snapshot);
+        ultimoSnapshot = snapshot;
+    }
+
+    /** Faz a tarefa do coordenador correr já, sem esperar pelo fim do intervalo. */
+    void anteciparColeta() {
+        anteciparColeta.release();
     }
 
     // --- Getters e Lógica de Eleição ---
@@ -155,76 +440,86 @@ public class No {
     public Map<Integer, NoInfo> getNosDaRede() { return nosDaRede; }
     public ServicoNo getServidorRMI() { return servidorRMI; }
     public int getCoordenadorId() { return coordenadorId; }
+    public RedeLocal getRede() { return rede; }
+    public ColetorEstado getColetor() { return coletor; }
+    public PoolStubs getStubs() { return stubs; }
+    public TabelaTelemetria getTelemetria() { return telemetria; }
+    public ModoColeta getModoColeta() { return modoColeta; }
+    public HeartbeatServidor getHeartbeatServidor() { return heartbeatServidor; }
+    public HeartbeatGestor getHeartbeatGestor() { return heartbeatGestor; }
+    public ServicoSwim getServicoSwim() { return servicoSwim; }
+    public TipoDetector getTipoDetector() { return tipoDetector; }
+    public int getRelogioLamport() { return relogioLamport.get(); }
+    public HistoricoMetricas getHistorico() { return historico; }
+    public AgregadosMetricas getAgregados() { return agregados; }
+    public LogSnapshots getLogSnapshots() { return logSnapshots; }
+    public MetricasNo getMetricas() { return metricas; }
+    public EleicaoBully getEleicao() { return eleicao; }
+    public ArrendamentoLider getArrendamento() { return arrendamento; }
+    public long getEpocaLideranca() { return epocaLideranca; }
+
+    /**
+     * Indica se o coordenador pode agir como tal: sem arrendamento configurado, sempre.
+     */
+    public boolean isArrendamentoValido() {
+        return arrendamento == null || arrendamento.isValido();
+    }
+    public List<Recurso> getUltimoSnapshot() { return ultimoSnapshot; }
+    public long getVersaoSnapshot() { return versaoSnapshot.get(); }
+    public ResumoGrupo getUltimoResumo() { return ultimoResumo; }
 
     public Recurso getStatusLocal() {
         if (!ativo.get()) return null;
         int timestampAtual = relogioLamport.incrementAndGet();
-        return new Recurso(this.id, timestampAtual);
+        // Devolve a última amostra do amostrador em segundo plano, sem consultar o SO.
+        return amostrador.criarRecurso(this.id, timestampAtual);
     }
 
+    /**
+     * Inicia uma eleição Bully sem bloquear quem a pede (ver {@link EleicaoBully}).
+     */
     public void iniciarEleicao() {
-        if (!emEleicao.compareAndSet(false, true)) return;
-        System.out.printf("%n*************************************************%n");
-        System.out.printf("[ELEICAO] No %d iniciou uma ELEICAO (Bully).%n", id);
-        System.out.printf("*************************************************%n");
-        this.respondeuOk.set(false);
-        List<Integer> pidsMaiores = todosPids.stream().filter(p -> p > this.id).collect(Collectors.toList());
-        boolean algumMaiorContactado = false;
-        for (int pidMaior : pidsMaiores) {
-            if (nosDaRede.get(pidMaior).isAtivo()) {
-                System.out.printf("[ELEICAO] No %d enviando mensagem de eleicao para P%d.%n", id, pidMaior);
-                enviarMensagemEleicao(pidMaior);
-                algumMaiorContactado = true;
-            }
-        }
-        if (!algumMaiorContactado) {
-            anunciarCoordenador();
-            return;
-        }
-        new Thread(() -> {
-            try {
-                Thread.sleep(3000);
-                if (!this.respondeuOk.get()) {
-                    anunciarCoordenador();
-                } else {
-                    System.out.printf("[ELEICAO] No %d encerrando eleicao. Um no maior assumira.%n", id);
-                    emEleicao.set(false);
-                }
-            } catch (InterruptedException e) {}
-        }).start();
+        eleicao.iniciar();
     }
 
-    private void anunciarCoordenador() {
-        System.out.printf("%n!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!%n");
-        System.out.printf("[ELEICAO] No %d: *** EU SOU O NOVO COORDENADOR! ***%n", id);
-        System.out.printf("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!%n%n");
-        this.coordenadorId = this.id;
-        this.emEleicao.set(false);
-        this.respondeuOk.set(false);
-        for (int pid : todosPids) {
-            if (pid != this.id && nosDaRede.get(pid).isAtivo()) {
-                enviarMensagemCoordenador(pid);
-            }
+    void definirCoordenador(int novoCoordenadorId) {
+        if (novoCoordenadorId == this.id && this.coordenadorId != this.id) {
+            // O relógio de Lamport já cobre tudo o que este nó viu do líder anterior: a época nova é maior.
+            epocaLideranca = relogioLamport.incrementAndGet();
+            this.coordenadorId = novoCoordenadorId;
+            emissor.pedirKeyframe();
+            // O servidor de autenticação e o sinal do líder arrancam já, sem esperar pelo intervalo de coleta.
+            anteciparColeta();
+            return;
         }
+        this.coordenadorId = novoCoordenadorId;
     }
 
-    private void enviarMensagemRMI(int idDestino, RmiAction action) {
-        if (!ativo.get() || idDestino == this.id) return;
+    /**
+     * @return true se a mensagem foi entregue ao nó de destino.
+     */
+    private boolean enviarMensagemRMI(int idDestino, RmiAction action) {
+        if (!ativo.get() || idDestino == this.id) return false;
+        long inicioNs = System.nanoTime();
         try {
-            Registry registry = LocateRegistry.getRegistry("127.0.0.1", 1099);
-            ServicoNo stub = (ServicoNo) registry.lookup("No" + idDestino);
-            action.execute(stub);
+            action.execute(stubs.obter(idDestino));
+            metricas.registarMensagemEleicao(System.nanoTime() - inicioNs, true);
+            return true;
         } catch (Exception e) {
+            metricas.registarMensagemEleicao(System.nanoTime() - inicioNs, false);
+            // O stub em cache pode estar obsoleto: força uma nova consulta ao registo.
+            stubs.invalidar(idDestino);
             if (nosDaRede.get(idDestino).isAtivo()) {
-                System.err.printf("[FALHA] No %d nao conseguiu contatar No %d via RMI. Marcando como inativo.%n", id, idDestino);
+                LOG.erro("[FALHA] No %d nao conseguiu contatar No %d via RMI. Marcando como inativo.", id, idDestino);
                 nosDaRede.get(idDestino).setAtivo(false);
             }
+            return false;
         }
     }
 
-    private void enviarMensagemEleicao(int idDestino) { enviarMensagemRMI(idDestino, (stub) -> stub.receberMensagemEleicao(this.id)); }
-    private void enviarMensagemOk(int idDestino) { enviarMensagemRMI(idDestino, (stub) -> stub.receberMensagemOk(this.id)); }
-    private void enviarMensagemCoordenador(int idDestino) { enviarMensagemRMI(idDestino, (stub) -> stub.receberMensagemCoordenador(this.id)); }
+    boolean enviarMensagemEleicao(int idDestino) { return enviarMensagemRMI(idDestino, (stub) -> stub.receberMensagemEleicao(this.id)); }
+    boolean enviarMensagemOk(int idDestino) { return enviarMensagemRMI(idDestino, (stub) -> stub.receberMensagemOk(this.id)); }
+    boolean enviarMensagemCoordenador(int idDestino) { return enviarMensagemRMI(idDestino, (stub) -> stub.receberMensagemCoordenador(this.id, epocaLideranca)); }
 
     @FunctionalInterface
     interface RmiAction { void execute(ServicoNo stub) throws RemoteException; }
@@ -236,27 +531,54 @@ public class No {
         public Recurso getStatus(int relogioRemetente) throws RemoteException {
             int novoRelogio = Math.max(noPai.relogioLamport.get(), relogioRemetente) + 1;
             noPai.relogioLamport.set(novoRelogio);
-            System.out.printf("[INFO] No %d recebeu solicitacao de status. Relogio Logico atualizado para %d.%n", noPai.id, novoRelogio);
+            // Chamado em cada rodada por cada nó: só registado em DEBUG.
+            LOG.debug("[INFO] No %d recebeu solicitacao de status. Relogio Logico atualizado para %d.", noPai.id, novoRelogio);
             return noPai.getStatusLocal();
         }
         @Override
-        public void receberMensagemEleicao(int idRemetente) throws RemoteException {
-            System.out.printf("[ELEICAO] No %d recebeu mensagem de ELEICAO de P%d.%n", noPai.id, idRemetente);
-            if (noPai.id > idRemetente) {
-                noPai.enviarMensagemOk(idRemetente);
-                noPai.iniciarEleicao();
+        public void receberAmostras(List<Recurso> amostras, int relogioRemetente) throws RemoteException {
+            noPai.relogioLamport.updateAndGet(atual -> Math.max(atual, relogioRemetente) + 1);
+            if (noPai.id == noPai.coordenadorId) {
+                noPai.telemetria.atualizar(amostras);
+                // Todas as amostras recebidas entram no histórico, com a resolução de envio dos nós.
+                for (Recurso r : amostras) {
+                    if (r != null) {
+                        noPai.historico.registar(r);
+                        noPai.agregados.registar(r);
+                    }
+                }
             }
         }
         @Override
+        public ResumoGrupo coletarGrupo(List<Integer> membros, int relogioRemetente, long prazoMs) throws RemoteException {
+            noPai.relogioLamport.updateAndGet(atual -> Math.max(atual, relogioRemetente) + 1);
+            LOG.debug("[INFO] No %d: subcoordenador de %d nos nesta rodada.", noPai.id, membros.size());
+            return noPai.coletaHierarquica.coletar(membros, noPai.relogioLamport.get(), prazoMs);
+        }
+        @Override
+        public void receberMensagemEleicao(int idRemetente) throws RemoteException {
+            LOG.info("[ELEICAO] No %d recebeu mensagem de ELEICAO de P%d.", noPai.id, idRemetente);
+            // Responde de imediato; o OK e a eleição seguem noutras threads.
+            noPai.eleicao.eleicaoRecebida(idRemetente);
+        }
+        @Override
         public void receberMensagemOk(int idRemetente) throws RemoteException {
-            System.out.printf("[ELEICAO] No %d recebeu OK de P%d.%n", noPai.id, idRemetente);
-            noPai.respondeuOk.set(true);
+            LOG.info("[ELEICAO] No %d recebeu OK de P%d.", noPai.id, idRemetente);
+            noPai.eleicao.okRecebido(idRemetente);
+        }
+        @Override
+        public void receberMensagemCoordenador(int novoCoordenadorId, long epoca) throws RemoteException {
+            // A época é um valor do relógio do novo líder: ao juntá-la ao relógio local, a época de
+            // um líder seguinte é sempre maior, mesmo no modo PUSH, em que o relógio do líder não chega aos nós.
+            noPai.relogioLamport.updateAndGet(atual -> (int) Math.max(atual, epoca) + 1);
+            LOG.info("[INFO] No %d recebeu anuncio: P%d e o novo COORDENADOR (epoca %d).", noPai.id, novoCoordenadorId, epoca);
+            noPai.eleicao.anuncioRecebido(novoCoordenadorId);
         }
         @Override
-        public void receberMensagemCoordenador(int novoCoordenadorId) throws RemoteException {
-            System.out.printf("[INFO] No %d recebeu anuncio: P%d e o novo COORDENADOR.%n", noPai.id, novoCoordenadorId);
-            noPai.coordenadorId = novoCoordenadorId;
-            noPai.emEleicao.set(false);
+        public boolean renovarArrendamento(EstadoLider estado) throws RemoteException {
+            noPai.relogioLamport.updateAndGet(atual -> Math.max(atual, estado.getRelogioLamport()) + 1);
+            // Sem arrendamento ativo neste nó, a renovação é aceite mas não há reserva.
+            return noPai.arrendamento == null || noPai.arrendamento.renovacaoRecebida(estado);
         }
     }
 }
\ No newline at end of file
@@ -2,13 +2,26 @@ package monitoramento;
 
 /**
  * Uma classe simples para armazenar informações sobre outros nós na rede.
- * Mantém o estado de atividade e o contador de falhas de heartbeat.
+ * Mantém o estado de atividade, o contador de falhas de heartbeat e o
+ * detetor phi accrual usado para decidir quando o nó é considerado falho.
  */
 public class NoInfo {
+    // Intervalo nominal entre heartbeats, usado para iniciar o detetor phi.
+    public static final long INTERVALO_HEARTBEAT_MS = Long.getLong("monitoramento.heartbeat.intervaloMs", 1000);
+    private static final int JANELA_PHI = 100;
+    private static final double DESVIO_MINIMO_MS = 100;
+    private static final double PAUSA_ACEITAVEL_MS = Long.getLong("monitoramento.phi.pausaAceitavelMs", 1000);
+
     private final int id;
     private final int portaHeartbeat;
-    private boolean ativo = true;
+    private volatile boolean ativo = true;
     private int contadorFalhas = 0;
+    private final DetectorPhiAccrual detectorPhi = novoDetectorPhi();
+
+    /** Detetor phi com os parâmetros usados para cada nó remoto (também usado pelo SimuladorSwim). */
+    static DetectorPhiAccrual novoDetectorPhi() {
+        return new DetectorPhiAccrual(JANELA_PHI, INTERVALO_HEARTBEAT_MS, DESVIO_MINIMO_MS, PAUSA_ACEITAVEL_MS);
+    }
 
     public NoInfo(int id, int portaHeartbeat) {
         this.id = id;
@@ -16,6 +29,7 @@ public class NoInfo {
     }
 
     // Getters e Setters
+    public int getId() { return id; }
     public int getPortaHeartbeat() { return portaHeartbeat; }
     public boolean isAtivo() { return ativo; }
     public void setAtivo(boolean ativo) { this.ativo = ativo; }
@@ -24,4 +38,9 @@ public class NoInfo {
     // Métodos para gerenciar o estado de falha
     public void incrementarContadorFalhas() { this.contadorFalhas++; }
     public void resetarContadorFalhas() { this.contadorFalhas = 0; }
-}
\ No newline at end of file
+
+    // Métodos do detetor phi accrual
+    public void registrarHeartbeat(long agoraMs) { detectorPhi.registarHeartbeat(agoraMs); }
+    public double getSuspeita(long agoraMs) { return detectorPhi.phi(agoraMs); }
+    public void reiniciarDetector() { detectorPhi.reiniciar(INTERVALO_HEARTBEAT_MS); }
+}
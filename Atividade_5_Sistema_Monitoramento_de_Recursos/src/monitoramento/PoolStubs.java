@@ -0,0 +1,98 @@
+package monitoramento;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de stubs RMI partilhado pela coleta de estado e pela eleição.
+ * Os stubs são obtidos do registo apenas na primeira utilização e reaproveitados
+ * depois; uma RemoteException ou uma mudança de estado reportada pelo heartbeat
+ * invalida a entrada, forçando uma nova consulta ao registo na próxima chamada.
+ * Com uma {@link RedeLocal}, os stubs são obtidos dela em vez do registo RMI.
+ */
+public class PoolStubs {
+    private static final String HOST_REGISTRO = "127.0.0.1";
+    private static final int PORTA_REGISTRO = 1099;
+
+    private final Map<Integer, ServicoNo> stubs = new ConcurrentHashMap<>();
+    // Nós cujo stub foi invalidado e ainda não foi renovado.
+    private final Set<Integer> invalidados = ConcurrentHashMap.newKeySet();
+    private volatile Registry registry;
+    private final RedeLocal rede;
+    private final int idOrigem;
+
+    // Contadores
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong faltas = new AtomicLong();
+    private final AtomicLong renovacoes = new AtomicLong();
+
+    public PoolStubs() {
+        this(null, 0);
+    }
+
+    /**
+     * @param rede Transporte em memória (null para usar o registo RMI).
+     * @param idOrigem O ID do nó dono desta cache, usado pela rede para aplicar partições.
+     */
+    public PoolStubs(RedeLocal rede, int idOrigem) {
+        this.rede = rede;
+        this.idOrigem = idOrigem;
+    }
+
+    /**
+     * Obtém o stub do nó indicado, consultando o registo apenas se não estiver em cache.
+     * @param pid O ID do nó de destino.
+     * @return O stub RMI do nó.
+     * @throws RemoteException Se o registo não estiver acessível.
+     * @throws NotBoundException Se o nó não estiver registado.
+     */
+    public ServicoNo obter(int pid) throws RemoteException, NotBoundException {
+        ServicoNo stub = stubs.get(pid);
+        if (stub != null) {
+            acertos.incrementAndGet();
+            return stub;
+        }
+        faltas.incrementAndGet();
+        stub = rede != null ? rede.stub(idOrigem, pid) : (ServicoNo) getRegistry().lookup("No" + pid);
+        stubs.put(pid, stub);
+        if (invalidados.remove(pid)) {
+            renovacoes.incrementAndGet();
+        }
+        return stub;
+    }
+
+    /**
+     * Remove o stub do nó da cache. Chamado após uma RemoteException ou quando o
+     * heartbeat deteta que o nó falhou ou se reconectou.
+     */
+    public void invalidar(int pid) {
+        if (stubs.remove(pid) != null) {
+            invalidados.add(pid);
+        }
+    }
+
+    private Registry getRegistry() throws RemoteException {
+        Registry r = registry;
+        if (r == null) {
+            r = LocateRegistry.getRegistry(HOST_REGISTRO, PORTA_REGISTRO);
+            registry = r;
+        }
+        return r;
+    }
+
+    // --- Contadores ---
+    public long getAcertos() { return acertos.get(); }
+    public long getFaltas() { return faltas.get(); }
+    public long getRenovacoes() { return renovacoes.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("acertos=%d, faltas=%d, renovacoes=%d", getAcertos(), getFaltas(), getRenovacoes());
+    }
+}
@@ -0,0 +1,31 @@
+package monitoramento;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Quadro de tamanho fixo usado pelo heartbeat nas ligações persistentes.
+ * Formato (16 bytes): tipo (1), reservado (3), ID do remetente (4), marca temporal em ns (8).
+ * O PONG devolve a marca temporal do PING, permitindo medir o tempo de ida e volta.
+ */
+public final class QuadroHeartbeat {
+    public static final int TAMANHO = 16;
+    public static final byte PING = 1;
+    public static final byte PONG = 2;
+
+    private QuadroHeartbeat() {}
+
+    /**
+     * Escreve um quadro no buffer, a partir da posição atual.
+     */
+    public static void escrever(ByteBuffer destino, byte tipo, int idRemetente, long marcaTemporalNs) {
+        destino.put(tipo);
+        destino.put((byte) 0);
+        destino.putShort((short) 0);
+        destino.putInt(idRemetente);
+        destino.putLong(marcaTemporalNs);
+    }
+
+    public static byte lerTipo(ByteBuffer quadro) { return quadro.get(0); }
+    public static int lerRemetente(ByteBuffer quadro) { return quadro.getInt(4); }
+    public static long lerMarcaTemporal(ByteBuffer quadro) { return quadro.getLong(8); }
+}
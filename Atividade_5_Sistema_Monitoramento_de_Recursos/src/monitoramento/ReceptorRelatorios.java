@@ -0,0 +1,274 @@
+package monitoramento;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caminho de receção do cliente multicast: um {@link DatagramChannel} lê para um único buffer
+ * direto reutilizado e os relatórios são descodificados em vistas reutilizáveis
+ * ({@link RelatorioDecodificado}), sem alocar memória por datagrama.
+ *
+ * A apresentação corre noutra thread, atrás de uma fila limitada de vistas: se quem apresenta
+ * não acompanhar o ritmo do líder, os relatórios em excesso são descartados na receção (e
+ * contados) em vez de atrasarem a leitura do socket. Os relatórios com um número de sequência
+ * já visto do mesmo líder contam como fora de ordem e não são entregues; os saltos na
+ * sequência contam como perdidos. A sequência recomeça quando o sinal do líder muda de época ou
+ * quando cai mais do que {@link #RECUO_MAXIMO_SEQUENCIA} (o líder reiniciou com o mesmo ID).
+ *
+ * Os relatórios binários podem chegar como deltas ({@link CodificadorDelta}): o receptor mantém
+ * o snapshot completo, aplica-lhe cada delta na thread de receção (mesmo quando o relatório é
+ * depois descartado por a fila estar cheia) e entrega uma cópia. Depois de uma perda, os deltas
+ * seguintes não têm base e são ignorados até ao próximo keyframe.
+ *
+ * O tamanho da fila define-se com "monitoramento.cliente.fila" (padrão 256).
+ */
+public class ReceptorRelatorios implements AutoCloseable {
+    private static final String ENDERECO_MULTICAST = "239.0.0.1";
+    private static final int PORTA_MULTICAST = 12345;
+    public static final int CAPACIDADE_FILA = Math.max(1, Integer.getInteger("monitoramento.cliente.fila", 256));
+    // Limites da remontagem de snapshots fragmentados.
+    private static final int MAX_SNAPSHOTS_PENDENTES = 8;
+    private static final long TEMPO_LIMITE_REMONTAGEM_MS = 5000;
+    // Recuo na sequência do mesmo líder a partir do qual se assume que o emissor recomeçou.
+    static final long RECUO_MAXIMO_SEQUENCIA = 64;
+    private static final Registador LOG = Registador.para("Cliente");
+
+    /** Resultado de {@link #receber(long)}. */
+    public static final int NADA = 0, RELATORIO = 1, SINAL = 2;
+
+    private final DatagramChannel canal;
+    private final MembershipKey grupo;
+    private final Selector seletor;
+    // Tamanho máximo de um datagrama UDP; relatórios grandes chegam fragmentados e são remontados.
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(65535);
+    private final Fragmentos.Remontador remontador = new Fragmentos.Remontador(MAX_SNAPSHOTS_PENDENTES, TEMPO_LIMITE_REMONTAGEM_MS);
+    private final ArrayBlockingQueue<Vista> livres;
+    private final ArrayBlockingQueue<Vista> prontas;
+    // Snapshot completo reconstruído a partir dos keyframes e dos deltas.
+    private final RelatorioDecodificado estado = new RelatorioDecodificado();
+    private final ConsumidorRelatorio consumidor;
+    private final OutputStream saidaTexto;
+    private final Thread apresentacao;
+
+    // Último sinal do líder e última sequência entregue, por líder.
+    private SinalLider ultimoSinal;
+    private int liderSequencia = -1;
+    private long epocaSequencia = -1;
+    private long ultimaSequencia = -1;
+
+    // Estatísticas
+    private final LongAdder recebidos = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder foraDeOrdem = new LongAdder();
+    private final LongAdder perdidos = new LongAdder();
+    private final LongAdder apresentados = new LongAdder();
+    private final LongAdder keyframes = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder deltasSemBase = new LongAdder();
+
+    /**
+     * Relatório à espera de ser apresentado: a vista binária ou os bytes do formato de texto.
+     */
+    private static final class Vista {
+        final RelatorioDecodificado relatorio = new RelatorioDecodificado();
+        byte[] texto = new byte[0];
+        int comprimentoTexto = -1;
+    }
+
+    /**
+     * @param consumidor Recebe os relatórios binários, na thread de apresentação.
+     * @param saidaTexto Destino dos relatórios no formato de texto (bytes UTF-8 tal como chegam), ou null.
+     */
+    public ReceptorRelatorios(ConsumidorRelatorio consumidor, OutputStream saidaTexto) throws IOException {
+        this.consumidor = consumidor;
+        this.saidaTexto = saidaTexto;
+        NetworkInterface interfaceLocal = NetworkInterface.getByInetAddress(InetAddress.getByName("127.0.0.1"));
+        this.canal = DatagramChannel.open(StandardProtocolFamily.INET)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .bind(new InetSocketAddress(PORTA_MULTICAST))
+                .setOption(StandardSocketOptions.IP_MULTICAST_IF, interfaceLocal);
+        this.grupo = canal.join(InetAddress.getByName(ENDERECO_MULTICAST), interfaceLocal);
+        canal.configureBlocking(false);
+        this.seletor = Selector.open();
+        canal.register(seletor, SelectionKey.OP_READ);
+
+        this.livres = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+        this.prontas = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+        for (int i = 0; i < CAPACIDADE_FILA; i++) livres.add(new Vista());
+        this.apresentacao = new Thread(this::apresentar, "cliente-apresentacao");
+        apresentacao.setDaemon(true);
+        apresentacao.start();
+    }
+
+    /**
+     * Lê o próximo datagrama, esperando no máximo o prazo indicado.
+     * @return {@link #RELATORIO} se chegou um relatório completo (entregue ou descartado),
+     *         {@link #SINAL} se chegou um sinal do líder (ver {@link #getUltimoSinal()}),
+     *         ou {@link #NADA} caso contrário.
+     */
+    public int receber(long prazoMs) throws IOException {
+        buffer.clear();
+        if (canal.receive(buffer) == null) {
+            seletor.select(Math.max(1, prazoMs));
+            seletor.selectedKeys().clear();
+            if (canal.receive(buffer) == null) return NADA;
+        }
+        buffer.flip();
+        return processar(buffer);
+    }
+
+    /**
+     * Trata um datagrama entre a posição e o limite do buffer. Visível no pacote para os benchmarks.
+     */
+    int processar(ByteBuffer datagrama) {
+        if (SinalLider.isSinal(datagrama)) {
+            SinalLider atual = ultimoSinal;
+            int p = datagrama.position();
+            // O sinal só é descodificado (e alocado) quando muda de líder ou de época.
+            if (atual != null && datagrama.getInt(p + 4) == atual.getIdLider() && datagrama.getLong(p + 8) == atual.getEpoca()) {
+                return SINAL;
+            }
+            SinalLider sinal = SinalLider.decodificar(datagrama);
+            if (sinal == null) return NADA;
+            ultimoSinal = sinal;
+            return SINAL;
+        }
+        ByteBuffer payload = datagrama;
+        if (Fragmentos.isFragmento(datagrama)) {
+            try {
+                payload = remontador.receber(datagrama);
+            } catch (RuntimeException e) {
+                // Fragmento malformado: não pode parar a receção.
+                descartados.increment();
+                return NADA;
+            }
+            if (payload == null) return NADA; // Ainda faltam fragmentos.
+        }
+        recebidos.increment();
+        boolean binario = payload.remaining() >= RelatorioBinario.TAMANHO_CABECALHO
+                && payload.getShort(payload.position()) == RelatorioBinario.MAGIA;
+        if (binario && !emOrdem(payload.getInt(payload.position() + 4), payload.getLong(payload.position() + 8))) {
+            foraDeOrdem.increment();
+            return RELATORIO;
+        }
+        if (binario) {
+            try {
+                if (payload.get(payload.position() + 2) == RelatorioBinario.VERSAO_DELTA) {
+                    if (!estado.aplicarDelta(payload)) {
+                        deltasSemBase.increment();
+                        return RELATORIO;
+                    }
+                    deltas.increment();
+                } else {
+                    estado.decodificar(payload);
+                    keyframes.increment();
+                }
+            } catch (RuntimeException e) {
+                // Relatório malformado ou de uma versão desconhecida: espera-se pelo próximo keyframe.
+                descartados.increment();
+                return RELATORIO;
+            }
+        }
+        Vista vista = livres.poll();
+        if (vista == null) {
+            // A apresentação não acompanha: descarta-se este relatório em vez de atrasar a receção.
+            descartados.increment();
+            return RELATORIO;
+        }
+        if (binario) {
+            vista.relatorio.copiarDe(estado);
+            vista.comprimentoTexto = -1;
+        } else {
+            int n = payload.remaining();
+            if (vista.texto.length < n) vista.texto = new byte[Math.max(n, vista.texto.length * 2)];
+            payload.get(vista.texto, 0, n);
+            vista.comprimentoTexto = n;
+        }
+        prontas.offer(vista);
+        return RELATORIO;
+    }
+
+    private boolean emOrdem(int idLider, long sequencia) {
+        SinalLider sinal = ultimoSinal;
+        long epoca = sinal != null && sinal.getIdLider() == idLider ? sinal.getEpoca() : epocaSequencia;
+        if (idLider != liderSequencia || epoca != epocaSequencia || sequencia < ultimaSequencia - RECUO_MAXIMO_SEQUENCIA) {
+            // Outro líder, outra época ou um emissor que recomeçou: a sequência começa de novo.
+            liderSequencia = idLider;
+            epocaSequencia = epoca;
+            ultimaSequencia = sequencia;
+            return true;
+        }
+        if (sequencia <= ultimaSequencia) return false;
+        if (ultimaSequencia >= 0 && sequencia > ultimaSequencia + 1) perdidos.add(sequencia - ultimaSequencia - 1);
+        ultimaSequencia = sequencia;
+        return true;
+    }
+
+    private void apresentar() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Vista vista;
+            try {
+                vista = prontas.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (vista.comprimentoTexto < 0) {
+                    if (consumidor != null) consumidor.consumir(vista.relatorio);
+                } else if (saidaTexto != null) {
+                    saidaTexto.write(vista.texto, 0, vista.comprimentoTexto);
+                    saidaTexto.flush();
+                }
+                apresentados.increment();
+            } catch (Exception e) {
+                LOG.erro("[ERRO] Erro ao apresentar relatorio: %s", e.getMessage());
+            } finally {
+                livres.offer(vista);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        apresentacao.interrupt();
+        grupo.drop();
+        seletor.close();
+        canal.close();
+    }
+
+    // --- Estatísticas ---
+    /** Último sinal do líder recebido; só é substituído quando muda o líder ou a época. */
+    public SinalLider getUltimoSinal() { return ultimoSinal; }
+    public long getRecebidos() { return recebidos.sum(); }
+    /** Relatórios descartados porque a fila de apresentação estava cheia (ou malformados). */
+    public long getDescartados() { return descartados.sum(); }
+    /** Relatórios com uma sequência já vista do mesmo líder. */
+    public long getForaDeOrdem() { return foraDeOrdem.sum(); }
+    /** Relatórios que faltam na sequência de cada líder. */
+    public long getPerdidos() { return perdidos.sum(); }
+    public long getApresentados() { return apresentados.sum(); }
+    public long getKeyframes() { return keyframes.sum(); }
+    public long getDeltas() { return deltas.sum(); }
+    /** Deltas ignorados por falta do relatório de base (à espera do próximo keyframe). */
+    public long getDeltasSemBase() { return deltasSemBase.sum(); }
+    public Fragmentos.Remontador getRemontador() { return remontador; }
+
+    @Override
+    public String toString() {
+        return String.format("recebidos=%d, apresentados=%d, descartados=%d, fora de ordem=%d, perdidos=%d, keyframes=%d, deltas=%d, deltas sem base=%d",
+                getRecebidos(), getApresentados(), getDescartados(), getForaDeOrdem(), getPerdidos(),
+                getKeyframes(), getDeltas(), getDeltasSemBase());
+    }
+}
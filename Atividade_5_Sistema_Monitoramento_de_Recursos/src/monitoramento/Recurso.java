@@ -1,9 +1,7 @@
 package monitoramento;
 
 import java.io.Serializable;
-import java.lang.management.ManagementFactory;
 import com.sun.management.OperatingSystemMXBean;
-import java.time.Instant;
 
 /**
  * Classe que representa os recursos monitorados de um nó em um determinado momento.
@@ -21,8 +19,11 @@ public class Recurso implements Serializable {
     private final long timestampColeta;
     private final int relogioLamport;
 
+    private final long instanteAmostraMs;
+
     /**
      * Construtor que coleta as métricas do sistema operacional no momento da sua instanciação.
+     * Os nós usam o {@link AmostradorRecursos}, que devolve a última amostra sem consultar o SO.
      * @param noId O ID do nó ao qual este recurso pertence.
      * @param relogioLamport O valor do relógio de Lamport no momento da coleta.
      */
@@ -31,7 +32,7 @@ public class Recurso implements Serializable {
         this.relogioLamport = relogioLamport;
 
         // Usa a MBean específica da Sun/Oracle para obter dados detalhados do SO.
-        OperatingSystemMXBean osBean = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+        OperatingSystemMXBean osBean = AmostradorRecursos.OS_BEAN;
 
         // Coleta o uso da CPU (multiplica por 100 para ter a porcentagem).
         this.usoCpu = Math.max(0, osBean.getCpuLoad() * 100);
@@ -43,20 +44,57 @@ public class Recurso implements Serializable {
         this.memoriaTotalGB = totalMemoriaBytes / (1024 * 1024 * 1024); // Converte para GB
 
         // Obtém o tempo de atividade da JVM em segundos.
-        this.tempoAtividade = ManagementFactory.getRuntimeMXBean().getUptime() / 1000;
-        this.timestampColeta = Instant.now().getEpochSecond();
+        this.tempoAtividade = AmostradorRecursos.RUNTIME_BEAN.getUptime() / 1000;
+        this.instanteAmostraMs = System.currentTimeMillis();
+        this.timestampColeta = instanteAmostraMs / 1000;
 
         this.processadores = osBean.getAvailableProcessors();
         this.cargaSistema = osBean.getSystemLoadAverage(); // System load average for the last minute.
     }
 
+    /**
+     * Construtor a partir de uma amostra já lida.
+     * @param instanteAmostraMs Instante (epoch, ms) em que a amostra foi lida do SO.
+     */
+    Recurso(int noId, int relogioLamport, double usoCpu, double usoMemoria, long memoriaTotalGB,
+            long tempoAtividade, int processadores, double cargaSistema, long instanteAmostraMs) {
+        this.noId = noId;
+        this.relogioLamport = relogioLamport;
+        this.usoCpu = usoCpu;
+        this.usoMemoria = usoMemoria;
+        this.memoriaTotalGB = memoriaTotalGB;
+        this.tempoAtividade = tempoAtividade;
+        this.processadores = processadores;
+        this.cargaSistema = cargaSistema;
+        this.instanteAmostraMs = instanteAmostraMs;
+        this.timestampColeta = instanteAmostraMs / 1000;
+    }
+
     public int getNoId() { return noId; }
+    public double getUsoCpu() { return usoCpu; }
+    public double getUsoMemoria() { return usoMemoria; }
+    public long getMemoriaTotalGB() { return memoriaTotalGB; }
+    public long getTempoAtividade() { return tempoAtividade; }
+    public int getProcessadores() { return processadores; }
+    public double getCargaSistema() { return cargaSistema; }
+    public long getTimestampColeta() { return timestampColeta; }
+    public int getRelogioLamport() { return relogioLamport; }
+    public long getInstanteAmostraMs() { return instanteAmostraMs; }
 
     /**
      * Formata os dados deste recurso em uma única linha de texto para ser exibida na tabela do relatório.
      * @return Uma string formatada como uma linha de tabela.
      */
     public String paraLinhaRelatorio() {
+        return formatarLinhaRelatorio(noId, usoCpu, usoMemoria, memoriaTotalGB, cargaSistema, processadores, tempoAtividade);
+    }
+
+    /**
+     * Formata uma linha da tabela do relatório a partir dos valores brutos.
+     * Usado tanto pelo líder (formato de texto) como pelo cliente (formato binário).
+     */
+    public static String formatarLinhaRelatorio(int noId, double usoCpu, double usoMemoria, long memoriaTotalGB,
+                                                double cargaSistema, int processadores, long tempoAtividade) {
         // Trata o caso em que a carga do sistema não está disponível (retorna -1).
         String cargaCpuFormatada = (cargaSistema < 0) ? "N/A" : String.format("%.2f", cargaSistema);
 
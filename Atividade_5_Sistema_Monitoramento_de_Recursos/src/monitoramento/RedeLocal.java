@@ -0,0 +1,152 @@
+package monitoramento;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Transporte em memória para simular muitos nós numa só JVM, sem portas por nó.
+ *
+ * Substitui o registo RMI (os stubs são proxies que chamam diretamente o NoServidor do
+ * destino) e o UDP do detetor SWIM (as mensagens são entregues na fila do ServicoSwim
+ * do destino). Permite injetar falhas: nós parados, partições de rede e nós lentos.
+ * Todas as mensagens são contadas por tipo.
+ */
+public class RedeLocal {
+    private final Map<Integer, ServicoNo> servicos = new ConcurrentHashMap<>();
+    private final Map<Integer, Consumer<MensagemSwim>> caixasSwim = new ConcurrentHashMap<>();
+    private final Set<Integer> parados = ConcurrentHashMap.newKeySet();
+    // Grupo de partição de cada nó (ausente = grupo 0).
+    private final Map<Integer, Integer> grupos = new ConcurrentHashMap<>();
+    // Atraso acrescentado a tudo o que um nó lento envia ou recebe.
+    private final Map<Integer, Long> atrasosMs = new ConcurrentHashMap<>();
+    // Latência de base de cada chamada entre nós, para simular uma rede real.
+    private volatile long latenciaBaseMs;
+    private final Map<String, AtomicLong> mensagens = new ConcurrentHashMap<>();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final ScheduledExecutorService entregasAtrasadas = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rede-local-atrasos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // --- Registo ---
+
+    public void registar(int pid, ServicoNo servico) {
+        servicos.put(pid, servico);
+        parados.remove(pid);
+    }
+
+    void registarSwim(int pid, Consumer<MensagemSwim> caixa) {
+        caixasSwim.put(pid, caixa);
+    }
+
+    /**
+     * Devolve um stub que encaminha as chamadas de origem para destino através desta rede.
+     */
+    public ServicoNo stub(int origem, int destino) throws NotBoundException {
+        ServicoNo alvo = servicos.get(destino);
+        if (alvo == null) throw new NotBoundException("No" + destino);
+        return (ServicoNo) Proxy.newProxyInstance(ServicoNo.class.getClassLoader(), new Class<?>[] { ServicoNo.class },
+                (proxy, metodo, args) -> {
+                    if (metodo.getDeclaringClass() == Object.class) return metodo.invoke(alvo, args);
+                    contar("rmi." + metodo.getName());
+                    if (!alcancavel(origem, destino)) {
+                        descartadas.incrementAndGet();
+                        throw new RemoteException("No " + destino + " inalcancavel a partir do No " + origem);
+                    }
+                    long atraso = atraso(origem, destino);
+                    if (atraso > 0) Thread.sleep(atraso);
+                    try {
+                        return metodo.invoke(alvo, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Entrega uma mensagem SWIM, com o atraso dos nós lentos. Mensagens para nós parados ou
+     * do outro lado de uma partição são perdidas, como no UDP.
+     */
+    void enviarSwim(int origem, int destino, MensagemSwim mensagem) {
+        contar(mensagem.tipo == MensagemSwim.PING ? "swim.PING" : mensagem.tipo == MensagemSwim.PING_REQ ? "swim.PING_REQ" : "swim.ACK");
+        Consumer<MensagemSwim> caixa = caixasSwim.get(destino);
+        if (caixa == null || !alcancavel(origem, destino)) {
+            descartadas.incrementAndGet();
+            return;
+        }
+        long atraso = atraso(origem, destino);
+        if (atraso > 0) {
+            entregasAtrasadas.schedule(() -> caixa.accept(mensagem), atraso, TimeUnit.MILLISECONDS);
+        } else {
+            caixa.accept(mensagem);
+        }
+    }
+
+    private boolean alcancavel(int origem, int destino) {
+        return !parados.contains(origem) && !parados.contains(destino)
+                && grupos.getOrDefault(origem, 0).equals(grupos.getOrDefault(destino, 0));
+    }
+
+    private long atraso(int origem, int destino) {
+        return latenciaBaseMs + atrasosMs.getOrDefault(origem, 0L) + atrasosMs.getOrDefault(destino, 0L);
+    }
+
+    private void contar(String tipo) {
+        mensagens.computeIfAbsent(tipo, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    // --- Injeção de falhas ---
+
+    /** O nó deixa de enviar e receber (falha por paragem). */
+    public void parar(int pid) { parados.add(pid); }
+
+    /** Coloca os nós indicados num grupo de partição; só nós do mesmo grupo comunicam. */
+    public void particionar(Set<Integer> pids, int grupo) {
+        for (int pid : pids) grupos.put(pid, grupo);
+    }
+
+    /** Remove todas as partições. */
+    public void sarar() { grupos.clear(); }
+
+    /** Acrescenta um atraso fixo a todas as mensagens de e para o nó (0 remove). */
+    public void definirAtraso(int pid, long atrasoMs) {
+        if (atrasoMs <= 0) atrasosMs.remove(pid); else atrasosMs.put(pid, atrasoMs);
+    }
+
+    /** Latência acrescentada a todas as mensagens entre nós (0, o padrão, remove). */
+    public void definirLatenciaBase(long latenciaMs) { this.latenciaBaseMs = Math.max(0, latenciaMs); }
+
+    public int getGrupo(int pid) { return grupos.getOrDefault(pid, 0); }
+    public boolean isParado(int pid) { return parados.contains(pid); }
+
+    // --- Estatísticas ---
+
+    /** Mensagens enviadas por tipo (rmi.&lt;metodo&gt; e swim.&lt;tipo&gt;), ordenadas por nome. */
+    public Map<String, Long> getMensagens() {
+        Map<String, Long> copia = new TreeMap<>();
+        mensagens.forEach((k, v) -> copia.put(k, v.get()));
+        return copia;
+    }
+
+    public long getTotalMensagens() {
+        long total = 0;
+        for (AtomicLong v : mensagens.values()) total += v.get();
+        return total;
+    }
+
+    public long getDescartadas() { return descartadas.get(); }
+
+    public void encerrar() { entregasAtrasadas.shutdownNow(); }
+}
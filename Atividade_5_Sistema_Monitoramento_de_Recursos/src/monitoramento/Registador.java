@@ -0,0 +1,166 @@
+package monitoramento;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registo assíncrono de mensagens por nível e por categoria (componente).
+ *
+ * As mensagens são formatadas na thread que as produz, mas apenas se o nível estiver
+ * ativo para a categoria, e colocadas numa fila sem bloqueios e de capacidade limitada.
+ * Uma única thread em segundo plano escreve-as na consola, em lotes; quem regista nunca
+ * espera pelo System.out. Se a fila estiver cheia, a mensagem é descartada e contada.
+ *
+ * O nível padrão é definido por "monitoramento.registo.nivel" (padrão: INFO) e pode ser
+ * alterado por categoria com "monitoramento.registo.nivel.&lt;categoria&gt;", por exemplo
+ * -Dmonitoramento.registo.nivel.Heartbeat=DEBUG.
+ */
+public final class Registador {
+    /** Níveis por ordem crescente de gravidade. AVISO e ERRO são escritos em System.err. */
+    public enum Nivel { DEBUG, INFO, AVISO, ERRO, DESLIGADO }
+
+    private static final String PROPRIEDADE_NIVEL = "monitoramento.registo.nivel";
+    private static final Nivel NIVEL_PADRAO = lerNivel(System.getProperty(PROPRIEDADE_NIVEL), Nivel.INFO);
+    private static final int CAPACIDADE_FILA = Integer.getInteger("monitoramento.registo.capacidade", 8192);
+    private static final long PAUSA_ESCRITOR_NS = 5_000_000L;
+
+    private static final class Mensagem {
+        final Nivel nivel;
+        final String texto;
+        Mensagem(Nivel nivel, String texto) {
+            this.nivel = nivel;
+            this.texto = texto;
+        }
+    }
+
+    private static final Map<String, Registador> CATEGORIAS = new ConcurrentHashMap<>();
+    private static final Queue<Mensagem> FILA = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger TAMANHO_FILA = new AtomicInteger();
+    private static final AtomicLong DESCARTADAS = new AtomicLong();
+    private static final AtomicLong ESCRITAS = new AtomicLong();
+    private static long descartadasReportadas; // Protegido pelo bloqueio de drenar().
+    private static final Thread ESCRITOR;
+
+    static {
+        ESCRITOR = new Thread(Registador::escrever, "registador");
+        ESCRITOR.setDaemon(true);
+        ESCRITOR.start();
+        // Garante que as mensagens pendentes chegam à consola quando a JVM termina.
+        Runtime.getRuntime().addShutdownHook(new Thread(Registador::descarregar, "registador-fim"));
+    }
+
+    private final String categoria;
+    private volatile Nivel nivel;
+
+    private Registador(String categoria) {
+        this.categoria = categoria;
+        this.nivel = lerNivel(System.getProperty(PROPRIEDADE_NIVEL + "." + categoria), NIVEL_PADRAO);
+    }
+
+    /**
+     * Devolve o registador da categoria indicada (um por categoria, partilhado).
+     */
+    public static Registador para(String categoria) {
+        return CATEGORIAS.computeIfAbsent(categoria, Registador::new);
+    }
+
+    private static Nivel lerNivel(String valor, Nivel padrao) {
+        if (valor == null) return padrao;
+        try {
+            return Nivel.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.printf("[AVISO] Nivel de registo desconhecido '%s'. A usar %s.%n", valor, padrao);
+            return padrao;
+        }
+    }
+
+    public boolean isAtivo(Nivel n) { return n.ordinal() >= nivel.ordinal() && n != Nivel.DESLIGADO; }
+    public boolean isDebugAtivo() { return isAtivo(Nivel.DEBUG); }
+    public boolean isInfoAtivo() { return isAtivo(Nivel.INFO); }
+
+    public void debug(String formato, Object... args) { registar(Nivel.DEBUG, formato, args); }
+    public void info(String formato, Object... args) { registar(Nivel.INFO, formato, args); }
+    public void aviso(String formato, Object... args) { registar(Nivel.AVISO, formato, args); }
+    public void erro(String formato, Object... args) { registar(Nivel.ERRO, formato, args); }
+
+    /**
+     * Formata (só se o nível estiver ativo) e enfileira a mensagem. O fim de linha é acrescentado aqui.
+     */
+    public void registar(Nivel n, String formato, Object... args) {
+        if (!isAtivo(n)) return;
+        enfileirar(n, args.length == 0 && formato.indexOf('%') < 0 ? formato : String.format(formato, args));
+    }
+
+    private static void enfileirar(Nivel n, String texto) {
+        if (TAMANHO_FILA.incrementAndGet() > CAPACIDADE_FILA) {
+            TAMANHO_FILA.decrementAndGet();
+            DESCARTADAS.incrementAndGet();
+            return;
+        }
+        FILA.offer(new Mensagem(n, texto));
+        LockSupport.unpark(ESCRITOR);
+    }
+
+    private static void escrever() {
+        while (true) {
+            if (!drenar()) LockSupport.parkNanos(PAUSA_ESCRITOR_NS);
+        }
+    }
+
+    /**
+     * Escreve todas as mensagens na fila, agrupando as consecutivas do mesmo destino.
+     * @return true se havia mensagens.
+     */
+    private static synchronized boolean drenar() {
+        Mensagem m = FILA.poll();
+        if (m == null) return false;
+        StringBuilder lote = new StringBuilder(256);
+        PrintStream destino = destino(m.nivel);
+        while (m != null) {
+            TAMANHO_FILA.decrementAndGet();
+            PrintStream d = destino(m.nivel);
+            if (d != destino) {
+                destino.print(lote);
+                destino.flush();
+                lote.setLength(0);
+                destino = d;
+            }
+            lote.append(m.texto).append(System.lineSeparator());
+            ESCRITAS.incrementAndGet();
+            m = FILA.poll();
+        }
+        destino.print(lote);
+        destino.flush();
+        long descartadas = DESCARTADAS.get();
+        if (descartadas != descartadasReportadas) {
+            System.err.printf("[AVISO] Registador: %d mensagens descartadas por fila cheia (total).%n", descartadas);
+            descartadasReportadas = descartadas;
+        }
+        return true;
+    }
+
+    private static PrintStream destino(Nivel n) {
+        return n.ordinal() >= Nivel.AVISO.ordinal() ? System.err : System.out;
+    }
+
+    /**
+     * Escreve de imediato as mensagens pendentes (usado no encerramento).
+     */
+    public static void descarregar() {
+        while (drenar()) {
+            // Repete até a fila ficar vazia.
+        }
+    }
+
+    public void setNivel(Nivel nivel) { this.nivel = nivel; }
+    public Nivel getNivel() { return nivel; }
+    public String getCategoria() { return categoria; }
+    public static long getDescartadas() { return DESCARTADAS.get(); }
+    public static long getEscritas() { return ESCRITAS.get(); }
+}
@@ -0,0 +1,100 @@
+package monitoramento;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Formato binário versionado dos relatórios enviados por multicast.
+ *
+ * Cabeçalho (30 bytes): magia (2), versão (1), reservado (1), ID do líder (4),
+ * número de sequência (8), relógio de Lamport (4), instante de geração em ms (8),
+ * número de registos (2). Segue-se um registo de largura fixa (30 bytes) por nó.
+ *
+ * A versão 1 é o relatório completo (keyframe). A versão 2 é um delta face ao relatório
+ * anterior do mesmo líder, escrito pelo {@link CodificadorDelta}: ao cabeçalho comum seguem-se
+ * a sequência do relatório de base (8) e o número total de nós depois de aplicar o delta (2);
+ * depois, por cada nó alterado, o seu ID (4), uma máscara de campos (1) e apenas os campos
+ * presentes na máscara, pela ordem do registo completo; por fim, o número de nós removidos (2)
+ * e os seus IDs (4 cada).
+ */
+public final class RelatorioBinario {
+    public static final short MAGIA = 0x4D52; // "MR"
+    public static final byte VERSAO = 1;
+    public static final int TAMANHO_CABECALHO = 30;
+    public static final int TAMANHO_REGISTO = 30;
+
+    public static final byte VERSAO_DELTA = 2;
+    public static final int TAMANHO_CABECALHO_DELTA = 40;
+    // Campos da máscara de um registo delta.
+    public static final int CAMPO_CPU = 1, CAMPO_MEMORIA = 1 << 1, CAMPO_MEMORIA_TOTAL = 1 << 2,
+            CAMPO_TEMPO_ATIVIDADE = 1 << 3, CAMPO_PROCESSADORES = 1 << 4, CAMPO_CARGA = 1 << 5,
+            CAMPO_LAMPORT = 1 << 6, TODOS_CAMPOS = (1 << 7) - 1;
+    // ID e máscara, mais todos os campos.
+    public static final int TAMANHO_MAXIMO_REGISTO_DELTA = 5 + TAMANHO_REGISTO - 4;
+
+    private RelatorioBinario() {}
+
+    /**
+     * Calcula o tamanho em bytes de um relatório com o número de nós indicado.
+     */
+    public static int tamanho(int numeroNos) {
+        return TAMANHO_CABECALHO + numeroNos * TAMANHO_REGISTO;
+    }
+
+    /**
+     * Codifica o snapshot no buffer indicado, a partir da posição atual, sem criar strings intermédias.
+     * O buffer deve ter pelo menos {@link #tamanho(int)} bytes livres.
+     */
+    public static void codificar(ByteBuffer destino, int idLider, long sequencia, int relogioLamport, List<Recurso> snapshot) {
+        codificar(destino, idLider, sequencia, relogioLamport, System.currentTimeMillis(), snapshot);
+    }
+
+    static void codificar(ByteBuffer destino, int idLider, long sequencia, int relogioLamport, long geradoEmMs, List<Recurso> snapshot) {
+        int numeroNos = 0;
+        for (Recurso r : snapshot) {
+            if (r != null) numeroNos++;
+        }
+        escreverCabecalho(destino, VERSAO, idLider, sequencia, relogioLamport, geradoEmMs, numeroNos);
+        for (Recurso r : snapshot) {
+            if (r != null) codificarRegisto(destino, r);
+        }
+    }
+
+    /**
+     * Escreve o cabeçalho comum às duas versões ({@link #TAMANHO_CABECALHO} bytes).
+     */
+    static void escreverCabecalho(ByteBuffer destino, byte versao, int idLider, long sequencia, int relogioLamport,
+                                  long geradoEmMs, int numeroRegistos) {
+        destino.putShort(MAGIA);
+        destino.put(versao);
+        destino.put((byte) 0);
+        destino.putInt(idLider);
+        destino.putLong(sequencia);
+        destino.putInt(relogioLamport);
+        destino.putLong(geradoEmMs);
+        destino.putShort((short) numeroRegistos);
+    }
+
+    /**
+     * Escreve o registo de largura fixa de um nó ({@link #TAMANHO_REGISTO} bytes).
+     * Também usado pelo log de snapshots, que guarda os registos no mesmo formato.
+     */
+    public static void codificarRegisto(ByteBuffer destino, Recurso r) {
+        destino.putInt(r.getNoId());
+        destino.putFloat((float) r.getUsoCpu());
+        destino.putFloat((float) r.getUsoMemoria());
+        destino.putInt((int) r.getMemoriaTotalGB());
+        destino.putInt((int) r.getTempoAtividade());
+        destino.putShort((short) r.getProcessadores());
+        destino.putFloat((float) r.getCargaSistema());
+        destino.putInt(r.getRelogioLamport());
+    }
+
+    /**
+     * Indica se os dados começam com a magia do formato binário.
+     */
+    public static boolean isBinario(byte[] dados, int deslocamento, int comprimento) {
+        return comprimento >= TAMANHO_CABECALHO
+                && (short) (((dados[deslocamento] & 0xFF) << 8) | (dados[deslocamento + 1] & 0xFF)) == MAGIA;
+    }
+}
@@ -0,0 +1,266 @@
+package monitoramento;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Vista reutilizável de um relatório binário recebido pelo cliente.
+ * Os valores ficam em arrays primitivos que só crescem quando chega um relatório com mais nós.
+ *
+ * A vista pode ser mantida entre relatórios: um keyframe ({@link #decodificar(ByteBuffer)})
+ * substitui-a por inteiro e cada delta ({@link #aplicarDelta(ByteBuffer)}) atualiza apenas os
+ * nós e os campos que mudaram, reconstruindo o snapshot completo.
+ */
+public class RelatorioDecodificado {
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
+    private int versao;
+    private int idLider;
+    private long sequencia;
+    private int relogioLamport;
+    private long geradoEmMs;
+    private int numeroNos;
+
+    private int[] noId = new int[0];
+    private float[] usoCpu = new float[0];
+    private float[] usoMemoria = new float[0];
+    private int[] memoriaTotalGB = new int[0];
+    private int[] tempoAtividade = new int[0];
+    private short[] processadores = new short[0];
+    private float[] cargaSistema = new float[0];
+    private int[] relogioNo = new int[0];
+    // Último tempo de atividade recebido de cada nó e o instante do relatório que o trouxe:
+    // entre envios, o tempo de atividade avança a partir daí (ver CodificadorDelta).
+    private int[] tempoBase = new int[0];
+    private long[] geradoBaseMs = new long[0];
+    // Falso antes do primeiro keyframe e depois de um relatório que não se conseguiu aplicar.
+    private boolean completo;
+
+    /**
+     * Lê um relatório do buffer, reaproveitando os arrays desta instância.
+     * @throws IllegalArgumentException Se a magia ou a versão não forem reconhecidas.
+     */
+    public void decodificar(ByteBuffer origem) {
+        completo = false;
+        if (origem.getShort() != RelatorioBinario.MAGIA) {
+            throw new IllegalArgumentException("Relatorio binario com magia invalida");
+        }
+        versao = origem.get();
+        if (versao != RelatorioBinario.VERSAO) {
+            throw new IllegalArgumentException("Versao de relatorio nao suportada: " + versao);
+        }
+        origem.get();
+        idLider = origem.getInt();
+        sequencia = origem.getLong();
+        relogioLamport = origem.getInt();
+        geradoEmMs = origem.getLong();
+        numeroNos = origem.getShort() & 0xFFFF;
+        garantirCapacidade(numeroNos);
+        for (int i = 0; i < numeroNos; i++) {
+            lerRegisto(i, origem, origem.position());
+            origem.position(origem.position() + RelatorioBinario.TAMANHO_REGISTO);
+        }
+        completo = true;
+    }
+
+    /**
+     * Aplica um delta (versão {@link RelatorioBinario#VERSAO_DELTA}) à vista atual. Só é aplicado
+     * se a vista estiver completa e for exatamente o relatório de base do delta, do mesmo líder;
+     * caso contrário a vista não muda e é preciso esperar pelo próximo keyframe.
+     * @return true se o delta foi aplicado.
+     * @throws IllegalArgumentException Se o delta estiver malformado; a vista fica incompleta.
+     */
+    public boolean aplicarDelta(ByteBuffer origem) {
+        int p = origem.position();
+        if (origem.getShort(p) != RelatorioBinario.MAGIA || origem.get(p + 2) != RelatorioBinario.VERSAO_DELTA) {
+            throw new IllegalArgumentException("Relatorio nao e um delta");
+        }
+        int lider = origem.getInt(p + 4);
+        long base = origem.getLong(p + RelatorioBinario.TAMANHO_CABECALHO);
+        if (!completo || lider != idLider || base != sequencia) return false;
+
+        completo = false;
+        sequencia = origem.getLong(p + 8);
+        relogioLamport = origem.getInt(p + 16);
+        geradoEmMs = origem.getLong(p + 20);
+        int registos = origem.getShort(p + 28) & 0xFFFF;
+        int total = origem.getShort(p + RelatorioBinario.TAMANHO_CABECALHO + 8) & 0xFFFF;
+        origem.position(p + RelatorioBinario.TAMANHO_CABECALHO_DELTA);
+        garantirCapacidade(numeroNos + registos);
+        // Os nós vêm pela mesma ordem do snapshot: a procura começa a seguir ao anterior.
+        int cursor = 0;
+        for (int k = 0; k < registos; k++) {
+            int id = origem.getInt();
+            int mascara = origem.get() & 0xFF;
+            int i = indice(id, cursor);
+            if (i < 0) {
+                if (mascara != RelatorioBinario.TODOS_CAMPOS) throw new IllegalArgumentException("Delta de um no desconhecido: " + id);
+                i = numeroNos++;
+                noId[i] = id;
+            }
+            lerCampos(i, mascara, origem);
+            cursor = i + 1;
+        }
+        int removidos = origem.getShort() & 0xFFFF;
+        for (int k = 0; k < removidos; k++) {
+            int i = indice(origem.getInt(), 0);
+            if (i >= 0) remover(i);
+        }
+        if (numeroNos != total) {
+            throw new IllegalArgumentException("Delta inconsistente: " + numeroNos + " nos em vez de " + total);
+        }
+        for (int i = 0; i < numeroNos; i++) {
+            tempoAtividade[i] = (int) CodificadorDelta.tempoPrevisto(tempoBase[i], geradoBaseMs[i], geradoEmMs);
+        }
+        versao = RelatorioBinario.VERSAO_DELTA;
+        completo = true;
+        return true;
+    }
+
+    private void lerCampos(int i, int mascara, ByteBuffer origem) {
+        if ((mascara & RelatorioBinario.CAMPO_CPU) != 0) usoCpu[i] = origem.getFloat();
+        if ((mascara & RelatorioBinario.CAMPO_MEMORIA) != 0) usoMemoria[i] = origem.getFloat();
+        if ((mascara & RelatorioBinario.CAMPO_MEMORIA_TOTAL) != 0) memoriaTotalGB[i] = origem.getInt();
+        if ((mascara & RelatorioBinario.CAMPO_TEMPO_ATIVIDADE) != 0) {
+            tempoBase[i] = origem.getInt();
+            geradoBaseMs[i] = geradoEmMs;
+        }
+        if ((mascara & RelatorioBinario.CAMPO_PROCESSADORES) != 0) processadores[i] = origem.getShort();
+        if ((mascara & RelatorioBinario.CAMPO_CARGA) != 0) cargaSistema[i] = origem.getFloat();
+        if ((mascara & RelatorioBinario.CAMPO_LAMPORT) != 0) relogioNo[i] = origem.getInt();
+    }
+
+    private int indice(int id, int inicio) {
+        for (int i = inicio; i < numeroNos; i++) {
+            if (noId[i] == id) return i;
+        }
+        for (int i = 0; i < Math.min(inicio, numeroNos); i++) {
+            if (noId[i] == id) return i;
+        }
+        return -1;
+    }
+
+    private void remover(int i) {
+        int n = numeroNos - i - 1;
+        System.arraycopy(noId, i + 1, noId, i, n);
+        System.arraycopy(usoCpu, i + 1, usoCpu, i, n);
+        System.arraycopy(usoMemoria, i + 1, usoMemoria, i, n);
+        System.arraycopy(memoriaTotalGB, i + 1, memoriaTotalGB, i, n);
+        System.arraycopy(tempoAtividade, i + 1, tempoAtividade, i, n);
+        System.arraycopy(processadores, i + 1, processadores, i, n);
+        System.arraycopy(cargaSistema, i + 1, cargaSistema, i, n);
+        System.arraycopy(relogioNo, i + 1, relogioNo, i, n);
+        System.arraycopy(tempoBase, i + 1, tempoBase, i, n);
+        System.arraycopy(geradoBaseMs, i + 1, geradoBaseMs, i, n);
+        numeroNos--;
+    }
+
+    /**
+     * Copia para esta vista o relatório completo de outra, reaproveitando os arrays.
+     */
+    public void copiarDe(RelatorioDecodificado o) {
+        versao = o.versao;
+        idLider = o.idLider;
+        sequencia = o.sequencia;
+        relogioLamport = o.relogioLamport;
+        geradoEmMs = o.geradoEmMs;
+        numeroNos = o.numeroNos;
+        garantirCapacidade(numeroNos);
+        int n = numeroNos;
+        System.arraycopy(o.noId, 0, noId, 0, n);
+        System.arraycopy(o.usoCpu, 0, usoCpu, 0, n);
+        System.arraycopy(o.usoMemoria, 0, usoMemoria, 0, n);
+        System.arraycopy(o.memoriaTotalGB, 0, memoriaTotalGB, 0, n);
+        System.arraycopy(o.tempoAtividade, 0, tempoAtividade, 0, n);
+        System.arraycopy(o.processadores, 0, processadores, 0, n);
+        System.arraycopy(o.cargaSistema, 0, cargaSistema, 0, n);
+        System.arraycopy(o.relogioNo, 0, relogioNo, 0, n);
+        System.arraycopy(o.tempoBase, 0, tempoBase, 0, n);
+        System.arraycopy(o.geradoBaseMs, 0, geradoBaseMs, 0, n);
+        completo = o.completo;
+    }
+
+    /**
+     * Prepara a vista para um relatório com o cabeçalho indicado, cujos registos serão
+     * lidos depois com {@link #lerRegisto(int, ByteBuffer, int)}. Usado na reprodução do log.
+     */
+    void iniciar(int idLider, long sequencia, int relogioLamport, long geradoEmMs, int numeroNos) {
+        this.versao = RelatorioBinario.VERSAO;
+        this.idLider = idLider;
+        this.sequencia = sequencia;
+        this.relogioLamport = relogioLamport;
+        this.geradoEmMs = geradoEmMs;
+        this.numeroNos = numeroNos;
+        garantirCapacidade(numeroNos);
+    }
+
+    /**
+     * Lê o registo de largura fixa na posição absoluta indicada, sem alterar a posição do buffer.
+     */
+    void lerRegisto(int i, ByteBuffer origem, int posicao) {
+        noId[i] = origem.getInt(posicao);
+        usoCpu[i] = origem.getFloat(posicao + 4);
+        usoMemoria[i] = origem.getFloat(posicao + 8);
+        memoriaTotalGB[i] = origem.getInt(posicao + 12);
+        tempoAtividade[i] = origem.getInt(posicao + 16);
+        processadores[i] = origem.getShort(posicao + 20);
+        cargaSistema[i] = origem.getFloat(posicao + 22);
+        relogioNo[i] = origem.getInt(posicao + 26);
+        tempoBase[i] = tempoAtividade[i];
+        geradoBaseMs[i] = geradoEmMs;
+    }
+
+    private void garantirCapacidade(int n) {
+        if (noId.length >= n) return;
+        // Os valores atuais são mantidos: um delta aplica-se sobre eles.
+        n = Math.max(n, noId.length * 2);
+        noId = Arrays.copyOf(noId, n);
+        usoCpu = Arrays.copyOf(usoCpu, n);
+        usoMemoria = Arrays.copyOf(usoMemoria, n);
+        memoriaTotalGB = Arrays.copyOf(memoriaTotalGB, n);
+        tempoAtividade = Arrays.copyOf(tempoAtividade, n);
+        processadores = Arrays.copyOf(processadores, n);
+        cargaSistema = Arrays.copyOf(cargaSistema, n);
+        relogioNo = Arrays.copyOf(relogioNo, n);
+        tempoBase = Arrays.copyOf(tempoBase, n);
+        geradoBaseMs = Arrays.copyOf(geradoBaseMs, n);
+    }
+
+    /**
+     * Gera a mesma tabela de texto que o líder envia no formato de texto.
+     */
+    public String paraTexto() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(EmissorMulticast.cabecalhoTexto(idLider));
+        for (int i = 0; i < numeroNos; i++) {
+            sb.append(Recurso.formatarLinhaRelatorio(noId[i], usoCpu[i], usoMemoria[i], memoriaTotalGB[i],
+                    cargaSistema[i], processadores[i], tempoAtividade[i])).append("\n");
+        }
+        LocalDateTime geradoEm = LocalDateTime.ofInstant(Instant.ofEpochMilli(geradoEmMs), ZoneId.systemDefault());
+        sb.append(EmissorMulticast.rodapeTexto(FORMATO_DATA.format(geradoEm), numeroNos));
+        sb.append(String.format("Sequencia: %d | Relogio Logico do lider: %d%n", sequencia, relogioLamport));
+        return sb.toString();
+    }
+
+    // --- Getters ---
+    public int getVersao() { return versao; }
+    /** Indica se a vista tem um snapshot completo (um keyframe e todos os deltas seguintes). */
+    public boolean isCompleto() { return completo; }
+    public int getIdLider() { return idLider; }
+    public long getSequencia() { return sequencia; }
+    public int getRelogioLamport() { return relogioLamport; }
+    public long getGeradoEmMs() { return geradoEmMs; }
+    public int getNumeroNos() { return numeroNos; }
+    public int getNoId(int i) { return noId[i]; }
+    public float getUsoCpu(int i) { return usoCpu[i]; }
+    public float getUsoMemoria(int i) { return usoMemoria[i]; }
+    public int getMemoriaTotalGB(int i) { return memoriaTotalGB[i]; }
+    public int getTempoAtividade(int i) { return tempoAtividade[i]; }
+    public int getProcessadores(int i) { return processadores[i]; }
+    public float getCargaSistema(int i) { return cargaSistema[i]; }
+    public int getRelogioNo(int i) { return relogioNo[i]; }
+}
@@ -0,0 +1,108 @@
+package monitoramento;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Resumo pré-agregado de um grupo de nós, devolvido por um subcoordenador na coleta em
+ * árvore ({@link ColetaHierarquica}). O tamanho não depende do número de nós: contagem,
+ * soma, mínimo, máximo e um esboço de quantis de CPU, memória e carga. O detalhe
+ * por nó e a lista de nós sem resposta são opcionais e crescem com o grupo.
+ */
+public class ResumoGrupo implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    /** Métricas resumidas, pela ordem dos arrays. */
+    static final HistoricoMetricas.Metrica[] METRICAS = {
+            HistoricoMetricas.Metrica.CPU, HistoricoMetricas.Metrica.MEMORIA, HistoricoMetricas.Metrica.CARGA };
+
+    private int contagem;
+    private final double[] soma = new double[METRICAS.length];
+    private final double[] minimo = new double[METRICAS.length];
+    private final double[] maximo = new double[METRICAS.length];
+    private final EsbocoQuantis[] esbocos = new EsbocoQuantis[METRICAS.length];
+    private final List<Recurso> detalhe;
+    private final Set<Integer> semResposta = new TreeSet<>();
+    private int profundidade;
+
+    /**
+     * @param comDetalhe Se true, os recursos de cada nó seguem também no resumo.
+     */
+    public ResumoGrupo(boolean comDetalhe) {
+        this.detalhe = comDetalhe ? new ArrayList<>() : null;
+        for (int i = 0; i < METRICAS.length; i++) {
+            minimo[i] = Double.POSITIVE_INFINITY;
+            maximo[i] = Double.NEGATIVE_INFINITY;
+            esbocos[i] = new EsbocoQuantis();
+        }
+    }
+
+    public void adicionar(Recurso r) {
+        if (r == null) return;
+        double[] valores = { r.getUsoCpu(), r.getUsoMemoria(), r.getCargaSistema() };
+        for (int i = 0; i < METRICAS.length; i++) {
+            soma[i] += valores[i];
+            minimo[i] = Math.min(minimo[i], valores[i]);
+            maximo[i] = Math.max(maximo[i], valores[i]);
+            esbocos[i].registar(valores[i]);
+        }
+        contagem++;
+        if (detalhe != null) detalhe.add(r);
+    }
+
+    /**
+     * Acrescenta a este resumo o de um subgrupo. A profundidade passa a ser a do subgrupo mais um.
+     */
+    public void fundir(ResumoGrupo outro) {
+        for (int i = 0; i < METRICAS.length; i++) {
+            soma[i] += outro.soma[i];
+            minimo[i] = Math.min(minimo[i], outro.minimo[i]);
+            maximo[i] = Math.max(maximo[i], outro.maximo[i]);
+            esbocos[i].fundir(outro.esbocos[i]);
+        }
+        contagem += outro.contagem;
+        if (detalhe != null && outro.detalhe != null) detalhe.addAll(outro.detalhe);
+        semResposta.addAll(outro.semResposta);
+        profundidade = Math.max(profundidade, outro.profundidade + 1);
+    }
+
+    public void registarSemResposta(int pid) {
+        semResposta.add(pid);
+    }
+
+    public void registarSemResposta(List<Integer> pids) {
+        semResposta.addAll(pids);
+    }
+
+    private static int posicao(HistoricoMetricas.Metrica metrica) {
+        for (int i = 0; i < METRICAS.length; i++) {
+            if (METRICAS[i] == metrica) return i;
+        }
+        throw new IllegalArgumentException("Metrica sem resumo: " + metrica);
+    }
+
+    public int getContagem() { return contagem; }
+    public double getSoma(HistoricoMetricas.Metrica m) { return soma[posicao(m)]; }
+    public double getMedia(HistoricoMetricas.Metrica m) { return contagem == 0 ? Double.NaN : soma[posicao(m)] / contagem; }
+    public double getMinimo(HistoricoMetricas.Metrica m) { return contagem == 0 ? Double.NaN : minimo[posicao(m)]; }
+    public double getMaximo(HistoricoMetricas.Metrica m) { return contagem == 0 ? Double.NaN : maximo[posicao(m)]; }
+    public double getQuantilCpu(double p) { return esbocos[0].quantil(p); }
+    EsbocoQuantis getEsboco(HistoricoMetricas.Metrica m) { return esbocos[posicao(m)]; }
+    /** Recursos de cada nó, ou null se o resumo foi pedido sem detalhe. */
+    public List<Recurso> getDetalhe() { return detalhe; }
+    public Set<Integer> getSemResposta() { return semResposta; }
+    /** Número de níveis de subcoordenadores abaixo de quem fez o resumo. */
+    public int getProfundidade() { return profundidade; }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d sem resposta=%d niveis=%d | CPU media=%.2f p50=%.2f p99=%.2f max=%.2f | Mem media=%.2f max=%.2f | Carga media=%.2f max=%.2f",
+                contagem, semResposta.size(), profundidade,
+                getMedia(HistoricoMetricas.Metrica.CPU), getQuantilCpu(50), getQuantilCpu(99), getMaximo(HistoricoMetricas.Metrica.CPU),
+                getMedia(HistoricoMetricas.Metrica.MEMORIA), getMaximo(HistoricoMetricas.Metrica.MEMORIA),
+                getMedia(HistoricoMetricas.Metrica.CARGA), getMaximo(HistoricoMetricas.Metrica.CARGA));
+    }
+}
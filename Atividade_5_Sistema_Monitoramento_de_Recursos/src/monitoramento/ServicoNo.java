@@ -2,6 +2,7 @@ package monitoramento;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Define a interface remota para um Nó.
@@ -18,6 +19,26 @@ public interface ServicoNo extends Remote {
      */
     Recurso getStatus(int relogioRemetente) throws RemoteException;
 
+    /**
+     * Recebe um lote de amostras enviado por um nó no modo PUSH.
+     * Apenas o coordenador guarda as amostras na sua tabela de telemetria.
+     * @param amostras As amostras de recursos do nó remetente.
+     * @param relogioRemetente O valor do relógio de Lamport do remetente.
+     * @throws RemoteException Se ocorrer um erro de comunicação.
+     */
+    void receberAmostras(List<Recurso> amostras, int relogioRemetente) throws RemoteException;
+
+    /**
+     * Coleta em árvore: este nó torna-se subcoordenador dos membros indicados, coleta-os
+     * (diretamente ou através de outros subcoordenadores) e devolve um resumo do grupo.
+     * @param membros IDs dos nós do grupo, sem este nó, por ordem crescente.
+     * @param relogioRemetente O valor do relógio de Lamport de quem pede.
+     * @param prazoMs Tempo máximo para responder.
+     * @return O resumo do grupo, incluindo este nó.
+     * @throws RemoteException Se ocorrer um erro de comunicação.
+     */
+    ResumoGrupo coletarGrupo(List<Integer> membros, int relogioRemetente, long prazoMs) throws RemoteException;
+
     // --- Métodos para o Algoritmo de Eleição (Bully) ---
 
     /**
@@ -37,7 +58,18 @@ public interface ServicoNo extends Remote {
     /**
      * Recebe o anúncio de que um novo coordenador foi eleito.
      * @param novoCoordenadorId O ID do novo nó coordenador.
+     * @param epoca A época da liderança do novo coordenador (um valor do seu relógio de Lamport).
      * @throws RemoteException
      */
-    void receberMensagemCoordenador(int novoCoordenadorId) throws RemoteException;
+    void receberMensagemCoordenador(int novoCoordenadorId, long epoca) throws RemoteException;
+
+    // --- Arrendamento da liderança ---
+
+    /**
+     * Renova o arrendamento do coordenador junto deste nó, que passa a ser o nó de reserva.
+     * @param estado O estado do coordenador a espelhar.
+     * @return false se este nó já é o coordenador e recusa o arrendamento.
+     * @throws RemoteException Se ocorrer um erro de comunicação.
+     */
+    boolean renovarArrendamento(EstadoLider estado) throws RemoteException;
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package monitoramento;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executa o {@link DetectorSwim} de um nó sobre UDP, na porta de heartbeat do nó.
+ * Substitui o par HeartbeatGestor/HeartbeatServidor quando o detetor SWIM está ativo
+ * e reflete as mudanças de estado dos membros no NoInfo correspondente.
+ * Com uma {@link RedeLocal}, as mensagens circulam em memória e não é aberta nenhuma porta.
+ */
+public class ServicoSwim implements Runnable, DetectorSwim.Transporte, DetectorSwim.Ouvinte {
+    private static final Registador LOG = Registador.para("Swim");
+    private static final long PERIODO_MS = Long.getLong("monitoramento.swim.periodoMs", 1000);
+    private static final int K = Integer.getInteger("monitoramento.swim.k", 3);
+    private static final int PERIODOS_SUSPEITA = Integer.getInteger("monitoramento.swim.periodosSuspeita", 3);
+    // Intervalo máximo entre chamadas a tick().
+    private static final long INTERVALO_TICK_MS = 20;
+    private static final int TAMANHO_DATAGRAMA = 1500;
+
+    private final No noPai;
+    private final DetectorSwim detector;
+    private final ByteBuffer envio = ByteBuffer.allocate(TAMANHO_DATAGRAMA);
+    private final ByteBuffer rececao = ByteBuffer.allocate(TAMANHO_DATAGRAMA);
+    private DatagramChannel canal;
+    // Transporte em memória (null = UDP) e mensagens recebidas por ele.
+    private final RedeLocal rede;
+    private final Queue<MensagemSwim> caixa = new ConcurrentLinkedQueue<>();
+    private volatile Thread executor;
+
+    public ServicoSwim(No noPai) {
+        this(noPai, null);
+    }
+
+    public ServicoSwim(No noPai, RedeLocal rede) {
+        this.noPai = noPai;
+        this.rede = rede;
+        List<Integer> outros = new ArrayList<>(noPai.getNosDaRede().keySet());
+        this.detector = new DetectorSwim(noPai.getId(), outros, PERIODO_MS, K, PERIODOS_SUSPEITA, this, this, new Random());
+        if (rede != null) {
+            rede.registarSwim(noPai.getId(), m -> {
+                caixa.offer(m);
+                LockSupport.unpark(executor);
+            });
+        }
+    }
+
+    @Override
+    public void run() {
+        if (rede != null) {
+            executarEmMemoria();
+            return;
+        }
+        int porta = noPai.getNosDaRede().get(noPai.getId()).getPortaHeartbeat();
+        try (Selector selector = Selector.open(); DatagramChannel c = DatagramChannel.open()) {
+            c.bind(new InetSocketAddress("127.0.0.1", porta));
+            c.configureBlocking(false);
+            c.register(selector, SelectionKey.OP_READ);
+            this.canal = c;
+            LOG.info("[INFO] No %d: Detetor SWIM iniciado na porta UDP %d.", noPai.getId(), porta);
+
+            while (noPai.isAtivo()) {
+                selector.select(INTERVALO_TICK_MS);
+                selector.selectedKeys().clear();
+                long agora = System.currentTimeMillis();
+                SocketAddress origem;
+                while ((origem = c.receive(rececao)) != null) {
+                    rececao.flip();
+                    try {
+                        detector.receber(MensagemSwim.decodificar(rececao), agora);
+                    } catch (RuntimeException e) {
+                        // Datagrama malformado: ignorado.
+                    }
+                    rececao.clear();
+                }
+                detector.tick(agora);
+            }
+        } catch (IOException e) {
+            if (noPai.isAtivo()) {
+                LOG.erro("[ERRO] No %d: Nao foi possivel iniciar o detetor SWIM na porta %d.", noPai.getId(), porta);
+            }
+        }
+        LOG.info("[INFO] No %d: Detetor SWIM encerrado.", noPai.getId());
+    }
+
+    private void executarEmMemoria() {
+        executor = Thread.currentThread();
+        while (noPai.isAtivo()) {
+            long agora = System.currentTimeMillis();
+            MensagemSwim m;
+            while ((m = caixa.poll()) != null) {
+                detector.receber(m, agora);
+            }
+            detector.tick(agora);
+            LockSupport.parkNanos(INTERVALO_TICK_MS * 1_000_000L);
+        }
+        LOG.info("[INFO] No %d: Detetor SWIM encerrado.", noPai.getId());
+    }
+
+    @Override
+    public void enviar(int destino, MensagemSwim mensagem) {
+        if (rede != null) {
+            if (noPai.isAtivo()) rede.enviarSwim(noPai.getId(), destino, mensagem);
+            return;
+        }
+        NoInfo info = noPai.getNosDaRede().get(destino);
+        if (info == null || canal == null || !noPai.isAtivo()) return;
+        envio.clear();
+        mensagem.codificar(envio);
+        envio.flip();
+        try {
+            canal.send(envio, new InetSocketAddress("127.0.0.1", info.getPortaHeartbeat()));
+        } catch (IOException e) {
+            // UDP: uma falha de envio é tratada como uma mensagem perdida.
+        }
+    }
+
+    @Override
+    public void noSuspeito(int id) {
+        LOG.aviso("[AVISO] Nó %d: Nó %d SUSPEITO (SWIM). Monitorando...", noPai.getId(), id);
+    }
+
+    @Override
+    public void noFalhou(int id) {
+        NoInfo info = noPai.getNosDaRede().get(id);
+        if (info == null || !info.isAtivo()) return;
+        LOG.erro("[FALHA] Nó %d detectou: NÓ %d CONSIDERADO FALHO! (SWIM)", noPai.getId(), id);
+        info.setAtivo(false);
+        noPai.getStubs().invalidar(id);
+        // Se o nó que falhou era o coordenador, inicia uma nova eleição fora da thread do detetor.
+        if (id == noPai.getCoordenadorId()) {
+            new Thread(noPai::iniciarEleicao).start();
+        }
+    }
+
+    @Override
+    public void noAtivo(int id) {
+        NoInfo info = noPai.getNosDaRede().get(id);
+        if (info == null || info.isAtivo()) return;
+        LOG.info("[INFO] Nó %d detectou: NÓ %d RECONECTADO! (SWIM)", noPai.getId(), id);
+        noPai.getStubs().invalidar(id);
+        info.resetarContadorFalhas();
+        info.setAtivo(true);
+        // Voltou um nó de ID maior que o coordenador (uma partição que sarou): pela regra do Bully, é ele que deve coordenar.
+        if (id > noPai.getCoordenadorId()) {
+            new Thread(noPai::iniciarEleicao).start();
+        }
+    }
+
+    public DetectorSwim getDetector() { return detector; }
+}
@@ -3,19 +3,53 @@ package monitoramento;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
  * Servidor que roda apenas no nó líder para autenticar clientes.
+ *
+ * A thread principal apenas aceita ligações e aplica o limite de pedidos por cliente; cada
+ * ligação é tratada por um conjunto limitado de threads, pelo que uma vaga de
+ * re-autenticações depois de uma falha do líder é atendida em paralelo. Os tokens emitidos
+ * ficam no {@link ArmazemTokens} do nó e podem ser validados enviando "TOKEN &lt;token&gt;".
+ * Um cliente autenticado que perdeu a base dos deltas envia "KEYFRAME &lt;token&gt;" para que o
+ * próximo relatório multicast siga completo.
  */
 public class ServidorAutenticacao implements Runnable {
+    private static final Registador LOG = Registador.para("Autenticacao");
     private final No noPai;
-    private static final int PORTA_AUTENTICACAO = 9090;
+    static final int PORTA_AUTENTICACAO = 9090;
+    // Ligações pendentes aceites pelo sistema operativo antes do accept.
+    private static final int BACKLOG = 1024;
+    private static final int THREADS = Math.max(1, Integer.getInteger("monitoramento.auth.threads", 8));
+    private static final int FILA = 1024;
+    // Tempo máximo de espera pela linha do cliente, para que um cliente lento não ocupe uma thread.
+    private static final int PRAZO_LEITURA_MS = 2000;
+    // Limite de pedidos por endereço: taxa sustentada e rajada (balde de fichas).
+    private static final double TAXA_POR_SEGUNDO = Double.parseDouble(System.getProperty("monitoramento.auth.taxaPorSegundo", "100"));
+    private static final double RAJADA = Double.parseDouble(System.getProperty("monitoramento.auth.rajada", "1000"));
+    private static final int MAX_CLIENTES_LIMITADOS = 10_000;
+    private static final byte[] CREDENCIAIS = System.getProperty("monitoramento.auth.credenciais", "admin;admin")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final String PREFIXO_TOKEN = "TOKEN ";
+    private static final String PREFIXO_KEYFRAME = "KEYFRAME ";
+
     // Callback para devolver a instância do ServerSocket.
     private final Consumer<ServerSocket> socketCallback;
+    private final ArmazemTokens tokens;
+    private final Map<InetAddress, Balde> baldes = new ConcurrentHashMap<>();
 
     /**
      * Construtor
@@ -23,37 +57,123 @@ public class ServidorAutenticacao implements Runnable {
     public ServidorAutenticacao(No noPai, Consumer<ServerSocket> socketCallback) {
         this.noPai = noPai;
         this.socketCallback = socketCallback;
+        this.tokens = noPai.getTokens();
     }
 
     @Override
     public void run() {
-        try (ServerSocket serverSocket = new ServerSocket(PORTA_AUTENTICACAO)) {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(FILA), r -> {
+                    Thread t = new Thread(r, "auth-P" + noPai.getId() + "-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        try (ServerSocket serverSocket = new ServerSocket(PORTA_AUTENTICACAO, BACKLOG)) {
             // Devolve a referência do socket para o Nó.
             socketCallback.accept(serverSocket);
 
-            System.out.printf("[AUTH] Lider P%d: Servidor de Autenticacao iniciado na porta %d.%n", noPai.getId(), PORTA_AUTENTICACAO);
+            LOG.info("[AUTH] Lider P%d: Servidor de Autenticacao iniciado na porta %d (%d threads).", noPai.getId(), PORTA_AUTENTICACAO, THREADS);
 
             while (noPai.isAtivo() && noPai.getId() == noPai.getCoordenadorId()) {
-                try (Socket clientSocket = serverSocket.accept()) {
-                    BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                    PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-
-                    String credenciais = in.readLine();
-                    if ("admin;admin".equals(credenciais)) {
-                        String token = UUID.randomUUID().toString();
-                        out.println(token);
-                        System.out.printf("[AUTH] Lider P%d: Token gerado para cliente autenticado: %s%n", noPai.getId(), token);
-                        noPai.registrarClienteAutenticado();
-                    } else {
-                        out.println("ERRO: Credenciais invalidas");
-                    }
+                Socket clientSocket;
+                try {
+                    clientSocket = serverSocket.accept();
                 } catch (Exception e) {
                     // Ignora erros de socket fechado, que são esperados quando o nó é desativado.
+                    if (serverSocket.isClosed()) break;
+                    continue;
+                }
+                if (!permitir(clientSocket.getInetAddress())) {
+                    noPai.getMetricas().registarAutenticacaoLimitada();
+                    responderEFechar(clientSocket, "ERRO: Limite de pedidos excedido");
+                    continue;
+                }
+                try {
+                    executor.execute(() -> atender(clientSocket));
+                } catch (RejectedExecutionException e) {
+                    responderEFechar(clientSocket, "ERRO: Servidor ocupado");
                 }
             }
         } catch (Exception e) {
             // Ignora erro de "Address already in use" que pode acontecer durante uma eleição rápida.
+        } finally {
+            executor.shutdownNow();
+        }
+        LOG.info("[AUTH] Lider P%d: Servidor de Autenticacao encerrado.", noPai.getId());
+    }
+
+    private void atender(Socket clientSocket) {
+        try (Socket s = clientSocket) {
+            s.setSoTimeout(PRAZO_LEITURA_MS);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+
+            String linha = in.readLine();
+            long inicioNs = System.nanoTime();
+            if (linha != null && linha.startsWith(PREFIXO_TOKEN)) {
+                boolean valido = tokens.validar(linha.substring(PREFIXO_TOKEN.length()));
+                out.println(valido ? "OK" : "ERRO: Token invalido ou expirado");
+                return;
+            }
+            if (linha != null && linha.startsWith(PREFIXO_KEYFRAME)) {
+                boolean valido = tokens.validar(linha.substring(PREFIXO_KEYFRAME.length()));
+                if (valido) noPai.pedirKeyframe();
+                out.println(valido ? "OK" : "ERRO: Token invalido ou expirado");
+                return;
+            }
+            boolean aceite = credenciaisValidas(linha);
+            if (aceite) {
+                String token = tokens.emitir();
+                out.println(token);
+                // Apenas o início do token vai para o registo.
+                LOG.info("[AUTH] Lider P%d: Token gerado para cliente autenticado: %s...", noPai.getId(), token.substring(0, 8));
+                noPai.registrarClienteAutenticado();
+            } else {
+                out.println("ERRO: Credenciais invalidas");
+            }
+            noPai.getMetricas().registarAutenticacao(aceite, System.nanoTime() - inicioNs);
+        } catch (Exception e) {
+            // Cliente desligado ou sem resposta dentro do prazo.
+        }
+    }
+
+    /**
+     * Compara as credenciais em tempo constante, para não revelar quantos bytes coincidem.
+     */
+    static boolean credenciaisValidas(String credenciais) {
+        if (credenciais == null) return false;
+        return MessageDigest.isEqual(credenciais.getBytes(StandardCharsets.UTF_8), CREDENCIAIS);
+    }
+
+    private boolean permitir(InetAddress endereco) {
+        if (baldes.size() > MAX_CLIENTES_LIMITADOS) baldes.clear();
+        return baldes.computeIfAbsent(endereco, k -> new Balde()).consumir();
+    }
+
+    private static void responderEFechar(Socket s, String mensagem) {
+        try (Socket fechar = s) {
+            fechar.getOutputStream().write((mensagem + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            // O cliente já desligou.
+        }
+    }
+
+    /**
+     * Balde de fichas de um cliente: enche à taxa sustentada até ao tamanho da rajada.
+     */
+    private static final class Balde {
+        private double fichas = RAJADA;
+        private long ultimoNs = System.nanoTime();
+
+        synchronized boolean consumir() {
+            long agora = System.nanoTime();
+            fichas = Math.min(RAJADA, fichas + (agora - ultimoNs) * TAXA_POR_SEGUNDO / 1e9);
+            ultimoNs = agora;
+            if (fichas < 1) return false;
+            fichas -= 1;
+            return true;
         }
-        System.out.printf("[AUTH] Lider P%d: Servidor de Autenticacao encerrado.%n", noPai.getId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package monitoramento;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Publica as {@link MetricasNo} de um nó como MBean ("monitoramento:type=No,id=N") e,
+ * se a porta for positiva, como texto simples em http://127.0.0.1:porta/metricas.
+ * A porta de cada nó é "monitoramento.metricas.portaBase" (padrão 9100) mais o ID;
+ * 0 desativa o endpoint HTTP.
+ */
+public class ServidorMetricas {
+    private static final Registador LOG = Registador.para("Metricas");
+    public static final int PORTA_BASE = Integer.getInteger("monitoramento.metricas.portaBase", 9100);
+
+    private final MetricasNo metricas;
+    private ObjectName nome;
+    private HttpServer http;
+
+    public ServidorMetricas(MetricasNo metricas) {
+        this.metricas = metricas;
+    }
+
+    /**
+     * @param portaHttp Porta do endpoint HTTP (0 ou negativa: apenas JMX).
+     */
+    public void iniciar(int portaHttp) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            nome = new ObjectName("monitoramento:type=No,id=" + metricas.getIdNo());
+            if (servidor.isRegistered(nome)) servidor.unregisterMBean(nome);
+            servidor.registerMBean(metricas, nome);
+        } catch (Exception e) {
+            LOG.aviso("[AVISO] No %d: Nao foi possivel registar o MBean de metricas: %s", metricas.getIdNo(), e.getMessage());
+        }
+        if (portaHttp <= 0) return;
+        try {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", portaHttp), 0);
+            http.createContext("/metricas", troca -> {
+                byte[] corpo = metricas.paraTexto().getBytes(StandardCharsets.UTF_8);
+                troca.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                troca.sendResponseHeaders(200, corpo.length);
+                try (OutputStream out = troca.getResponseBody()) {
+                    out.write(corpo);
+                }
+            });
+            http.start();
+            LOG.info("[INFO] No %d: Metricas em http://127.0.0.1:%d/metricas", metricas.getIdNo(), portaHttp);
+        } catch (IOException e) {
+            LOG.aviso("[AVISO] No %d: Endpoint de metricas indisponivel na porta %d: %s", metricas.getIdNo(), portaHttp, e.getMessage());
+        }
+    }
+
+    public void encerrar() {
+        if (http != null) http.stop(0);
+        try {
+            if (nome != null) ManagementFactory.getPlatformMBeanServer().unregisterMBean(nome);
+        } catch (Exception e) {
+            // Já não estava registado.
+        }
+    }
+}
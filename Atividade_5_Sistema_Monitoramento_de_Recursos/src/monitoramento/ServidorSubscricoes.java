@@ -0,0 +1,175 @@
+package monitoramento;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canal de subscrições do líder, ao lado do {@link ServidorAutenticacao}: um cliente
+ * autenticado liga-se por TCP, envia o seu token e um filtro e passa a receber apenas as
+ * atualizações que lhe interessam, uma linha por nó.
+ *
+ * Protocolo (linhas de texto):
+ * <pre>
+ *   cliente: TOKEN &lt;token&gt;
+ *   cliente: FILTRO nos=1,5 metricas=cpu limiar=2.5 maxHz=1
+ *   líder:   OK nos=[1, 5] metricas=[CPU] limiar=2.50 maxHz=1.0
+ *   líder:   ATUALIZACAO no=5 lamport=42 cpu=37.10
+ * </pre>
+ *
+ * Cada ligação tem a sua thread, que lê o pedido e depois envia as atualizações, e o seu mapa
+ * de atualizações pendentes ({@link Subscricao}): a thread de aceitação nunca espera por um
+ * cliente, a publicação de um snapshot nunca bloqueia o líder e um cliente lento ou calado não
+ * atrasa os outros.
+ *
+ * Porta em "monitoramento.subscricoes.porta" (padrão 9091; 0 desativa) e número máximo de
+ * subscrições em "monitoramento.subscricoes.max" (padrão 256).
+ */
+public class ServidorSubscricoes implements Runnable {
+    private static final Registador LOG = Registador.para("Subscricoes");
+    public static final int PORTA = Integer.getInteger("monitoramento.subscricoes.porta", 9091);
+    private static final int MAXIMO = Math.max(1, Integer.getInteger("monitoramento.subscricoes.max", 256));
+    // O accept acorda periodicamente para verificar se o nó continua a ser o coordenador.
+    private static final int PRAZO_ACCEPT_MS = 1000;
+    private static final int PRAZO_PEDIDO_MS = 2000;
+    private static final String PREFIXO_TOKEN = "TOKEN ";
+
+    private final No noPai;
+    private final List<Subscricao> subscricoes = new CopyOnWriteArrayList<>();
+    // Ligações abertas, a negociar ou já subscritas; limitadas por MAXIMO.
+    private final AtomicInteger ligacoes = new AtomicInteger();
+    private volatile ServerSocket serverSocket;
+
+    public ServidorSubscricoes(No noPai) {
+        this.noPai = noPai;
+    }
+
+    @Override
+    public void run() {
+        try (ServerSocket ss = new ServerSocket(PORTA)) {
+            serverSocket = ss;
+            ss.setSoTimeout(PRAZO_ACCEPT_MS);
+            LOG.info("[SUBSCRICAO] Lider P%d: canal de subscricoes iniciado na porta %d.", noPai.getId(), PORTA);
+            while (noPai.isAtivo() && noPai.getId() == noPai.getCoordenadorId()) {
+                Socket cliente;
+                try {
+                    cliente = ss.accept();
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                if (ligacoes.incrementAndGet() > MAXIMO) {
+                    ligacoes.decrementAndGet();
+                    recusar(cliente, "ERRO: Limite de subscricoes atingido");
+                    continue;
+                }
+                // O pedido é lido na thread da própria subscrição: um cliente calado só atrasa a sua.
+                Thread t = new Thread(() -> atender(cliente), "subscricao-P" + noPai.getId() + "-" + cliente.getPort());
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (Exception e) {
+            // Socket fechado pelo encerramento do nó, ou porta ainda ocupada pelo líder anterior.
+            LOG.debug("[SUBSCRICAO] Lider P%d: canal de subscricoes parou: %s", noPai.getId(), e.getMessage());
+        } finally {
+            for (Subscricao s : subscricoes) s.encerrar();
+            subscricoes.clear();
+        }
+        LOG.info("[SUBSCRICAO] Lider P%d: canal de subscricoes encerrado.", noPai.getId());
+    }
+
+    /**
+     * Lê o token e o filtro do cliente, com prazo, e, se forem válidos, envia-lhe as
+     * atualizações nesta mesma thread até a subscrição terminar.
+     */
+    private void atender(Socket cliente) {
+        try {
+            cliente.setSoTimeout(PRAZO_PEDIDO_MS);
+            cliente.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(cliente.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(cliente.getOutputStream(), true);
+            String token = in.readLine();
+            if (token == null || !token.startsWith(PREFIXO_TOKEN)
+                    || !noPai.getTokens().validar(token.substring(PREFIXO_TOKEN.length()))) {
+                recusar(cliente, "ERRO: Token invalido ou expirado");
+                return;
+            }
+            Subscricao.Filtro filtro;
+            try {
+                filtro = Subscricao.Filtro.ler(in.readLine());
+            } catch (IllegalArgumentException e) {
+                recusar(cliente, "ERRO: " + e.getMessage());
+                return;
+            }
+            if (!noPai.isAtivo() || noPai.getId() != noPai.getCoordenadorId()) {
+                recusar(cliente, "ERRO: Este no ja nao e o lider");
+                return;
+            }
+            out.println("OK " + filtro);
+            // A partir daqui só o servidor escreve; o cliente apenas lê.
+            cliente.setSoTimeout(0);
+            Subscricao subscricao = new Subscricao(cliente, filtro);
+            subscricoes.add(subscricao);
+            LOG.info("[SUBSCRICAO] Lider P%d: nova subscricao de %s (%s).", noPai.getId(), cliente.getRemoteSocketAddress(), filtro);
+            // O servidor pode ter parado entre a leitura do pedido e o registo.
+            if (serverSocket == null || serverSocket.isClosed()) subscricao.encerrar();
+            subscricao.run();
+            subscricoes.remove(subscricao);
+        } catch (Exception e) {
+            fechar(cliente);
+        } finally {
+            ligacoes.decrementAndGet();
+        }
+    }
+
+    private static void recusar(Socket cliente, String mensagem) {
+        try {
+            PrintWriter out = new PrintWriter(cliente.getOutputStream(), true);
+            out.println(mensagem);
+        } catch (Exception e) {
+            // O cliente já se desligou.
+        }
+        fechar(cliente);
+    }
+
+    private static void fechar(Socket s) {
+        try {
+            s.close();
+        } catch (Exception e) {
+            // Já estava fechado.
+        }
+    }
+
+    /**
+     * Entrega um snapshot a todas as subscrições. Não bloqueia: cada subscrição guarda apenas
+     * a atualização mais recente de cada nó até a sua thread a enviar.
+     */
+    public void publicar(List<Recurso> snapshot) {
+        for (Subscricao s : subscricoes) {
+            if (!s.isAtiva()) {
+                subscricoes.remove(s);
+                continue;
+            }
+            for (Recurso r : snapshot) s.oferecer(r);
+        }
+    }
+
+    public void encerrar() {
+        ServerSocket ss = serverSocket;
+        if (ss != null) {
+            try {
+                ss.close();
+            } catch (Exception e) {
+                // Já estava fechado.
+            }
+        }
+    }
+
+    public int getNumeroSubscricoes() { return subscricoes.size(); }
+}
@@ -24,6 +24,7 @@ public class Simulador {
 
         try {
             System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+            ColetorEstado.configurarPrazoRmi();
             Registry registry = LocateRegistry.createRegistry(1099);
             System.out.println("======================================================");
             System.out.println("[INFO] Servico de Registro RMI iniciado na porta 1099.");
@@ -0,0 +1,588 @@
+package monitoramento;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulador configurável de clusters grandes numa só JVM, para dimensionar o sistema.
+ *
+ * Arranca N nós (com a {@link RedeLocal} em memória, sem portas por nó, ou com RMI e
+ * sockets reais), executa um cenário de falhas e mede, por evento, o tempo de deteção
+ * da falha, o tempo até todos os nós concordarem no novo líder, os falsos positivos e
+ * as mensagens trocadas. Um cliente no mesmo processo autentica-se no líder e mede a
+ * idade dos relatórios multicast e o maior intervalo sem relatórios. Os resultados
+ * são gravados em JSON.
+ *
+ * Uso: java monitoramento.SimuladorCluster [--nos=100] [--transporte=LOCAL|REDE] [--duracao=120]
+ *          [--cenario=falha-lider|lider-repetido|aleatorio|particao|lentos|&lt;eventos&gt;]
+ *          [--saida=resultados-simulacao.json] [--semente=42] [--portaBase=1100] [--latencia=0]
+ *
+ * Um cenário explícito é uma lista "segundo:acao[:argumentos]" separada por ';', com as ações
+ * matar-lider, falha-aleatoria:N, particao:FRACAO, sarar e lento:N:ATRASO_MS.
+ * Exemplo: --cenario="20:matar-lider;40:particao:0.5;70:sarar".
+ * Com a rede em memória, --latencia acrescenta uma latência fixa (ms) a cada mensagem, e a
+ * duração das rodadas de coleta permite comparar os modos de coleta com o tamanho do cluster.
+ */
+public class SimuladorCluster {
+    /** Transporte entre os nós simulados. */
+    public enum Transporte { LOCAL, REDE }
+
+    private static final long INTERVALO_MEDICAO_MS = 100;
+
+    private static final class Evento {
+        final long instanteMs;
+        final String acao;
+        final String[] argumentos;
+        Evento(long instanteMs, String acao, String[] argumentos) {
+            this.instanteMs = instanteMs;
+            this.acao = acao;
+            this.argumentos = argumentos;
+        }
+    }
+
+    /** Medições de um evento, da sua execução até ao evento seguinte (ou ao fim). */
+    private static final class Medicao {
+        final Evento evento;
+        final long inicioMs;
+        final int liderAntes;
+        final List<Integer> alvos = new ArrayList<>();
+        boolean suportado = true;
+        long deteccaoPrimeiroMs = -1;
+        long deteccaoTodosMs = -1;
+        long convergenciaMs = -1;
+        int liderFinal = -1;
+        int falsosPositivosMax;
+        int falsosPositivosFim;
+        long mensagensInicio;
+        long mensagensFim;
+        long duracaoMs;
+        long maiorIntervaloClienteMs;
+        Medicao(Evento evento, long inicioMs, int liderAntes) {
+            this.evento = evento;
+            this.inicioMs = inicioMs;
+            this.liderAntes = liderAntes;
+        }
+    }
+
+    private final int numeroNos;
+    private final Transporte transporte;
+    private final long duracaoMs;
+    private final String cenario;
+    private final File saida;
+    private final long semente;
+    private final int portaBase;
+    private final long latenciaMs;
+    private final Random aleatorio;
+
+    private final List<No> nos = new ArrayList<>();
+    private final Set<Integer> parados = new HashSet<>();
+    private RedeLocal rede;
+    private Registry registry;
+    private final ClienteSimulado cliente = new ClienteSimulado();
+    private final List<Medicao> medicoes = new ArrayList<>();
+    private long inicioMs;
+    private long arranqueMs;
+
+    private SimuladorCluster(Map<String, String> opcoes) {
+        this.numeroNos = Integer.parseInt(opcoes.getOrDefault("nos", "100"));
+        this.transporte = Transporte.valueOf(opcoes.getOrDefault("transporte", "LOCAL").toUpperCase());
+        this.duracaoMs = Long.parseLong(opcoes.getOrDefault("duracao", "120")) * 1000;
+        this.cenario = opcoes.getOrDefault("cenario", "falha-lider");
+        this.saida = new File(opcoes.getOrDefault("saida", "resultados-simulacao.json"));
+        this.semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+        this.portaBase = Integer.parseInt(opcoes.getOrDefault("portaBase", "1100"));
+        this.latenciaMs = Long.parseLong(opcoes.getOrDefault("latencia", "0"));
+        this.aleatorio = new Random(semente);
+    }
+
+    // --- Cenários ---
+
+    private List<Evento> lerCenario() {
+        String eventos;
+        long duracaoS = duracaoMs / 1000;
+        int dezPorCento = Math.max(1, numeroNos / 10);
+        switch (cenario) {
+            case "falha-lider": eventos = "25:matar-lider"; break;
+            case "aleatorio": eventos = "25:falha-aleatoria:" + dezPorCento; break;
+            case "particao": eventos = "25:particao:0.5;" + Math.max(30, duracaoS / 2) + ":sarar"; break;
+            case "lentos": eventos = "25:lento:" + dezPorCento + ":1500"; break;
+            case "lider-repetido": {
+                StringBuilder sb = new StringBuilder();
+                for (long t = 25; t <= duracaoS - 20; t += 30) sb.append(t).append(":matar-lider;");
+                eventos = sb.toString();
+                break;
+            }
+            default: eventos = cenario;
+        }
+        List<Evento> lista = new ArrayList<>();
+        for (String e : eventos.split(";")) {
+            if (e.trim().isEmpty()) continue;
+            String[] partes = e.trim().split(":");
+            String[] argumentos = new String[partes.length - 2];
+            System.arraycopy(partes, 2, argumentos, 0, argumentos.length);
+            lista.add(new Evento(Long.parseLong(partes[0]) * 1000, partes[1], argumentos));
+        }
+        lista.sort((a, b) -> Long.compare(a.instanteMs, b.instanteMs));
+        return lista;
+    }
+
+    // --- Arranque e falhas ---
+
+    private void arrancar() throws Exception {
+        List<Integer> todosPids = new ArrayList<>();
+        Map<Integer, Integer> portasHeartbeat = new HashMap<>();
+        for (int i = 1; i <= numeroNos; i++) {
+            todosPids.add(i);
+            // Com a rede em memória as portas não são usadas.
+            portasHeartbeat.put(i, transporte == Transporte.LOCAL ? 0 : portaBase + i - 1);
+        }
+        long t0 = System.currentTimeMillis();
+        if (transporte == Transporte.LOCAL) {
+            rede = new RedeLocal();
+            rede.definirLatenciaBase(latenciaMs);
+        } else {
+            System.setProperty("java.rmi.server.hostname", "127.0.0.1");
+            ColetorEstado.configurarPrazoRmi();
+            registry = LocateRegistry.createRegistry(1099);
+        }
+        for (int i = 1; i <= numeroNos; i++) {
+            No no = new No(i, todosPids, portasHeartbeat, rede);
+            if (rede != null) rede.registar(i, no.getServidorRMI()); else registry.bind("No" + i, no.getServidorRMI());
+            nos.add(no);
+        }
+        arranqueMs = System.currentTimeMillis() - t0;
+        System.out.printf("[SIMULADOR] %d nos arrancados em %d ms (transporte %s).%n", numeroNos, arranqueMs, transporte);
+    }
+
+    private No no(int pid) { return nos.get(pid - 1); }
+
+    private void parar(int pid) {
+        if (!parados.add(pid)) return;
+        if (rede != null) rede.parar(pid);
+        no(pid).setAtivo(false);
+        if (registry != null) {
+            try {
+                registry.unbind("No" + pid);
+            } catch (Exception e) {
+                // Já não estava registado.
+            }
+        }
+    }
+
+    private List<Integer> vivos() {
+        List<Integer> vivos = new ArrayList<>();
+        for (int pid = 1; pid <= numeroNos; pid++) {
+            if (!parados.contains(pid)) vivos.add(pid);
+        }
+        return vivos;
+    }
+
+    private int grupo(int pid) { return rede != null ? rede.getGrupo(pid) : 0; }
+
+    /** Líder esperado no grupo de partição do nó: o maior ID vivo do grupo. */
+    private int liderEsperado(int pid) {
+        int g = grupo(pid);
+        for (int p = numeroNos; p >= 1; p--) {
+            if (!parados.contains(p) && grupo(p) == g) return p;
+        }
+        return -1;
+    }
+
+    private List<Integer> escolherVivos(int quantidade) {
+        List<Integer> candidatos = vivos();
+        List<Integer> escolhidos = new ArrayList<>();
+        while (escolhidos.size() < quantidade && !candidatos.isEmpty()) {
+            escolhidos.add(candidatos.remove(aleatorio.nextInt(candidatos.size())));
+        }
+        return escolhidos;
+    }
+
+    private Medicao executar(Evento e) {
+        long agora = System.currentTimeMillis();
+        List<Integer> vivos = vivos();
+        int lider = vivos.isEmpty() ? -1 : liderEsperado(vivos.get(0));
+        Medicao m = new Medicao(e, agora, lider);
+        m.mensagensInicio = rede != null ? rede.getTotalMensagens() : 0;
+        switch (e.acao) {
+            case "matar-lider":
+                m.alvos.add(lider);
+                parar(lider);
+                break;
+            case "falha-aleatoria":
+                m.alvos.addAll(escolherVivos(Integer.parseInt(e.argumentos[0])));
+                for (int pid : m.alvos) parar(pid);
+                break;
+            case "particao": {
+                if (rede == null) { m.suportado = false; break; }
+                double fracao = Double.parseDouble(e.argumentos[0]);
+                Set<Integer> grupo = new HashSet<>();
+                // Os nós de menor ID ficam do outro lado, separados do líder atual.
+                for (int pid = 1; pid <= Math.round(numeroNos * fracao); pid++) grupo.add(pid);
+                rede.particionar(grupo, 1);
+                m.alvos.addAll(grupo);
+                break;
+            }
+            case "sarar":
+                if (rede == null) { m.suportado = false; break; }
+                rede.sarar();
+                break;
+            case "lento": {
+                if (rede == null) { m.suportado = false; break; }
+                long atraso = Long.parseLong(e.argumentos[1]);
+                m.alvos.addAll(escolherVivos(Integer.parseInt(e.argumentos[0])));
+                for (int pid : m.alvos) rede.definirAtraso(pid, atraso);
+                break;
+            }
+            default:
+                m.suportado = false;
+        }
+        if (!m.suportado) {
+            System.err.printf("[AVISO] Acao '%s' nao suportada com o transporte %s. Ignorada.%n", e.acao, transporte);
+        }
+        System.out.printf("[SIMULADOR] t=%ds: %s %s (lider antes: P%d)%n", e.instanteMs / 1000, e.acao,
+                m.alvos.size() > 10 ? m.alvos.size() + " nos" : m.alvos.toString(), lider);
+        cliente.maiorIntervaloJanela.set(0);
+        return m;
+    }
+
+    /**
+     * Atualiza as medições do evento em curso com o estado atual de todos os nós.
+     */
+    private void medir(Medicao m) {
+        long decorrido = System.currentTimeMillis() - m.inicioMs;
+        List<Integer> vivos = vivos();
+
+        // Deteção: os observadores de cada alvo parado são os nós vivos do mesmo grupo.
+        boolean algumaFalha = false;
+        boolean todasDetetadas = true;
+        boolean algumaDetecao = false;
+        for (int alvo : m.alvos) {
+            if (!parados.contains(alvo)) continue;
+            algumaFalha = true;
+            for (int obs : vivos) {
+                if (grupo(obs) != grupo(alvo)) continue;
+                if (no(obs).getNosDaRede().get(alvo).isAtivo()) todasDetetadas = false; else algumaDetecao = true;
+            }
+        }
+        if (m.evento.acao.equals("particao") && m.suportado) {
+            // Numa partição, "deteção" é cada lado considerar falhos os nós do outro lado.
+            algumaFalha = true;
+            for (int obs : vivos) {
+                for (int alvo : vivos) {
+                    if (grupo(obs) == grupo(alvo)) continue;
+                    if (no(obs).getNosDaRede().get(alvo).isAtivo()) todasDetetadas = false; else algumaDetecao = true;
+                }
+            }
+        }
+        if (algumaFalha && algumaDetecao && m.deteccaoPrimeiroMs < 0) m.deteccaoPrimeiroMs = decorrido;
+        if (algumaFalha && todasDetetadas && m.deteccaoTodosMs < 0) m.deteccaoTodosMs = decorrido;
+
+        // Convergência: todos os nós vivos reconhecem o líder esperado do seu grupo.
+        boolean convergiu = true;
+        for (int pid : vivos) {
+            if (no(pid).getCoordenadorId() != liderEsperado(pid)) {
+                convergiu = false;
+                break;
+            }
+        }
+        if (convergiu && m.convergenciaMs < 0) m.convergenciaMs = decorrido;
+        if (!convergiu) m.convergenciaMs = -1; // Só conta a convergência estável.
+
+        // Falsos positivos: pares de nós vivos e alcançáveis em que um considera o outro falho.
+        int falsos = 0;
+        for (int obs : vivos) {
+            Map<Integer, NoInfo> vista = no(obs).getNosDaRede();
+            for (int alvo : vivos) {
+                if (alvo != obs && grupo(obs) == grupo(alvo) && !vista.get(alvo).isAtivo()) falsos++;
+            }
+        }
+        m.falsosPositivosMax = Math.max(m.falsosPositivosMax, falsos);
+        // Depois de sarar uma partição, o máximo é o do próprio instante da cura: conta o que falta readmitir.
+        m.falsosPositivosFim = falsos;
+    }
+
+    private void fechar(Medicao m) {
+        List<Integer> vivos = vivos();
+        m.duracaoMs = System.currentTimeMillis() - m.inicioMs;
+        m.liderFinal = vivos.isEmpty() ? -1 : no(vivos.get(0)).getCoordenadorId();
+        m.mensagensFim = rede != null ? rede.getTotalMensagens() : 0;
+        m.maiorIntervaloClienteMs = cliente.maiorIntervaloJanela.get();
+        medicoes.add(m);
+        System.out.printf("[SIMULADOR] %s: deteccao %d/%d ms, convergencia %d ms (lider P%d), falsos positivos %d (%d no fim), maior intervalo no cliente %d ms%n",
+                m.evento.acao, m.deteccaoPrimeiroMs, m.deteccaoTodosMs, m.convergenciaMs, m.liderFinal,
+                m.falsosPositivosMax, m.falsosPositivosFim, m.maiorIntervaloClienteMs);
+    }
+
+    private void executar() throws Exception {
+        List<Evento> eventos = lerCenario();
+        arrancar();
+        Thread threadCliente = new Thread(cliente, "cliente-simulado");
+        threadCliente.setDaemon(true);
+        threadCliente.start();
+        inicioMs = System.currentTimeMillis();
+
+        Medicao atual = null;
+        int proximo = 0;
+        while (System.currentTimeMillis() - inicioMs < duracaoMs) {
+            long decorrido = System.currentTimeMillis() - inicioMs;
+            if (proximo < eventos.size() && eventos.get(proximo).instanteMs <= decorrido) {
+                if (atual != null) fechar(atual);
+                atual = executar(eventos.get(proximo++));
+            }
+            if (atual != null) medir(atual);
+            Thread.sleep(INTERVALO_MEDICAO_MS);
+        }
+        if (atual != null) fechar(atual);
+
+        long mensagensTotal = rede != null ? rede.getTotalMensagens() : 0;
+        for (No no : nos) no.setAtivo(false);
+        cliente.ativo = false;
+        gravarResultados(mensagensTotal);
+        if (rede != null) rede.encerrar();
+        Registador.descarregar();
+        System.out.printf("[SIMULADOR] Resultados gravados em %s%n", saida.getAbsolutePath());
+    }
+
+    // --- Resultados ---
+
+    private void gravarResultados(long mensagensTotal) throws IOException {
+        StringBuilder j = new StringBuilder();
+        j.append("{\n");
+        j.append("  \"configuracao\": {")
+                .append("\"nos\": ").append(numeroNos)
+                .append(", \"transporte\": \"").append(transporte).append('"')
+                .append(", \"detetor\": \"").append(nos.get(0).getTipoDetector()).append('"')
+                .append(", \"duracaoS\": ").append(duracaoMs / 1000)
+                .append(", \"cenario\": \"").append(cenario.replace("\"", "'")).append('"')
+                .append(", \"semente\": ").append(semente)
+                .append(", \"intervaloColetaMs\": ").append(No.INTERVALO_COLETA_MS)
+                .append(", \"modoColeta\": \"").append(nos.get(0).getModoColeta()).append('"')
+                .append(", \"latenciaMs\": ").append(latenciaMs)
+                .append("},\n");
+        j.append("  \"arranqueMs\": ").append(arranqueMs).append(",\n");
+        j.append("  \"eventos\": [");
+        for (int i = 0; i < medicoes.size(); i++) {
+            Medicao m = medicoes.get(i);
+            double segundos = Math.max(1, m.duracaoMs) / 1000.0;
+            j.append(i == 0 ? "\n" : ",\n").append("    {")
+                    .append("\"acao\": \"").append(m.evento.acao).append('"')
+                    .append(", \"instanteS\": ").append(m.evento.instanteMs / 1000)
+                    .append(", \"suportado\": ").append(m.suportado)
+                    .append(", \"alvos\": ").append(m.alvos)
+                    .append(", \"liderAntes\": ").append(m.liderAntes)
+                    .append(", \"liderFinal\": ").append(m.liderFinal)
+                    .append(", \"deteccaoPrimeiroMs\": ").append(m.deteccaoPrimeiroMs)
+                    .append(", \"deteccaoTodosMs\": ").append(m.deteccaoTodosMs)
+                    .append(", \"convergenciaMs\": ").append(m.convergenciaMs)
+                    .append(", \"falsosPositivosMax\": ").append(m.falsosPositivosMax)
+                    .append(", \"falsosPositivosFim\": ").append(m.falsosPositivosFim)
+                    // As mensagens só são contadas pela rede em memória.
+                    .append(", \"mensagens\": ").append(rede != null ? String.valueOf(m.mensagensFim - m.mensagensInicio) : "null")
+                    .append(", \"mensagensPorNoPorSegundo\": ").append(rede != null
+                            ? String.format(Locale.ROOT, "%.2f", (m.mensagensFim - m.mensagensInicio) / (double) numeroNos / segundos) : "null")
+                    .append(", \"maiorIntervaloClienteMs\": ").append(m.maiorIntervaloClienteMs)
+                    .append('}');
+        }
+        j.append("\n  ],\n");
+        j.append("  \"mensagens\": {\"total\": ").append(rede != null ? String.valueOf(mensagensTotal) : "null");
+        if (rede != null) {
+            j.append(", \"descartadas\": ").append(rede.getDescartadas()).append(", \"porTipo\": {");
+            int i = 0;
+            for (Map.Entry<String, Long> e : rede.getMensagens().entrySet()) {
+                j.append(i++ == 0 ? "" : ", ").append('"').append(e.getKey()).append("\": ").append(e.getValue());
+            }
+            j.append('}');
+        }
+        j.append("},\n");
+        // Duração das rodadas de coleta de todos os líderes da simulação.
+        Histograma rodadas = new Histograma("us");
+        for (No no : nos) rodadas.fundir(no.getMetricas().getDuracaoRodada());
+        j.append("  \"coleta\": {")
+                .append("\"rodadas\": ").append(rodadas.getContagem())
+                .append(", \"duracaoMediaMs\": ").append(String.format(Locale.ROOT, "%.1f", rodadas.getMedia() / 1000))
+                .append(", \"duracaoP50Ms\": ").append(rodadas.percentil(50) / 1000)
+                .append(", \"duracaoP99Ms\": ").append(rodadas.percentil(99) / 1000)
+                .append(", \"duracaoMaxMs\": ").append(rodadas.getMaximo() / 1000)
+                .append("},\n");
+        Histograma idade = cliente.idadeMs;
+        j.append("  \"cliente\": {")
+                .append("\"relatorios\": ").append(idade.getContagem())
+                .append(", \"autenticacoes\": ").append(cliente.autenticacoes.get())
+                .append(", \"idadeMediaMs\": ").append(String.format(Locale.ROOT, "%.1f", idade.getMedia()))
+                .append(", \"idadeP50Ms\": ").append(idade.percentil(50))
+                .append(", \"idadeP99Ms\": ").append(idade.percentil(99))
+                .append(", \"idadeMaxMs\": ").append(idade.getMaximo())
+                .append(", \"maiorIntervaloMs\": ").append(cliente.maiorIntervalo.get())
+                .append(", \"deltasSemBase\": ").append(cliente.deltasSemBase.get())
+                .append(", \"descartados\": ").append(cliente.descartados.get())
+                .append("}\n");
+        j.append("}\n");
+        try (PrintWriter out = new PrintWriter(saida, StandardCharsets.UTF_8.name())) {
+            out.print(j);
+        }
+    }
+
+    // --- Cliente ---
+
+    /**
+     * Cliente no mesmo processo: autentica-se no líder (voltando a fazê-lo quando o sinal do
+     * líder anuncia uma época nova ou quando os relatórios param), recebe os relatórios multicast
+     * e mede a sua idade e os intervalos entre eles.
+     */
+    private static final class ClienteSimulado implements Runnable {
+        private static final String ENDERECO_MULTICAST = "239.0.0.1";
+        private static final int PORTA_MULTICAST = 12345;
+        private static final int PORTA_AUTENTICACAO = 9090;
+        private static final long LIMIAR_REAUTENTICACAO_MS = No.INTERVALO_COLETA_MS * 2 + 1000;
+
+        volatile boolean ativo = true;
+        final Histograma idadeMs = new Histograma("ms");
+        final AtomicLong autenticacoes = new AtomicLong();
+        final AtomicLong maiorIntervalo = new AtomicLong();
+        final AtomicLong maiorIntervaloJanela = new AtomicLong();
+        final AtomicLong deltasSemBase = new AtomicLong();
+        final AtomicLong descartados = new AtomicLong();
+        private long ultimoRelatorioMs;
+        private long ultimaTentativaMs;
+        private boolean autenticado;
+        private SinalLider lider;
+
+        @Override
+        public void run() {
+            try (MulticastSocket socket = new MulticastSocket(PORTA_MULTICAST)) {
+                NetworkInterface interfaceLocal = NetworkInterface.getByInetAddress(InetAddress.getByName("127.0.0.1"));
+                socket.setNetworkInterface(interfaceLocal);
+                socket.joinGroup(new InetSocketAddress(InetAddress.getByName(ENDERECO_MULTICAST), 0), interfaceLocal);
+                socket.setSoTimeout(500);
+                byte[] buffer = new byte[65535];
+                DatagramPacket pacote = new DatagramPacket(buffer, buffer.length);
+                RelatorioDecodificado relatorio = new RelatorioDecodificado();
+                Fragmentos.Remontador remontador = new Fragmentos.Remontador(8, 5000);
+                ultimoRelatorioMs = System.currentTimeMillis();
+                while (ativo) {
+                    long agora = System.currentTimeMillis();
+                    boolean semRelatorios = agora - ultimoRelatorioMs > LIMIAR_REAUTENTICACAO_MS;
+                    if ((!autenticado || semRelatorios) && agora - ultimaTentativaMs > 1000) autenticar();
+                    try {
+                        pacote.setLength(buffer.length);
+                        socket.receive(pacote);
+                    } catch (SocketTimeoutException e) {
+                        continue;
+                    }
+                    byte[] dados = pacote.getData();
+                    int comprimento = pacote.getLength();
+                    SinalLider sinal = SinalLider.decodificar(dados, 0, comprimento);
+                    if (sinal != null) {
+                        if (lider == null || (sinal.isOutraLideranca(lider) && sinal.getEpoca() > lider.getEpoca())) {
+                            // Novo líder: autentica-se já, sem esperar que os relatórios parem.
+                            boolean mudou = lider != null;
+                            lider = sinal;
+                            if (mudou) autenticar();
+                        }
+                        continue;
+                    }
+                    try {
+                        if (Fragmentos.isFragmento(dados, 0, comprimento)) {
+                            dados = remontador.receber(dados, 0, comprimento);
+                            if (dados == null) continue;
+                            comprimento = dados.length;
+                        }
+                        registar(dados, comprimento, relatorio);
+                    } catch (RuntimeException e) {
+                        // Um relatório malformado não pode parar a medição.
+                        descartados.incrementAndGet();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.printf("[ERRO] Cliente simulado: %s%n", e.getMessage());
+            }
+        }
+
+        private void registar(byte[] dados, int comprimento, RelatorioDecodificado relatorio) {
+            long agora = System.currentTimeMillis();
+            long intervalo = agora - ultimoRelatorioMs;
+            ultimoRelatorioMs = agora;
+            maiorIntervalo.accumulateAndGet(intervalo, Math::max);
+            maiorIntervaloJanela.accumulateAndGet(intervalo, Math::max);
+            if (!RelatorioBinario.isBinario(dados, 0, comprimento)) return;
+            ByteBuffer bb = ByteBuffer.wrap(dados, 0, comprimento);
+            // A vista é mantida entre relatórios, como no ReceptorRelatorios: os deltas aplicam-se
+            // sobre o snapshot anterior e, sem base, espera-se pelo próximo keyframe.
+            if (dados[2] == RelatorioBinario.VERSAO_DELTA) {
+                if (!relatorio.aplicarDelta(bb)) {
+                    deltasSemBase.incrementAndGet();
+                    return;
+                }
+            } else {
+                relatorio.decodificar(bb);
+            }
+            idadeMs.registar(agora - relatorio.getGeradoEmMs());
+        }
+
+        private void autenticar() {
+            ultimaTentativaMs = System.currentTimeMillis();
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress("127.0.0.1", PORTA_AUTENTICACAO), 500);
+                s.setSoTimeout(1000);
+                PrintWriter out = new PrintWriter(s.getOutputStream(), true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+                out.println("admin;admin");
+                String resposta = in.readLine();
+                if (resposta != null && !resposta.startsWith("ERRO")) {
+                    autenticado = true;
+                    autenticacoes.incrementAndGet();
+                    // O intervalo até ao primeiro relatório do novo líder conta a partir de agora.
+                }
+            } catch (IOException e) {
+                // Sem líder a aceitar autenticações neste momento: tenta de novo mais tarde.
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> opcoes = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("=")) {
+                System.err.println("Uso: java monitoramento.SimuladorCluster [--nos=100] [--transporte=LOCAL|REDE] [--duracao=120] "
+                        + "[--cenario=falha-lider|lider-repetido|aleatorio|particao|lentos|<eventos>] [--saida=resultados-simulacao.json] "
+                        + "[--semente=42] [--portaBase=1100] [--latencia=0]");
+                System.exit(1);
+            }
+            opcoes.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+        }
+        // Com centenas de nós, o registo INFO de cada nó tornaria a consola ilegível.
+        if (System.getProperty("monitoramento.registo.nivel") == null) System.setProperty("monitoramento.registo.nivel", "AVISO");
+        if (System.getProperty("monitoramento.log.diretorio") == null) System.setProperty("monitoramento.log.diretorio", "");
+        try {
+            new SimuladorCluster(opcoes).executar();
+            System.exit(0);
+        } catch (Exception e) {
+            System.err.println("[ERRO] Erro fatal no SimuladorCluster: " + e);
+            System.exit(1);
+        }
+    }
+}
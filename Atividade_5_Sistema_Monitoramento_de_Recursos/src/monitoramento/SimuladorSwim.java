@@ -0,0 +1,214 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Simulação local do detetor SWIM com muitos nós num único processo.
+ * Usa um transporte em memória e tempo simulado, por isso corre em segundos
+ * mesmo com centenas de nós. Para cada tamanho de cluster mede o tempo de
+ * deteção da falha do coordenador e as mensagens enviadas por nó, comparando
+ * com o esquema atual em que todos pingam todos.
+ *
+ * A falha é simulada isolando o coordenador (as mensagens de e para ele perdem-se), que
+ * continua a correr e declara os outros mortos. Depois de todos confirmarem a falha, o
+ * isolamento termina, como numa partição que sara ou num nó lento que recupera, e mede-se o
+ * tempo até o coordenador e os restantes voltarem a ver-se como VIVOS.
+ *
+ * Uso: java monitoramento.SimuladorSwim [tamanhos...]   (padrão: 10 100 500)
+ */
+public class SimuladorSwim {
+    private static final long PERIODO_MS = 1000;
+    private static final int K = 3;
+    private static final int PERIODOS_SUSPEITA = 3;
+    private static final long INTERVALO_TICK_MS = 10;
+    private static final long AQUECIMENTO_MS = 10000;
+    private static final long LIMITE_SIMULACAO_MS = 120000;
+    // Intervalo entre verificações da readmissão depois da cura.
+    private static final long PASSO_READMISSAO_MS = 100;
+    // Detetor atual (HeartbeatGestor, phi accrual), para comparação.
+    private static final long CICLO_HEARTBEAT_MS = NoInfo.INTERVALO_HEARTBEAT_MS;
+
+    private static final class Evento implements Comparable<Evento> {
+        final long tempo;
+        final long ordem;
+        final int destino;
+        final MensagemSwim mensagem; // null = tick
+        Evento(long tempo, long ordem, int destino, MensagemSwim mensagem) {
+            this.tempo = tempo;
+            this.ordem = ordem;
+            this.destino = destino;
+            this.mensagem = mensagem;
+        }
+        @Override
+        public int compareTo(Evento o) {
+            int c = Long.compare(tempo, o.tempo);
+            return c != 0 ? c : Long.compare(ordem, o.ordem);
+        }
+    }
+
+    private final int numeroNos;
+    private final Random aleatorio = new Random(42);
+    private final PriorityQueue<Evento> eventos = new PriorityQueue<>();
+    private final DetectorSwim[] detetores;
+    private boolean isolado;
+    private long agora;
+    private long ordem;
+
+    // Medições
+    private int vitima = -1;
+    private long instanteFalha;
+    private long primeiraSuspeita = -1;
+    private long primeiraConfirmacao = -1;
+    private int confirmacoes;
+    private long ultimaConfirmacao = -1;
+    private int falsosPositivos;
+    private long instanteCura = -1;
+    private long readmissao = -1;
+
+    private SimuladorSwim(int numeroNos) {
+        this.numeroNos = numeroNos;
+        this.detetores = new DetectorSwim[numeroNos + 1];
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= numeroNos; i++) ids.add(i);
+        for (int i = 1; i <= numeroNos; i++) {
+            final int origem = i;
+            // O coordenador isolado declara os outros mortos: isso não conta como falso positivo.
+            DetectorSwim.Ouvinte ouvinte = new DetectorSwim.Ouvinte() {
+                @Override public void noSuspeito(int id) { if (origem != vitima) registarSuspeita(id); }
+                @Override public void noFalhou(int id) { if (origem != vitima) registarConfirmacao(id); }
+                @Override public void noAtivo(int id) { }
+            };
+            detetores[i] = new DetectorSwim(i, ids, PERIODO_MS, K, PERIODOS_SUSPEITA,
+                    (destino, m) -> entregar(origem, destino, m), ouvinte, new Random(aleatorio.nextLong()));
+            agendar(0, i, null);
+        }
+    }
+
+    private void agendar(long tempo, int destino, MensagemSwim m) {
+        eventos.add(new Evento(tempo, ordem++, destino, m));
+    }
+
+    private void entregar(int origem, int destino, MensagemSwim m) {
+        if (isolado && (origem == vitima || destino == vitima)) return;
+        // Latência de rede simulada entre 1 e 5 ms.
+        agendar(agora + 1 + aleatorio.nextInt(5), destino, m);
+    }
+
+    private void registarSuspeita(int id) {
+        if (id == vitima && primeiraSuspeita < 0) primeiraSuspeita = agora;
+    }
+
+    private void registarConfirmacao(int id) {
+        if (id != vitima) {
+            falsosPositivos++;
+            return;
+        }
+        if (instanteCura >= 0) return; // Já depois da cura: a readmissão é medida à parte.
+        if (primeiraConfirmacao < 0) primeiraConfirmacao = agora;
+        confirmacoes++;
+        ultimaConfirmacao = agora;
+    }
+
+    private void executarAte(long limite) {
+        while (!eventos.isEmpty() && eventos.peek().tempo <= limite) {
+            Evento e = eventos.poll();
+            agora = e.tempo;
+            if (e.mensagem == null) {
+                detetores[e.destino].tick(agora);
+                agendar(agora + INTERVALO_TICK_MS, e.destino, null);
+            } else {
+                detetores[e.destino].receber(e.mensagem, agora);
+            }
+            if (vitima > 0 && instanteCura < 0 && confirmacoes == numeroNos - 1) return;
+        }
+        agora = limite;
+    }
+
+    private long totalMensagens() {
+        long total = 0;
+        for (int i = 1; i <= numeroNos; i++) total += detetores[i].getMensagensEnviadas();
+        return total;
+    }
+
+    private void executar() {
+        executarAte(AQUECIMENTO_MS / 2);
+        long mensagensInicio = totalMensagens();
+        executarAte(AQUECIMENTO_MS);
+        double mensagensPorNoSeg = (totalMensagens() - mensagensInicio) / (double) numeroNos / (AQUECIMENTO_MS / 2000.0);
+
+        // Falha do coordenador (o nó de maior ID).
+        vitima = numeroNos;
+        isolado = true;
+        instanteFalha = agora;
+        executarAte(instanteFalha + LIMITE_SIMULACAO_MS);
+
+        // Cura: o coordenador volta a comunicar com o mesmo estado que tinha.
+        isolado = false;
+        instanteCura = agora;
+        while (agora < instanteCura + LIMITE_SIMULACAO_MS) {
+            executarAte(agora + PASSO_READMISSAO_MS);
+            if (readmitido()) {
+                readmissao = agora;
+                break;
+            }
+        }
+
+        double heartbeatPorNoSeg = 2.0 * (numeroNos - 1) / (CICLO_HEARTBEAT_MS / 1000.0);
+        System.out.printf("%-6d | %10s | %12s | %14s | %10s | %8d | %14.2f | %18.2f%n",
+                numeroNos,
+                formatar(primeiraSuspeita), formatar(primeiraConfirmacao),
+                confirmacoes == numeroNos - 1 ? formatar(ultimaConfirmacao) : "incompleto",
+                readmissao < 0 ? "nunca" : String.format("%.2fs", (readmissao - instanteCura) / 1000.0),
+                falsosPositivos, mensagensPorNoSeg, heartbeatPorNoSeg);
+    }
+
+    /** true se o coordenador e todos os outros nós se veem de novo como VIVOS. */
+    private boolean readmitido() {
+        for (int i = 1; i < numeroNos; i++) {
+            if (detetores[i].getEstado(vitima) != DetectorSwim.VIVO) return false;
+            if (detetores[vitima].getEstado(i) != DetectorSwim.VIVO) return false;
+        }
+        return true;
+    }
+
+    private String formatar(long instante) {
+        return instante < 0 ? "-" : String.format("%.2fs", (instante - instanteFalha) / 1000.0);
+    }
+
+    /**
+     * Tempo, desde o último heartbeat, até o detetor phi de um nó com heartbeats regulares
+     * atingir o limiar de suspeita do HeartbeatGestor.
+     */
+    private static long tempoDeteccaoHeartbeatMs() {
+        DetectorPhiAccrual detector = NoInfo.novoDetectorPhi();
+        long t = 0;
+        for (int i = 0; i < 200; i++, t += CICLO_HEARTBEAT_MS) detector.registarHeartbeat(t);
+        long ultimo = t - CICLO_HEARTBEAT_MS;
+        long decorrido = 0;
+        while (detector.phi(ultimo + decorrido) < HeartbeatGestor.LIMIAR_PHI && decorrido < LIMITE_SIMULACAO_MS) {
+            decorrido += INTERVALO_TICK_MS;
+        }
+        return decorrido;
+    }
+
+    public static void main(String[] args) {
+        int[] tamanhos = { 10, 100, 500 };
+        if (args != null && args.length > 0) {
+            tamanhos = new int[args.length];
+            for (int i = 0; i < args.length; i++) tamanhos[i] = Integer.parseInt(args[i]);
+        }
+        System.out.println("==========================================================================================");
+        System.out.printf("Simulacao SWIM: periodo=%d ms, k=%d, suspeita=%d periodos%n", PERIODO_MS, K, PERIODOS_SUSPEITA);
+        System.out.printf("Detetor atual (todos pingam todos, ciclo %d ms, phi >= %.1f): deteccao ~ %.2f s apos o ultimo heartbeat%n",
+                CICLO_HEARTBEAT_MS, HeartbeatGestor.LIMIAR_PHI, tempoDeteccaoHeartbeatMs() / 1000.0);
+        System.out.println("==========================================================================================");
+        System.out.printf("%-6s | %10s | %12s | %14s | %10s | %8s | %14s | %18s%n",
+                "Nos", "Suspeita", "1a confirm.", "Todos confirm.", "Readmissao", "Falsos+", "Msg/no/s SWIM", "Msg/no/s heartbeat");
+        for (int n : tamanhos) {
+            new SimuladorSwim(n).executar();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package monitoramento;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * Sinal periódico do coordenador no grupo multicast dos relatórios: quem é o líder, a época
+ * da sua liderança e onde se autenticar. Os clientes seguem os sinais e voltam a autenticar-se
+ * assim que a época muda, sem esperar que os relatórios deixem de chegar.
+ *
+ * Formato (26 bytes + endereço): magia (2), versão (1), tamanho do endereço (1), ID do líder (4),
+ * época (8), instante de envio em ms (8), porta de autenticação (2), endereço IPv4 ou IPv6 (4 ou 16).
+ */
+public final class SinalLider {
+    public static final short MAGIA = 0x4D4C; // "ML"
+    public static final byte VERSAO = 1;
+    public static final int TAMANHO_CABECALHO = 26;
+    public static final int TAMANHO_MAXIMO = TAMANHO_CABECALHO + 16;
+
+    private final int idLider;
+    private final long epoca;
+    private final long enviadoEmMs;
+    private final InetAddress enderecoAutenticacao;
+    private final int portaAutenticacao;
+
+    public SinalLider(int idLider, long epoca, long enviadoEmMs, InetAddress enderecoAutenticacao, int portaAutenticacao) {
+        this.idLider = idLider;
+        this.epoca = epoca;
+        this.enviadoEmMs = enviadoEmMs;
+        this.enderecoAutenticacao = enderecoAutenticacao;
+        this.portaAutenticacao = portaAutenticacao;
+    }
+
+    /**
+     * Escreve o sinal no buffer a partir da posição atual ({@link #TAMANHO_MAXIMO} bytes no máximo).
+     */
+    public static void codificar(ByteBuffer destino, int idLider, long epoca, InetAddress endereco, int porta) {
+        byte[] bytesEndereco = endereco.getAddress();
+        destino.putShort(MAGIA);
+        destino.put(VERSAO);
+        destino.put((byte) bytesEndereco.length);
+        destino.putInt(idLider);
+        destino.putLong(epoca);
+        destino.putLong(System.currentTimeMillis());
+        destino.putShort((short) porta);
+        destino.put(bytesEndereco);
+    }
+
+    /**
+     * Indica se os dados começam com a magia do sinal do líder.
+     */
+    public static boolean isSinal(byte[] dados, int deslocamento, int comprimento) {
+        return comprimento >= TAMANHO_CABECALHO
+                && (short) (((dados[deslocamento] & 0xFF) << 8) | (dados[deslocamento + 1] & 0xFF)) == MAGIA;
+    }
+
+    /**
+     * Indica se os bytes entre a posição e o limite do buffer começam com a magia do sinal.
+     */
+    public static boolean isSinal(ByteBuffer datagrama) {
+        return datagrama.remaining() >= TAMANHO_CABECALHO && datagrama.getShort(datagrama.position()) == MAGIA;
+    }
+
+    /**
+     * @return O sinal contido nos dados, ou null se não for um sinal válido desta versão.
+     */
+    public static SinalLider decodificar(byte[] dados, int deslocamento, int comprimento) {
+        return decodificar(ByteBuffer.wrap(dados, deslocamento, comprimento));
+    }
+
+    /**
+     * Lê o sinal entre a posição e o limite do buffer.
+     * @return O sinal, ou null se não for um sinal válido desta versão.
+     */
+    public static SinalLider decodificar(ByteBuffer bb) {
+        if (!isSinal(bb)) return null;
+        int comprimento = bb.remaining();
+        bb.getShort();
+        if (bb.get() != VERSAO) return null;
+        int tamanhoEndereco = bb.get();
+        if ((tamanhoEndereco != 4 && tamanhoEndereco != 16) || comprimento < TAMANHO_CABECALHO + tamanhoEndereco) return null;
+        int idLider = bb.getInt();
+        long epoca = bb.getLong();
+        long enviadoEmMs = bb.getLong();
+        int porta = bb.getShort() & 0xFFFF;
+        byte[] bytesEndereco = new byte[tamanhoEndereco];
+        bb.get(bytesEndereco);
+        try {
+            return new SinalLider(idLider, epoca, enviadoEmMs, InetAddress.getByAddress(bytesEndereco), porta);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indica se este sinal anuncia uma liderança diferente da indicada (outro líder ou outra época).
+     */
+    public boolean isOutraLideranca(SinalLider outro) {
+        return outro == null || idLider != outro.idLider || epoca != outro.epoca;
+    }
+
+    public int getIdLider() { return idLider; }
+    public long getEpoca() { return epoca; }
+    public long getEnviadoEmMs() { return enviadoEmMs; }
+    public InetAddress getEnderecoAutenticacao() { return enderecoAutenticacao; }
+    public int getPortaAutenticacao() { return portaAutenticacao; }
+
+    @Override
+    public String toString() {
+        return String.format("P%d (epoca %d, autenticacao em %s:%d)", idLider, epoca,
+                enderecoAutenticacao.getHostAddress(), portaAutenticacao);
+    }
+}
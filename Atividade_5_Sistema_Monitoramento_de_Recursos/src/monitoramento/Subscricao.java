@@ -0,0 +1,223 @@
+package monitoramento;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Uma ligação de um cliente ao {@link ServidorSubscricoes}, com o seu filtro.
+ *
+ * O líder entrega cada snapshot com {@link #oferecer(Recurso)}, que nunca bloqueia: as
+ * atualizações que passam no filtro ficam num mapa por nó, onde a mais recente substitui a
+ * anterior ainda por enviar. A thread da ligação escreve esse mapa no socket, no máximo
+ * {@link Filtro#getMaximoPorSegundo()} vezes por segundo. Um cliente lento acumula no máximo
+ * uma atualização por nó e só atrasa a sua própria thread.
+ */
+public class Subscricao implements Runnable {
+    private static final Registador LOG = Registador.para("Subscricoes");
+
+    private final Socket socket;
+    private final Filtro filtro;
+    // Atualizações por enviar, por nó (protegido por this).
+    private Map<Integer, Recurso> pendentes = new LinkedHashMap<>();
+    private Map<Integer, Recurso> aEnviar = new LinkedHashMap<>();
+    // Últimos valores enviados a este cliente, por nó: base do limiar de variação.
+    private final Map<Integer, Recurso> enviados = new HashMap<>();
+    private final StringBuilder linha = new StringBuilder();
+    private volatile boolean ativa = true;
+    private long atualizacoesEnviadas;
+    private long atualizacoesSubstituidas;
+
+    public Subscricao(Socket socket, Filtro filtro) {
+        this.socket = socket;
+        this.filtro = filtro;
+    }
+
+    /**
+     * Entrega a amostra de um nó. Chamado pela thread do líder; nunca bloqueia.
+     */
+    public void oferecer(Recurso r) {
+        if (r == null || !ativa || !filtro.aceitaNo(r.getNoId())) return;
+        synchronized (this) {
+            if (pendentes.put(r.getNoId(), r) != null) atualizacoesSubstituidas++;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        long intervaloNs = filtro.getMaximoPorSegundo() > 0 ? (long) (1e9 / filtro.getMaximoPorSegundo()) : 0;
+        try (Socket s = socket) {
+            OutputStream out = s.getOutputStream();
+            long proximoEnvioNs = System.nanoTime();
+            while (ativa) {
+                long espera = proximoEnvioNs - System.nanoTime();
+                if (espera > 0) Thread.sleep(espera / 1_000_000, (int) (espera % 1_000_000));
+                synchronized (this) {
+                    while (ativa && pendentes.isEmpty()) wait();
+                    // Troca os mapas: o líder continua a acumular no vazio enquanto este é escrito.
+                    Map<Integer, Recurso> t = aEnviar;
+                    aEnviar = pendentes;
+                    pendentes = t;
+                }
+                proximoEnvioNs = System.nanoTime() + intervaloNs;
+                escrever(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.debug("[SUBSCRICAO] Cliente %s desligado: %s", socket.getRemoteSocketAddress(), e.getMessage());
+        } finally {
+            ativa = false;
+        }
+    }
+
+    private void escrever(OutputStream out) throws IOException {
+        linha.setLength(0);
+        for (Recurso r : aEnviar.values()) {
+            Recurso anterior = enviados.get(r.getNoId());
+            if (anterior != null && !filtro.variouAlemDoLimiar(anterior, r)) continue;
+            enviados.put(r.getNoId(), r);
+            linha.append("ATUALIZACAO no=").append(r.getNoId()).append(" lamport=").append(r.getRelogioLamport());
+            for (HistoricoMetricas.Metrica m : filtro.getMetricas()) {
+                linha.append(' ').append(m.name().toLowerCase(Locale.ROOT)).append('=');
+                // Números com ponto, qualquer que seja a língua da JVM: o cliente lê-os com parseDouble.
+                linha.append(String.format(Locale.ROOT, "%.2f", Filtro.valor(r, m)));
+            }
+            linha.append('\n');
+            atualizacoesEnviadas++;
+        }
+        aEnviar.clear();
+        if (linha.length() == 0) return;
+        // Só esta thread escreve no socket: um cliente lento bloqueia-a a ela e a mais nenhuma.
+        out.write(linha.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    public void encerrar() {
+        ativa = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Já estava fechado.
+        }
+    }
+
+    public boolean isAtiva() { return ativa; }
+    public Filtro getFiltro() { return filtro; }
+    public long getAtualizacoesEnviadas() { return atualizacoesEnviadas; }
+    /** Atualizações substituídas por outra mais recente do mesmo nó antes de serem enviadas. */
+    public synchronized long getAtualizacoesSubstituidas() { return atualizacoesSubstituidas; }
+
+    /**
+     * Filtro de uma subscrição, lido de uma linha "FILTRO chave=valor ...":
+     * nos=1,2,3 (padrão: todos), metricas=cpu,memoria,carga (padrão: as três),
+     * limiar=0.5 (variação mínima, em pontos, face ao último valor enviado; padrão 0)
+     * e maxHz=2 (máximo de envios por segundo; padrão 0, sem limite).
+     */
+    public static final class Filtro {
+        private final Set<Integer> nos;
+        private final Set<HistoricoMetricas.Metrica> metricas;
+        private final double limiar;
+        private final double maximoPorSegundo;
+
+        public Filtro(Set<Integer> nos, Set<HistoricoMetricas.Metrica> metricas, double limiar, double maximoPorSegundo) {
+            this.nos = nos;
+            this.metricas = metricas;
+            this.limiar = limiar;
+            this.maximoPorSegundo = maximoPorSegundo;
+        }
+
+        /**
+         * @throws IllegalArgumentException Se a linha tiver uma chave ou um valor inválidos.
+         */
+        public static Filtro ler(String linha) {
+            if (linha == null || !(linha.equals("FILTRO") || linha.startsWith("FILTRO "))) {
+                throw new IllegalArgumentException("Esperado: FILTRO [nos=..] [metricas=..] [limiar=..] [maxHz=..]");
+            }
+            Set<Integer> nos = null;
+            Set<HistoricoMetricas.Metrica> metricas = EnumSet.of(HistoricoMetricas.Metrica.CPU,
+                    HistoricoMetricas.Metrica.MEMORIA, HistoricoMetricas.Metrica.CARGA);
+            double limiar = 0;
+            double maximoPorSegundo = 0;
+            for (String parte : linha.substring("FILTRO".length()).trim().split("\\s+")) {
+                if (parte.isEmpty()) continue;
+                int igual = parte.indexOf('=');
+                if (igual < 0) throw new IllegalArgumentException("Parametro sem valor: " + parte);
+                String chave = parte.substring(0, igual);
+                String valor = parte.substring(igual + 1);
+                switch (chave) {
+                    case "nos":
+                        nos = new TreeSet<>();
+                        for (String id : valor.split(",")) nos.add(Integer.parseInt(id.trim()));
+                        break;
+                    case "metricas":
+                        metricas = EnumSet.noneOf(HistoricoMetricas.Metrica.class);
+                        for (String m : valor.split(",")) metricas.add(metrica(m.trim()));
+                        break;
+                    case "limiar":
+                        limiar = Double.parseDouble(valor);
+                        break;
+                    case "maxHz":
+                        maximoPorSegundo = Double.parseDouble(valor);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Parametro desconhecido: " + chave);
+                }
+            }
+            return new Filtro(nos, metricas, limiar, maximoPorSegundo);
+        }
+
+        private static HistoricoMetricas.Metrica metrica(String nome) {
+            HistoricoMetricas.Metrica m = HistoricoMetricas.Metrica.valueOf(nome.toUpperCase());
+            if (m == HistoricoMetricas.Metrica.TEMPO_ATIVIDADE) {
+                throw new IllegalArgumentException("Metrica sem subscricao: " + nome);
+            }
+            return m;
+        }
+
+        static double valor(Recurso r, HistoricoMetricas.Metrica m) {
+            switch (m) {
+                case CPU: return r.getUsoCpu();
+                case MEMORIA: return r.getUsoMemoria();
+                case CARGA: return r.getCargaSistema();
+                default: throw new IllegalArgumentException("Metrica sem subscricao: " + m);
+            }
+        }
+
+        public boolean aceitaNo(int id) {
+            return nos == null || nos.contains(id);
+        }
+
+        /**
+         * Indica se alguma das métricas subscritas variou mais do que o limiar.
+         */
+        public boolean variouAlemDoLimiar(Recurso anterior, Recurso atual) {
+            for (HistoricoMetricas.Metrica m : metricas) {
+                if (Math.abs(valor(atual, m) - valor(anterior, m)) > limiar) return true;
+            }
+            return false;
+        }
+
+        public Set<HistoricoMetricas.Metrica> getMetricas() { return metricas; }
+        public double getLimiar() { return limiar; }
+        public double getMaximoPorSegundo() { return maximoPorSegundo; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "nos=%s metricas=%s limiar=%.2f maxHz=%.1f",
+                    nos == null ? "todos" : nos, metricas, limiar, maximoPorSegundo);
+        }
+    }
+}
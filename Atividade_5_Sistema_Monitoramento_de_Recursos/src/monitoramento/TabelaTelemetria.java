@@ -0,0 +1,64 @@
+package monitoramento;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tabela do líder com o valor mais recente enviado por cada nó no modo PUSH.
+ * O relatório lê esta tabela diretamente, sem nenhuma chamada RMI.
+ */
+public class TabelaTelemetria {
+    private final Map<Integer, Entrada> ultimos = new ConcurrentHashMap<>();
+
+    private static final class Entrada {
+        final Recurso recurso;
+        final long recebidoEmMs;
+        Entrada(Recurso recurso, long recebidoEmMs) {
+            this.recurso = recurso;
+            this.recebidoEmMs = recebidoEmMs;
+        }
+    }
+
+    /**
+     * Regista um lote de amostras, mantendo apenas a mais recente de cada nó.
+     */
+    public void atualizar(List<Recurso> amostras) {
+        long agora = System.currentTimeMillis();
+        for (Recurso r : amostras) {
+            if (r != null) {
+                ultimos.put(r.getNoId(), new Entrada(r, agora));
+            }
+        }
+    }
+
+    /**
+     * Devolve os valores mais recentes que não são mais antigos que o limite indicado.
+     * @param idadeMaximaMs Idade máxima de uma entrada para entrar no snapshot.
+     * @return Lista ordenada por ID de nó.
+     */
+    public List<Recurso> snapshot(long idadeMaximaMs) {
+        long agora = System.currentTimeMillis();
+        List<Recurso> resultado = new ArrayList<>();
+        for (Entrada e : ultimos.values()) {
+            if (agora - e.recebidoEmMs <= idadeMaximaMs) {
+                resultado.add(e.recurso);
+            }
+        }
+        resultado.sort(Comparator.comparingInt(Recurso::getNoId));
+        return resultado;
+    }
+
+    /**
+     * Idade, em milissegundos, do último valor recebido de um nó (-1 se não houver).
+     */
+    public long getIdadeMs(int pid) {
+        Entrada e = ultimos.get(pid);
+        return e == null ? -1 : System.currentTimeMillis() - e.recebidoEmMs;
+    }
+
+    public void remover(int pid) { ultimos.remove(pid); }
+    public void limpar() { ultimos.clear(); }
+}
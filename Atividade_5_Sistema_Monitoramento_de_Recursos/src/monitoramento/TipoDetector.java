@@ -0,0 +1,27 @@
+package monitoramento;
+
+/**
+ * Define o detetor de falhas usado por cada nó.
+ * HEARTBEAT: todos os nós pingam todos os outros (HeartbeatGestor/HeartbeatServidor).
+ * SWIM: cada nó sonda um par aleatório por período, com sondas indiretas e disseminação por piggyback.
+ * O detetor é escolhido pela propriedade de sistema "monitoramento.detector".
+ */
+public enum TipoDetector {
+    HEARTBEAT,
+    SWIM;
+
+    public static final String PROPRIEDADE = "monitoramento.detector";
+
+    /**
+     * Lê o detetor configurado nas propriedades de sistema (padrão: HEARTBEAT).
+     */
+    public static TipoDetector doSistema() {
+        String valor = System.getProperty(PROPRIEDADE, HEARTBEAT.name());
+        try {
+            return TipoDetector.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.printf("[AVISO] Detetor de falhas desconhecido '%s'. A usar HEARTBEAT.%n", valor);
+            return HEARTBEAT;
+        }
+    }
+}